@@ -10,11 +10,8 @@ import com.badlogic.gdx.graphics.Texture;
 import com.badlogic.gdx.graphics.g2d.SpriteBatch;
 import com.badlogic.gdx.graphics.g2d.TextureRegion;
 import com.badlogic.gdx.utils.ScreenUtils;
-import com.mygdx.game.callback.CollisionCallback;
 import space.earlygrey.shapedrawer.ShapeDrawer;
 
-import java.util.ArrayList;
-
 
 public class MyGdxGame extends ApplicationAdapter {
 	SpriteBatch batch;
@@ -23,7 +20,8 @@ public class MyGdxGame extends ApplicationAdapter {
 	Pixmap pixmap;
 	ShapeDrawer drawer;
 	float strokeWidth;
-	int iterations = 32;
+	// velocity iterations of the sequential impulse solver, a stack needs far fewer than full substeps
+	int iterations = 16;
 
 	float totalHeight;
 	float totalWidth;
@@ -33,13 +31,16 @@ public class MyGdxGame extends ApplicationAdapter {
 	float forceMagnitude  = 4f;
 
 	FlatWorld world;
-
-	ArrayList<Color> colorList;
-	ArrayList<Color> outlineColorList;
+	// the floor moves with the arrow keys
+	int floorHandle;
 
 	// cache stuff instead of creating new object everytime
 	FlatVector cachedDirection;
 	float[] cachedVertices;
+	FlatVector cachedPosition = new FlatVector();
+	FlatVector[] cachedInterpolatedVertices = new FlatVector[0];
+	// handles of the bodies under the mouse, only whether there is one matters
+	int[] cachedPicked = new int[1];
 
 	@Override
 	public void create () {
@@ -53,9 +54,9 @@ public class MyGdxGame extends ApplicationAdapter {
 
 		initializeList();
 
-		world.addBody(FlatBody.createBoxBody(totalWidth - 100f, 50f, new FlatVector(totalWidth / 2, 100f-totalHeight), 2f, true, 1f));
-		outlineColorList.add(new Color(Color.WHITE));
-		colorList.add(new Color(Color.GRAY));
+		FlatBody floor = FlatBody.createBoxBody(totalWidth - 100f, 50f, new FlatVector(totalWidth / 2, 100f-totalHeight), 2f, true, 1f);
+		addBody(floor, new Color(Color.GRAY), new Color(Color.WHITE));
+		floorHandle = floor.getHandle();
 	}
 
 
@@ -67,8 +68,6 @@ public class MyGdxGame extends ApplicationAdapter {
 
 		addObjectByClick();
 
-		reset();
-
 		move(deltaX, deltaY, forceMagnitude);
 
 		collide();
@@ -80,13 +79,6 @@ public class MyGdxGame extends ApplicationAdapter {
 		batch.end();
 	}
 
-	private void reset() {
-		for (int i = 0; i < this.world.getBodyCount(); i++) {
-			outlineColorList.get(i).set(new Color(Color.WHITE));
-		}
-	}
-
-
 	@Override
 	public void dispose () {
 		batch.dispose();
@@ -106,26 +98,39 @@ public class MyGdxGame extends ApplicationAdapter {
 
 	private void initializeList() {
 		cachedDirection = new FlatVector(0f, 0f);
-		colorList = new ArrayList<>();
-		outlineColorList = new ArrayList<>();
 		world = new FlatWorld();
+		// the floor is much larger than the bodies spawned by clicking, a grid would not fit both
+		world.setBroadphase(new DynamicTreeBroadphase());
+		world.setSolver(FlatWorld.SOLVER_SEQUENTIAL_IMPULSE);
+		// outlines only change when a pair starts or stops touching
+		world.setContactListener(this::contacts);
 	}
 
 	private void initializeRandomObjects() {
 		for (int i = 0; i < 10; i++) {
 			FlatVector center = new FlatVector( (float) Math.random() * totalWidth, (float) Math.random() * totalHeight);
 			boolean randomStatic = !(Math.random() > 0.4);
+			FlatBody body;
 			if (Math.random() > 0.5) {
-				world.addBody(FlatBody.createCircleBody(20f, center, 0.5f, randomStatic, 1f));
+				body = FlatBody.createCircleBody(20f, center, 0.5f, randomStatic, 1f);
 			}else {
-				world.addBody(FlatBody.createBoxBody(40f, 40f, center, 0.5f, randomStatic, 1f));
+				body = FlatBody.createBoxBody(40f, 40f, center, 0.5f, randomStatic, 1f);
 			}
 //			System.out.println(bodyList.get(i));
-			outlineColorList.add(randomStatic ? new Color(Color.BLACK) : new Color(Color.WHITE));
-			colorList.add(new Color((float) Math.random(), (float) Math.random(), (float) Math.random(), 1));
+			addBody(body, randomColor(), randomStatic ? new Color(Color.BLACK) : new Color(Color.WHITE));
 		}
 	}
 
+	// colors travel with the body as its user data, indices change when bodies are removed
+	private void addBody(FlatBody body, Color color, Color outlineColor) {
+		body.setUserData(new BodyStyle(color, outlineColor));
+		world.addBody(body);
+	}
+
+	private static Color randomColor() {
+		return new Color((float) Math.random(), (float) Math.random(), (float) Math.random(), 1);
+	}
+
 	private void addObjectByClick() {
 //		initializeList();
 
@@ -134,15 +139,18 @@ public class MyGdxGame extends ApplicationAdapter {
 		random = random < 0.2f ? 0.3f : random;
 		float random2 = (float) Math.random();
 		random2 = random2 < 0.2f ? 0.3f : random2;
+		// holding the button over a body would stack new bodies inside it
+		if(Gdx.input.isButtonPressed(Input.Buttons.LEFT) || Gdx.input.isButtonPressed(Input.Buttons.RIGHT)) {
+			this.cachedPosition.set(Gdx.input.getX(), -Gdx.input.getY());
+			if(world.queryPoint(this.cachedPosition, -1, true, this.cachedPicked) > 0) return;
+		}
 		if(Gdx.input.isButtonPressed(Input.Buttons.LEFT)) {
 			FlatVector center = new FlatVector(Gdx.input.getX(), -Gdx.input.getY());
-			world.addBody(FlatBody.createCircleBody(40f * random, center, 2f, false, 1f));
+			addBody(FlatBody.createCircleBody(40f * random, center, 2f, false, 1f), randomColor(), new Color(Color.WHITE));
 		}else if(Gdx.input.isButtonPressed(Input.Buttons.RIGHT)) {
 			FlatVector center = new FlatVector(Gdx.input.getX(), -Gdx.input.getY());
-			world.addBody(FlatBody.createBoxBody(80f * random, 80f * random2, center, 2f, false, 1f));
+			addBody(FlatBody.createBoxBody(80f * random, 80f * random2, center, 2f, false, 1f), randomColor(), new Color(Color.WHITE));
 		}
-		colorList.add(new Color((float) Math.random(), (float) Math.random(), (float) Math.random(), 1));
-		outlineColorList.add(new Color(Color.WHITE));
 	}
 
 
@@ -156,49 +164,81 @@ public class MyGdxGame extends ApplicationAdapter {
 		if(deltaX != 0f || deltaY != 0f) {
 			FlatVector direction = FlatMath.normalize(new FlatVector(deltaX, deltaY));
 			FlatVector force	 = FlatMath.multiply(direction, forceMagnitude);
-			world.getBody(0).setForce(force);
+			world.getBodyByHandle(floorHandle).setForce(force);
 		}
 
-		if(Gdx.input.isKeyPressed(Input.Keys.R)) world.getBody(0).rotate(10f);
+		if(Gdx.input.isKeyPressed(Input.Keys.R)) world.getBodyByHandle(floorHandle).rotate(10f);
 	}
 
 	private void collide() {
-		this.world.step(iterations, (indexA, indexB) -> {
-			outlineColorList.get(indexA).set(Color.RED);
-			outlineColorList.get(indexB).set(Color.RED);
-		});
+		// physics runs at a fixed rate, however fast frames are drawn
+		this.world.update(Gdx.graphics.getDeltaTime(), iterations, null);
+	}
+
+	private void contacts(ContactEvents events) {
+		for (int e = 0; e < events.size(); e++) {
+			if (events.getType(e) == ContactEvents.PERSIST) continue;
+
+			int delta = events.getType(e) == ContactEvents.BEGIN ? 1 : -1;
+			touch(events.getHandleA(e), delta);
+			touch(events.getHandleB(e), delta);
+		}
+	}
+
+	private void touch(int handle, int delta) {
+		// pairs of a removed body end with the handle it had
+		FlatBody body = world.getBodyByHandle(handle);
+		if (body == null) return;
+
+		BodyStyle style = (BodyStyle) body.getUserData();
+		style.touchingCount += delta;
+		style.outlineColor.set(style.touchingCount > 0 ? Color.RED : Color.WHITE);
 	}
 
 	private void drawList() {
 		int count = this.world.getBodyCount();
+		// draw between the last two physics steps, so motion stays smooth when frames and steps do not line up
+		float alpha = this.world.getInterpolationAlpha();
 
 		for (int i = 0; i < count; i++) {
 			drawer.setDefaultLineWidth(strokeWidth);
 
 			FlatBody body = this.world.getBody(i);
+			BodyStyle style = (BodyStyle) body.getUserData();
 
-			float x = body.getPosition().getX();
-			float y = body.getPosition().getY();
+			body.getInterpolatedPosition(alpha, this.cachedPosition);
+			float x = this.cachedPosition.getX();
+			float y = this.cachedPosition.getY();
 
 			if(FlatBody.CIRCLE_SHAPE == body.getShapeType()) {
-				drawer.setColor(this.outlineColorList.get(i));
+				drawer.setColor(style.outlineColor);
 				drawer.filledCircle(x, y, body.getRadius());
 
-				drawer.setColor(this.colorList.get(i));
+				drawer.setColor(style.color);
 				drawer.filledCircle(x, y, body.getRadius() - 2);
 			}else {
-				toFloatArray(body.getTransformedVertices());
-				drawer.setColor(this.colorList.get(i));
+				toFloatArray(body.getInterpolatedVertices(alpha, interpolatedVertices(body.getVertices().length)));
+				drawer.setColor(style.color);
 				drawer.filledPolygon(this.cachedVertices, body.getTriangles());
 
 				drawer.setDefaultLineWidth(2f);
-				drawer.setColor(this.outlineColorList.get(i));
+				drawer.setColor(style.outlineColor);
 				drawer.polygon(this.cachedVertices);
 			}
 
 		}
 	}
 
+	private FlatVector[] interpolatedVertices(int length) {
+		if (this.cachedInterpolatedVertices.length != length) {
+			this.cachedInterpolatedVertices = new FlatVector[length];
+			for (int i = 0; i < length; i++) {
+				this.cachedInterpolatedVertices[i] = new FlatVector();
+			}
+		}
+		return this.cachedInterpolatedVertices;
+	}
+
 	private void toFloatArray(FlatVector[] vertices) {
 		this.cachedVertices = new float[vertices.length << 1];
 
@@ -230,6 +270,19 @@ public class MyGdxGame extends ApplicationAdapter {
 		}
 	}
 
+	// how a body is drawn
+	private static class BodyStyle {
+		final Color color;
+		final Color outlineColor;
+		// number of bodies it touches, its outline is red while any
+		int touchingCount;
+
+		BodyStyle(Color color, Color outlineColor) {
+			this.color = color;
+			this.outlineColor = outlineColor;
+		}
+	}
+
 //	private void drawCircleList() {
 //
 //		for (int i = 0; i < count; i++) {
@@ -0,0 +1,128 @@
+package com.mygdx.game.bench;
+
+import com.mygdx.game.Collisions;
+import com.mygdx.game.FlatBody;
+import com.mygdx.game.FlatVector;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * every detect method of Collisions on one pair of shapes
+ * <p>
+ * the allocating methods are measured next to the ones writing into a reused result,
+ * the gc profiler shows what the allocation costs
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class CollisionsBenchmark {
+
+    // touching pairs run every axis, separated pairs usually stop at the first one
+    @Param({"true", "false"})
+    public boolean isIntersect;
+
+    private FlatVector circleCenterA;
+    private FlatVector circleCenterB;
+    private float radius;
+
+    private FlatVector boxCenterA;
+    private FlatVector[] verticesA;
+    private FlatVector[] normalsA;
+    private FlatVector boxCenterB;
+    private FlatVector[] verticesB;
+    private FlatVector[] normalsB;
+
+    private final Collisions.CollisionResult result = new Collisions.CollisionResult();
+
+    @Setup
+    public void setUp() {
+        float distance = this.isIntersect ? 15f : 40f;
+        this.radius = 10f;
+
+        FlatBody boxA = FlatBody.createBoxBody(20f, 20f, new FlatVector(0f, 0f), 2f, false, 0.5f);
+        FlatBody boxB = FlatBody.createBoxBody(20f, 20f, new FlatVector(distance, 3f), 2f, false, 0.5f);
+        boxA.rotateTo(0.3f);
+        boxB.rotateTo(-0.2f);
+
+        this.circleCenterA = new FlatVector(0f, 0f);
+        this.circleCenterB = new FlatVector(distance, 3f);
+        this.boxCenterA = boxA.getPosition();
+        this.verticesA = boxA.getTransformedVertices();
+        this.normalsA = boxA.getTransformedNormals();
+        this.boxCenterB = boxB.getPosition();
+        this.verticesB = boxB.getTransformedVertices();
+        this.normalsB = boxB.getTransformedNormals();
+    }
+
+    @Benchmark
+    public Collisions.CollisionResult circles() {
+        return Collisions.detectIntersectCircles(this.circleCenterA, this.radius, this.circleCenterB, this.radius);
+    }
+
+    @Benchmark
+    public boolean circlesReused() {
+        return Collisions.detectIntersectCircles(this.circleCenterA, this.radius, this.circleCenterB, this.radius, this.result);
+    }
+
+    @Benchmark
+    public Collisions.CollisionResult circlePolygon() {
+        return Collisions.detectIntersectCirclePolygon(this.circleCenterA, this.radius, this.verticesB);
+    }
+
+    @Benchmark
+    public boolean circlePolygonReused() {
+        return Collisions.detectIntersectCirclePolygon(this.circleCenterA, this.radius, this.verticesB, this.result);
+    }
+
+    @Benchmark
+    public Collisions.CollisionResult circlePolygonWithCenter() {
+        return Collisions.detectIntersectCirclePolygon(this.circleCenterA, this.radius, this.boxCenterB, this.verticesB);
+    }
+
+    @Benchmark
+    public boolean circlePolygonWithCenterReused() {
+        return Collisions.detectIntersectCirclePolygon(this.circleCenterA, this.radius, this.boxCenterB, this.verticesB,
+                this.result);
+    }
+
+    @Benchmark
+    public boolean circlePolygonWithAxes() {
+        return Collisions.detectIntersectCirclePolygon(this.circleCenterA, this.radius, this.boxCenterB, this.verticesB,
+                this.normalsB, this.result);
+    }
+
+    @Benchmark
+    public Collisions.CollisionResult polygons() {
+        return Collisions.detectIntersectPolygons(this.verticesA, this.verticesB);
+    }
+
+    @Benchmark
+    public boolean polygonsReused() {
+        return Collisions.detectIntersectPolygons(this.verticesA, this.verticesB, this.result);
+    }
+
+    @Benchmark
+    public Collisions.CollisionResult polygonsWithCenters() {
+        return Collisions.detectIntersectPolygons(this.boxCenterA, this.verticesA, this.boxCenterB, this.verticesB);
+    }
+
+    @Benchmark
+    public boolean polygonsWithCentersReused() {
+        return Collisions.detectIntersectPolygons(this.boxCenterA, this.verticesA, this.boxCenterB, this.verticesB,
+                this.result);
+    }
+
+    @Benchmark
+    public boolean polygonsWithAxes() {
+        return Collisions.detectIntersectPolygons(this.boxCenterA, this.verticesA, this.normalsA,
+                this.boxCenterB, this.verticesB, this.normalsB, this.result);
+    }
+}
@@ -0,0 +1,125 @@
+package com.mygdx.game.bench;
+
+import com.mygdx.game.FlatBody;
+import com.mygdx.game.FlatVector;
+import com.mygdx.game.FlatWorld;
+import com.mygdx.game.callback.CollisionCallback;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * the first STEPS calls of FlatWorld.step on generated scenes
+ * <p>
+ * the scene is built again for every iteration and an iteration times exactly STEPS steps of it,
+ * so every iteration measures the same stretch of the simulation: bodies falling, landing and starting to settle.
+ * the score is the time of all STEPS steps, divide it by STEPS for one step.
+ * sleeping is on like in a game, a dense pile may start to fall asleep near the end of the stretch
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(batchSize = WorldStepBenchmark.STEPS)
+@Measurement(batchSize = WorldStepBenchmark.STEPS)
+public class WorldStepBenchmark {
+
+    // steps timed per iteration, two seconds of a 60 hz game
+    static final int STEPS = 120;
+
+    @Param({"circles", "boxes", "mixed", "pyramid"})
+    public String scene;
+
+    @Param({"100", "1000"})
+    public int bodyCount;
+
+    // sparse bodies rarely touch, dense ones start packed into a small area
+    @Param({"sparse", "dense"})
+    public String spacing;
+
+    @Param({"substeps", "impulse"})
+    public String solver;
+
+    private FlatWorld world;
+    private int iterations;
+    private int contactCount;
+    private final CollisionCallback callback = (indexA, indexB) -> this.contactCount++;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        this.world = new FlatWorld();
+        if ("impulse".equals(this.solver)) {
+            this.world.setSolver(FlatWorld.SOLVER_SEQUENTIAL_IMPULSE);
+            this.iterations = 16;
+        } else {
+            this.iterations = 32;
+        }
+
+        // side of a square cell per body, dense cells are just larger than the largest body
+        float cell = "dense".equals(this.spacing) ? 22f : 80f;
+        int columns = (int) Math.ceil(Math.sqrt(this.bodyCount));
+        float width = columns * cell;
+
+        // wide enough for the grid and for a pyramid of the same body count
+        float floorWidth = Math.max(width, 1500f) * 2f;
+        this.world.addBody(FlatBody.createBoxBody(floorWidth, 50f, new FlatVector(width / 2f, -25f), 2f, true, 0.5f));
+
+        if ("pyramid".equals(this.scene)) {
+            addPyramid();
+        } else {
+            addGrid(columns, cell);
+        }
+    }
+
+    @Benchmark
+    public int step() {
+        this.world.step(this.iterations, this.callback);
+        return this.contactCount;
+    }
+
+    // bodies on a jittered grid above the floor
+    private void addGrid(int columns, float cell) {
+        Random random = new Random(42);
+        for (int i = 0; i < this.bodyCount; i++) {
+            float x = (i % columns + 0.5f) * cell + (random.nextFloat() - 0.5f) * (cell - 20f);
+            float y = 50f + (i / columns + 0.5f) * cell + (random.nextFloat() - 0.5f) * (cell - 20f);
+            FlatVector center = new FlatVector(x, y);
+
+            boolean isCircle = "circles".equals(this.scene) || ("mixed".equals(this.scene) && random.nextBoolean());
+            if (isCircle) {
+                this.world.addBody(FlatBody.createCircleBody(5f + random.nextFloat() * 5f, center, 2f, false, 0.5f));
+            } else {
+                this.world.addBody(FlatBody.createBoxBody(10f + random.nextFloat() * 10f, 10f + random.nextFloat() * 10f,
+                        center, 2f, false, 0.5f));
+            }
+        }
+    }
+
+    // rows of equal boxes resting on each other, each row one box shorter and shifted by half a box
+    private void addPyramid() {
+        float size = 20f;
+        // sparse rows leave half a box between neighbours, every box still rests on two below it
+        float pitch = "dense".equals(this.spacing) ? size : size * 1.5f;
+        int rows = 1;
+        while (rows * (rows + 1) / 2 < this.bodyCount) rows++;
+
+        int added = 0;
+        for (int row = 0; row < rows && added < this.bodyCount; row++) {
+            float left = size / 2f + row * pitch / 2f;
+            for (int b = 0; b < rows - row && added < this.bodyCount; b++, added++) {
+                FlatVector center = new FlatVector(left + b * pitch, size / 2f + row * size);
+                this.world.addBody(FlatBody.createBoxBody(size, size, center, 2f, false, 0f));
+            }
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.mygdx.game;
+
+import java.util.List;
+import java.util.function.IntConsumer;
+
+/**
+ * filters the candidates of one box or point query and hands the handles of the bodies it keeps on
+ * <p>
+ * with an array instead of a consumer the handles are written into it, counting the ones that did not fit
+ */
+class AABBQuery implements IntConsumer {
+
+    private FlatBodyStore store;
+    private List<FlatBody> bodies;
+    // candidates come by row from the static index and by dynamic position from the broadphase
+    boolean isStaticPass;
+
+    private float minX;
+    private float minY;
+    private float maxX;
+    private float maxY;
+    private int maskBits;
+    private boolean isExact;
+    private IntConsumer consumer;
+
+    private int[] handles;
+    // bodies found so far, also the ones past the end of handles
+    int count;
+
+    void begin(FlatBodyStore store, List<FlatBody> bodies, float minX, float minY, float maxX, float maxY,
+               int maskBits, boolean isExact, IntConsumer consumer, int[] handles) {
+        this.store = store;
+        this.bodies = bodies;
+        this.minX = minX;
+        this.minY = minY;
+        this.maxX = maxX;
+        this.maxY = maxY;
+        this.maskBits = maskBits;
+        this.isExact = isExact;
+        this.consumer = consumer;
+        this.handles = handles;
+        this.count = 0;
+    }
+
+    @Override
+    public void accept(int index) {
+        FlatBodyStore s = this.store;
+        int i = this.isStaticPass ? index : s.dynamic[index];
+        if ((s.categoryBits[i] & this.maskBits) == 0) return;
+
+        if (this.isExact) {
+            boolean isOverlapping = s.shapeType[i] == FlatBody.CIRCLE_SHAPE
+                    ? Collisions.detectIntersectCircleAABB(s.positionX[i], s.positionY[i], s.radius[i],
+                    this.minX, this.minY, this.maxX, this.maxY)
+                    : Collisions.detectIntersectPolygonAABB(this.bodies.get(i).getTransformedVertices(),
+                    this.minX, this.minY, this.maxX, this.maxY);
+            if (!isOverlapping) return;
+        }
+
+        int k = this.count++;
+        if (this.consumer != null) this.consumer.accept(s.handle[i]);
+        else if (k < this.handles.length) this.handles[k] = s.handle[i];
+    }
+}
@@ -0,0 +1,135 @@
+package com.mygdx.game;
+
+import java.util.Arrays;
+
+/**
+ * hands out the handles of the bodies of a world, a handle keeps pointing at its body while rows move around
+ * <p>
+ * a handle is a slot in the low SLOT_BITS bits and the generation of the slot above them.
+ * freed slots are reused, the generation goes up every time, so a handle of a removed body never finds the body
+ * that took over its slot. as long as no slot was reused the handle of a body is the index it was added at
+ */
+class BodyHandles {
+
+    static final int SLOT_BITS = 20;
+    // bodies one world can hold at once
+    static final int MAX_SLOTS = 1 << SLOT_BITS;
+    private static final int SLOT_MASK = MAX_SLOTS - 1;
+    // generations wrap before they reach the sign bit, so a handle is never negative
+    private static final int GENERATION_MASK = (1 << (31 - SLOT_BITS)) - 1;
+
+    // row of a slot whose body waits to join the world, the slot is taken but has no row yet
+    static final int PENDING_ROW = -2;
+
+    // row of the body in every slot, -1 for free slots and PENDING_ROW for bodies waiting to join
+    private int[] rowOfSlot;
+    private int[] generation;
+    private int slotCount;
+
+    // freed slots, the last one freed is used first
+    private int[] freeSlots;
+    private int freeCount;
+    // claim took slots out of order, the free slots are collected again before the next allocation
+    private boolean isFreeListStale;
+
+    BodyHandles() {
+        this.rowOfSlot = new int[16];
+        this.generation = new int[16];
+        this.freeSlots = new int[16];
+    }
+
+    /**
+     * take a slot for a body
+     *
+     * @param row row of the body in the store, PENDING_ROW for a body that joins after the step
+     * @return the handle of the body
+     */
+    int allocate(int row) {
+        if (this.isFreeListStale) this.collectFreeSlots();
+
+        int slot;
+        if (this.freeCount > 0) {
+            slot = this.freeSlots[--this.freeCount];
+        } else {
+            if (this.slotCount == MAX_SLOTS) {
+                throw new IllegalStateException("a world can not hold more than " + MAX_SLOTS + " bodies");
+            }
+            slot = this.slotCount++;
+            if (slot == this.rowOfSlot.length) {
+                int length = Math.min(this.rowOfSlot.length << 1, MAX_SLOTS);
+                this.rowOfSlot = Arrays.copyOf(this.rowOfSlot, length);
+                this.generation = Arrays.copyOf(this.generation, length);
+            }
+        }
+        this.rowOfSlot[slot] = row;
+        return this.generation[slot] << SLOT_BITS | slot;
+    }
+
+    /**
+     * take the slot of a handle handed out by another world, so a recorded world is rebuilt with the same handles.
+     * slots skipped on the way are free
+     */
+    void claim(int handle, int row) {
+        int slot = handle & SLOT_MASK;
+        if (handle < 0 || slot < this.slotCount && this.rowOfSlot[slot] != -1) {
+            throw new IllegalArgumentException("handle " + handle + " is taken or invalid");
+        }
+        if (slot >= this.rowOfSlot.length) {
+            int length = Math.min(Math.max(slot + 1, this.rowOfSlot.length << 1), MAX_SLOTS);
+            this.rowOfSlot = Arrays.copyOf(this.rowOfSlot, length);
+            this.generation = Arrays.copyOf(this.generation, length);
+        }
+        for (int s = this.slotCount; s < slot; s++) {
+            this.rowOfSlot[s] = -1;
+        }
+        this.slotCount = Math.max(this.slotCount, slot + 1);
+        this.generation[slot] = handle >>> SLOT_BITS;
+        this.rowOfSlot[slot] = row;
+        this.isFreeListStale = true;
+    }
+
+    // every slot without a body or a body waiting to join is free, lower slots are handed out first
+    private void collectFreeSlots() {
+        this.freeCount = 0;
+        for (int slot = this.slotCount - 1; slot >= 0; slot--) {
+            if (this.rowOfSlot[slot] != -1) continue;
+
+            if (this.freeCount == this.freeSlots.length) {
+                this.freeSlots = Arrays.copyOf(this.freeSlots, this.freeSlots.length << 1);
+            }
+            this.freeSlots[this.freeCount++] = slot;
+        }
+        this.isFreeListStale = false;
+    }
+
+    // give the slot of a handle back, the next body in it gets a new generation
+    void free(int handle) {
+        if (this.isFreeListStale) this.collectFreeSlots();
+
+        int slot = handle & SLOT_MASK;
+        this.rowOfSlot[slot] = -1;
+        this.generation[slot] = (this.generation[slot] + 1) & GENERATION_MASK;
+
+        if (this.freeCount == this.freeSlots.length) {
+            this.freeSlots = Arrays.copyOf(this.freeSlots, this.freeSlots.length << 1);
+        }
+        this.freeSlots[this.freeCount++] = slot;
+    }
+
+    /**
+     * @return the row of the body of a handle, -1 if the body was removed, waits to join or the handle was never
+     *         handed out
+     */
+    int rowOf(int handle) {
+        if (handle < 0) return -1;
+
+        int slot = handle & SLOT_MASK;
+        if (slot >= this.slotCount || this.generation[slot] != handle >>> SLOT_BITS) return -1;
+        return Math.max(this.rowOfSlot[slot], -1);
+    }
+
+    // the body of a handle moved to another row
+    void setRow(int handle, int row) {
+        this.rowOfSlot[handle & SLOT_MASK] = row;
+    }
+}
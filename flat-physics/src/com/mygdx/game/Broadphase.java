@@ -0,0 +1,97 @@
+package com.mygdx.game;
+
+import java.util.List;
+import java.util.function.IntConsumer;
+
+/**
+ * finds pairs of bodies that might be colliding, so the narrow phase only runs on them
+ * <p>
+ * bodies are referred to by their index in the list passed to findPairs, a world passes its non static bodies
+ * and looks up static bodies in an index of its own.
+ * a broadphase instance keeps state about the bodies, so it belongs to exactly one world.
+ * queries like raycast only read that state, so several threads may run them at once after update
+ */
+public interface Broadphase {
+
+    /**
+     * a body has been appended to the list
+     *
+     * @param index index of the new body
+     */
+    void add(int index);
+
+    /**
+     * bodies [index, index + count) have been appended to the list at once,
+     * a broadphase can build its structure for all of them in one go instead of body by body
+     */
+    default void addAll(int index, int count) {
+        for (int i = index; i < index + count; i++) {
+            add(i);
+        }
+    }
+
+    /**
+     * a body has been removed from the list, the last body of the list moves into its place
+     *
+     * @param index index of the removed body, and the new index of the last body unless it was the last one
+     */
+    void remove(int index);
+
+    /**
+     * find all candidate pairs of the current substep
+     *
+     * @param bodies the bodies added so far, in the order they were added
+     * @param pairs  output, cleared before use
+     */
+    void findPairs(List<FlatBody> bodies, PairBuffer pairs);
+
+    /**
+     * bring the structure up to date with the bounding boxes of the bodies without looking for pairs,
+     * a world calls it before queries when bodies moved since the last findPairs.
+     * the bounding boxes of the bodies are up to date when it is called
+     */
+    default void update(List<FlatBody> bodies) {
+    }
+
+    /**
+     * visit every body whose bounding box a ray crosses within its max distance, in no particular order.
+     * the default tests the box of every body, a structure that can skip most of them should override it
+     *
+     * @param directionX x of the unit direction of the ray
+     * @param visitor    gets the index of every candidate, what it returns becomes the max distance if it is smaller
+     */
+    default void raycast(List<FlatBody> bodies, float originX, float originY, float directionX, float directionY,
+                         float maxDistance, RayVisitor visitor) {
+        for (int i = 0; i < bodies.size() && maxDistance > 0f; i++) {
+            FlatAABB aabb = bodies.get(i).getBoundingBox();
+            if (Collisions.raycastBox(originX, originY, directionX, directionY, maxDistance,
+                    aabb.getMin().getX(), aabb.getMin().getY(), aabb.getMax().getX(), aabb.getMax().getY()) < 0f) continue;
+
+            maxDistance = Math.min(maxDistance, visitor.visit(i));
+        }
+    }
+
+    /**
+     * visit every body whose bounding box overlaps a box, touching counts, in no particular order.
+     * the default tests the box of every body, a structure that can skip most of them should override it
+     *
+     * @param visitor gets the index of every body once
+     */
+    default void query(List<FlatBody> bodies, float minX, float minY, float maxX, float maxY, IntConsumer visitor) {
+        for (int i = 0; i < bodies.size(); i++) {
+            FlatAABB aabb = bodies.get(i).getBoundingBox();
+            if (aabb.getMin().getX() > maxX || minX > aabb.getMax().getX()) continue;
+            if (aabb.getMin().getY() > maxY || minY > aabb.getMax().getY()) continue;
+
+            visitor.accept(i);
+        }
+    }
+
+    /**
+     * gets the candidates of a raycast, tests the body itself and clips the ray.
+     * the ray stops once the max distance is 0
+     */
+    interface RayVisitor {
+        float visit(int index);
+    }
+}
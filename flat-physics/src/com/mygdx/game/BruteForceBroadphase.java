@@ -0,0 +1,30 @@
+package com.mygdx.game;
+
+import java.util.List;
+
+/**
+ * reports every pair of bodies, same as the plain i < j loop
+ * <p>
+ * useful as a reference when comparing other broadphases
+ */
+public class BruteForceBroadphase implements Broadphase {
+
+    @Override
+    public void add(int index) {
+    }
+
+    @Override
+    public void remove(int index) {
+    }
+
+    @Override
+    public void findPairs(List<FlatBody> bodies, PairBuffer pairs) {
+        pairs.clear();
+
+        for (int i = 0; i < bodies.size() - 1; i++) {
+            for (int j = i + 1; j < bodies.size(); j++) {
+                pairs.add(i, j);
+            }
+        }
+    }
+}
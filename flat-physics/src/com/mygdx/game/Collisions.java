@@ -15,136 +15,151 @@ public class Collisions {
      */
     public static CollisionResult detectIntersectCirclePolygon(
             FlatVector circleCenter, float radius, FlatVector[] vertices) {
+        CollisionResult result = new CollisionResult();
+        detectIntersectCirclePolygon(circleCenter, radius, vertices, result);
+        return result;
+    }
+
+    /**
+     * same as above, but writes into a reusable result instead of allocating
+     *
+     * @param result manifold and scratch space owned by the caller
+     * @return is intersected
+     */
+    public static boolean detectIntersectCirclePolygon(
+            FlatVector circleCenter, float radius, FlatVector[] vertices, CollisionResult result) {
+        // make sure the normal is always pointing from the first one to the second
+        FlatVector polygonCenter = findArithmeticMean(vertices, result.center);
+        return detectIntersectCirclePolygon(circleCenter, radius, polygonCenter, vertices, result);
+    }
+
+    public static CollisionResult detectIntersectCirclePolygon(
+            FlatVector circleCenter, float radius, FlatVector polygonCenter, FlatVector[] vertices) {
+        CollisionResult result = new CollisionResult();
+        detectIntersectCirclePolygon(circleCenter, radius, polygonCenter, vertices, result);
+        return result;
+    }
 
-        FlatVector normal = FlatVector.getZero();
+    /**
+     * same as above, but writes into a reusable result instead of allocating
+     *
+     * @param result manifold and scratch space owned by the caller
+     * @return is intersected
+     */
+    public static boolean detectIntersectCirclePolygon(
+            FlatVector circleCenter, float radius, FlatVector polygonCenter, FlatVector[] vertices,
+            CollisionResult result) {
+
+        PolygonProjection projectionP = result.projectionA;
+        PolygonProjection projectionC = result.projectionB;
+        FlatVector axis = result.axis;
+        FlatVector normal = result.normal.set(0f, 0f);
         float depth = Float.MAX_VALUE;
-        FlatVector axis = null;
         // find overlap in projections
         for (int i = 0; i < vertices.length; i++) {
             FlatVector va = vertices[i];
             FlatVector vb = vertices[(i + 1) % vertices.length];
 
-            FlatVector edge = FlatMath.subtract(vb, va);
             // -y means normal direction is pointing outside of polygon
-            axis = new FlatVector(-edge.getY(), edge.getX());
-            axis = FlatMath.normalize(axis);
+            axis.set(-(vb.getY() - va.getY()), vb.getX() - va.getX());
+            FlatMath.normalize(axis, axis);
 
-            PolygonProjection projectionP = projectPolygon(vertices, axis);
-            PolygonProjection projectionC = projectCircle(circleCenter, radius, axis);
+            projectPolygon(vertices, axis, projectionP);
+            projectCircle(circleCenter, radius, axis, projectionC);
 
             // detect overlap, if not return false
             if (projectionP.min >= projectionC.max || projectionC.min >= projectionP.max) {
-                return new CollisionResult(false);
+                return result.reset();
             }
 
             float axisDepth = Math.min(projectionC.max - projectionP.min, projectionP.max - projectionC.min);
 
             if(axisDepth < depth) {
                 depth = axisDepth;
-                normal = axis;
+                normal.set(axis);
             }
         }
 
         // calculate normal and depth
         int closestPointIndex = Collisions.findClosestPointOnPolygon(circleCenter, vertices);
-        if(closestPointIndex == -1) return new CollisionResult(false);
+        if(closestPointIndex == -1) return result.reset();
         FlatVector cp = vertices[closestPointIndex];
 
 //        axis = FlatMath.subtract(cp, circleCenter);
 //        axis = FlatMath.normalize(axis);
 
-        PolygonProjection projectionP = projectPolygon(vertices, axis);
-        PolygonProjection projectionC = projectCircle(circleCenter, radius, axis);
+        projectPolygon(vertices, axis, projectionP);
+        projectCircle(circleCenter, radius, axis, projectionC);
 
         // detect overlap, if not return false
         if (projectionP.min >= projectionC.max || projectionC.min >= projectionP.max) {
-            return new CollisionResult(false);
+            return result.reset();
         }
 
         float axisDepth = Math.min(projectionC.max - projectionP.min, projectionP.max - projectionC.min);
 
         if (axisDepth < depth) {
             depth = axisDepth;
-            normal = axis;
+            normal.set(axis);
         }
 
         depth /= FlatMath.length(normal);
-        normal = FlatMath.normalize(normal);
+        FlatMath.normalize(normal, normal);
 
-        // make sure the normal is always pointing from the first one to the second
-        FlatVector polygonCenter = findArithmeticMean(vertices);
-        FlatVector direction = FlatMath.subtract(polygonCenter, circleCenter);
-        if (FlatMath.dot(direction, normal) < 0f) {
-            normal = FlatMath.negative(normal);
+        float directionX = polygonCenter.getX() - circleCenter.getX();
+        float directionY = polygonCenter.getY() - circleCenter.getY();
+        if (directionX * normal.getX() + directionY * normal.getY() < 0f) {
+            normal.negative();
         }
 
-        return new CollisionResult(true, normal, depth);
+        result.isIntersect = true;
+        result.depth = depth;
+        return true;
     }
 
-    public static CollisionResult detectIntersectCirclePolygon(
-            FlatVector circleCenter, float radius, FlatVector polygonCenter, FlatVector[] vertices) {
 
-        FlatVector normal = FlatVector.getZero();
+    /**
+     * same as above, but takes the unit edge normals of the polygon as axes instead of rebuilding them from the edges
+     *
+     * @param axes transformed unit edge normals of the polygon, see FlatBody.getTransformedNormals
+     * @param result manifold and scratch space owned by the caller
+     * @return is intersected
+     */
+    public static boolean detectIntersectCirclePolygon(
+            FlatVector circleCenter, float radius, FlatVector polygonCenter, FlatVector[] vertices, FlatVector[] axes,
+            CollisionResult result) {
+
+        PolygonProjection projectionP = result.projectionA;
+        PolygonProjection projectionC = result.projectionB;
+        FlatVector normal = result.normal.set(0f, 0f);
         float depth = Float.MAX_VALUE;
-        FlatVector axis = null;
         // find overlap in projections
-        for (int i = 0; i < vertices.length; i++) {
-            FlatVector va = vertices[i];
-            FlatVector vb = vertices[(i + 1) % vertices.length];
-
-            FlatVector edge = FlatMath.subtract(vb, va);
-            // -y means normal direction is pointing outside of polygon
-            axis = new FlatVector(-edge.getY(), edge.getX());
-            axis = FlatMath.normalize(axis);
-
-            PolygonProjection projectionP = projectPolygon(vertices, axis);
-            PolygonProjection projectionC = projectCircle(circleCenter, radius, axis);
+        for (FlatVector axis : axes) {
+            projectPolygon(vertices, axis, projectionP);
+            projectCircle(circleCenter, radius, axis, projectionC);
 
             // detect overlap, if not return false
             if (projectionP.min >= projectionC.max || projectionC.min >= projectionP.max) {
-                return new CollisionResult(false);
+                return result.reset();
             }
 
             float axisDepth = Math.min(projectionC.max - projectionP.min, projectionP.max - projectionC.min);
 
             if(axisDepth < depth) {
                 depth = axisDepth;
-                normal = axis;
+                normal.set(axis);
             }
         }
 
-        // calculate normal and depth
-        int closestPointIndex = Collisions.findClosestPointOnPolygon(circleCenter, vertices);
-        if(closestPointIndex == -1) return new CollisionResult(false);
-        FlatVector cp = vertices[closestPointIndex];
-
-//        axis = FlatMath.subtract(cp, circleCenter);
-//        axis = FlatMath.normalize(axis);
-
-        PolygonProjection projectionP = projectPolygon(vertices, axis);
-        PolygonProjection projectionC = projectCircle(circleCenter, radius, axis);
-
-        // detect overlap, if not return false
-        if (projectionP.min >= projectionC.max || projectionC.min >= projectionP.max) {
-            return new CollisionResult(false);
-        }
-
-        float axisDepth = Math.min(projectionC.max - projectionP.min, projectionP.max - projectionC.min);
-
-        if (axisDepth < depth) {
-            depth = axisDepth;
-            normal = axis;
+        float directionX = polygonCenter.getX() - circleCenter.getX();
+        float directionY = polygonCenter.getY() - circleCenter.getY();
+        if (directionX * normal.getX() + directionY * normal.getY() < 0f) {
+            normal.negative();
         }
 
-        depth /= FlatMath.length(normal);
-        normal = FlatMath.normalize(normal);
-
-        FlatVector direction = FlatMath.subtract(polygonCenter, circleCenter);
-        if (FlatMath.dot(direction, normal) < 0f) {
-            normal = FlatMath.negative(normal);
-        }
-
-        return new CollisionResult(true, normal, depth);
+        result.isIntersect = true;
+        result.depth = depth;
+        return true;
     }
 
 
@@ -180,147 +195,156 @@ public class Collisions {
      * @return is intersected
      */
     public static CollisionResult detectIntersectPolygons(FlatVector[] verticesA, FlatVector[] verticesB) {
+        CollisionResult result = new CollisionResult();
+        detectIntersectPolygons(verticesA, verticesB, result);
+        return result;
+    }
 
-        FlatVector normal = FlatVector.getZero();
-        float depth = Float.MAX_VALUE;
+    /**
+     * same as above, but writes into a reusable result instead of allocating
+     *
+     * @param result manifold and scratch space owned by the caller
+     * @return is intersected
+     */
+    public static boolean detectIntersectPolygons(FlatVector[] verticesA, FlatVector[] verticesB, CollisionResult result) {
+        // make sure the normal is always pointing from the first one to the second
+        float centerAX = findArithmeticMean(verticesA, result.center).getX();
+        float centerAY = result.center.getY();
+        FlatVector centerB = findArithmeticMean(verticesB, result.center);
 
-        for (int i = 0; i < verticesA.length; i++) {
-            FlatVector va = verticesA[i];
-            FlatVector vb = verticesA[(i + 1) % verticesA.length];
+        if (!findMinimumSeparation(verticesA, verticesB, result)) return false;
 
-            FlatVector edge = FlatMath.subtract(vb, va);
-            // -y means normal direction is pointing outside of polygon
-            FlatVector axis = new FlatVector(-edge.getY(), edge.getX());
-            axis = FlatMath.normalize(axis);
-
-            PolygonProjection projectionA = projectPolygon(verticesA, axis);
-            PolygonProjection projectionB = projectPolygon(verticesB, axis);
+        orientNormal(centerB.getX() - centerAX, centerB.getY() - centerAY, result);
+        return true;
+    }
 
-            // detect overlap
-            if(projectionA.min >= projectionB.max || projectionB.min >= projectionA.max) {
-                return new CollisionResult(false);
-            }
+    public static CollisionResult detectIntersectPolygons(FlatVector centerA, FlatVector[] verticesA, FlatVector centerB, FlatVector[] verticesB) {
+        CollisionResult result = new CollisionResult();
+        detectIntersectPolygons(centerA, verticesA, centerB, verticesB, result);
+        return result;
+    }
 
-            float axisDepth = Math.min(projectionB.max - projectionA.min, projectionA.max - projectionB.min);
+    /**
+     * same as above, but writes into a reusable result instead of allocating
+     *
+     * @param result manifold and scratch space owned by the caller
+     * @return is intersected
+     */
+    public static boolean detectIntersectPolygons(FlatVector centerA, FlatVector[] verticesA,
+                                                  FlatVector centerB, FlatVector[] verticesB, CollisionResult result) {
+        if (!findMinimumSeparation(verticesA, verticesB, result)) return false;
 
-            if(axisDepth < depth) {
-                depth = axisDepth;
-                normal = axis;
-            }
-        }
+        orientNormal(centerB.getX() - centerA.getX(), centerB.getY() - centerA.getY(), result);
+        return true;
+    }
 
-        for (int i = 0; i < verticesB.length; i++) {
-            FlatVector va = verticesB[i];
-            FlatVector vb = verticesB[(i + 1) % verticesB.length];
+    /**
+     * same as above, but takes the unit edge normals of both polygons as axes instead of rebuilding them from the edges
+     * <p>
+     * parallel edges are already left out of the axes, so two boxes are tested on 4 axes instead of 8
+     *
+     * @param axesA transformed unit edge normals of first polygon, see FlatBody.getTransformedNormals
+     * @param axesB transformed unit edge normals of second polygon
+     * @param result manifold and scratch space owned by the caller
+     * @return is intersected
+     */
+    public static boolean detectIntersectPolygons(FlatVector centerA, FlatVector[] verticesA, FlatVector[] axesA,
+                                                  FlatVector centerB, FlatVector[] verticesB, FlatVector[] axesB,
+                                                  CollisionResult result) {
+        result.normal.set(0f, 0f);
+        result.depth = Float.MAX_VALUE;
+
+        if (!findMinimumSeparationOnAxes(axesA, verticesA, verticesB, result)) return result.reset();
+        if (!findMinimumSeparationOnAxes(axesB, verticesA, verticesB, result)) return result.reset();
+
+        result.isIntersect = true;
+        orientNormal(centerB.getX() - centerA.getX(), centerB.getY() - centerA.getY(), result);
+        return true;
+    }
 
-            FlatVector edge = FlatMath.subtract(vb, va);
-            // -y means normal direction is pointing outside of polygon
-            FlatVector axis = new FlatVector(-edge.getY(), edge.getX());
-            axis = FlatMath.normalize(axis);
+    // project both polygons onto given unit axes
+    private static boolean findMinimumSeparationOnAxes(FlatVector[] axes, FlatVector[] verticesA, FlatVector[] verticesB,
+                                                       CollisionResult result) {
+        PolygonProjection projectionA = result.projectionA;
+        PolygonProjection projectionB = result.projectionB;
 
-            PolygonProjection projectionA = projectPolygon(verticesA, axis);
-            PolygonProjection projectionB = projectPolygon(verticesB, axis);
+        for (FlatVector axis : axes) {
+            projectPolygon(verticesA, axis, projectionA);
+            projectPolygon(verticesB, axis, projectionB);
 
             // detect overlap
             if(projectionA.min >= projectionB.max || projectionB.min >= projectionA.max) {
-                return new CollisionResult(false);
+                return false;
             }
 
             float axisDepth = Math.min(projectionB.max - projectionA.min, projectionA.max - projectionB.min);
 
-            if(axisDepth < depth) {
-                depth = axisDepth;
-                normal = axis;
+            if(axisDepth < result.depth) {
+                result.depth = axisDepth;
+                result.normal.set(axis);
             }
-
-        }
-
-//        depth /= FlatMath.length(normal);
-//        normal = FlatMath.normalize(normal);
-
-        // make sure the normal is always pointing from the first one to the second
-        FlatVector centerA = findArithmeticMean(verticesA);
-        FlatVector centerB = findArithmeticMean(verticesB);
-
-        FlatVector direction = FlatMath.subtract(centerB, centerA);
-
-        if(FlatMath.dot(direction, normal) < 0f) {
-            normal = FlatMath.negative(normal);
         }
-
-        return new CollisionResult(true, normal, depth);
+        return true;
     }
 
-    public static CollisionResult detectIntersectPolygons(FlatVector centerA, FlatVector[] verticesA, FlatVector centerB, FlatVector[] verticesB) {
-
-        FlatVector normal = FlatVector.getZero();
-        float depth = Float.MAX_VALUE;
-
-        for (int i = 0; i < verticesA.length; i++) {
-            FlatVector va = verticesA[i];
-            FlatVector vb = verticesA[(i + 1) % verticesA.length];
-
-            FlatVector edge = FlatMath.subtract(vb, va);
-            // -y means normal direction is pointing outside of polygon
-            FlatVector axis = new FlatVector(-edge.getY(), edge.getX());
-            axis = FlatMath.normalize(axis);
+    // sat over the edge normals of both polygons, keeps the axis with the smallest overlap in result
+    private static boolean findMinimumSeparation(FlatVector[] verticesA, FlatVector[] verticesB, CollisionResult result) {
+        result.normal.set(0f, 0f);
+        result.depth = Float.MAX_VALUE;
 
-            PolygonProjection projectionA = projectPolygon(verticesA, axis);
-            PolygonProjection projectionB = projectPolygon(verticesB, axis);
+        if (!findMinimumSeparation(verticesA, verticesA, verticesB, result)) return result.reset();
+        if (!findMinimumSeparation(verticesB, verticesA, verticesB, result)) return result.reset();
 
-            // detect overlap
-            if(projectionA.min >= projectionB.max || projectionB.min >= projectionA.max) {
-                return new CollisionResult(false);
-            }
+//        depth /= FlatMath.length(normal);
+//        normal = FlatMath.normalize(normal);
 
-            float axisDepth = Math.min(projectionB.max - projectionA.min, projectionA.max - projectionB.min);
+        result.isIntersect = true;
+        return true;
+    }
 
-            if(axisDepth < depth) {
-                depth = axisDepth;
-                normal = axis;
-            }
-        }
+    // project both polygons onto the edge normals of one of them
+    private static boolean findMinimumSeparation(FlatVector[] edges, FlatVector[] verticesA, FlatVector[] verticesB,
+                                                 CollisionResult result) {
+        PolygonProjection projectionA = result.projectionA;
+        PolygonProjection projectionB = result.projectionB;
+        FlatVector axis = result.axis;
 
-        for (int i = 0; i < verticesB.length; i++) {
-            FlatVector va = verticesB[i];
-            FlatVector vb = verticesB[(i + 1) % verticesB.length];
+        for (int i = 0; i < edges.length; i++) {
+            FlatVector va = edges[i];
+            FlatVector vb = edges[(i + 1) % edges.length];
 
-            FlatVector edge = FlatMath.subtract(vb, va);
             // -y means normal direction is pointing outside of polygon
-            FlatVector axis = new FlatVector(-edge.getY(), edge.getX());
-            axis = FlatMath.normalize(axis);
+            axis.set(-(vb.getY() - va.getY()), vb.getX() - va.getX());
+            FlatMath.normalize(axis, axis);
 
-            PolygonProjection projectionA = projectPolygon(verticesA, axis);
-            PolygonProjection projectionB = projectPolygon(verticesB, axis);
+            projectPolygon(verticesA, axis, projectionA);
+            projectPolygon(verticesB, axis, projectionB);
 
             // detect overlap
             if(projectionA.min >= projectionB.max || projectionB.min >= projectionA.max) {
-                return new CollisionResult(false);
+                return false;
             }
 
             float axisDepth = Math.min(projectionB.max - projectionA.min, projectionA.max - projectionB.min);
 
-            if(axisDepth < depth) {
-                depth = axisDepth;
-                normal = axis;
+            if(axisDepth < result.depth) {
+                result.depth = axisDepth;
+                result.normal.set(axis);
             }
-
         }
+        return true;
+    }
 
-//        depth /= FlatMath.length(normal);
-//        normal = FlatMath.normalize(normal);
-
-        FlatVector direction = FlatMath.subtract(centerB, centerA);
-
-        if(FlatMath.dot(direction, normal) < 0f) {
-            normal = FlatMath.negative(normal);
+    // flip the normal if it points against the direction from the first body to the second
+    private static void orientNormal(float directionX, float directionY, CollisionResult result) {
+        FlatVector normal = result.normal;
+        if(directionX * normal.getX() + directionY * normal.getY() < 0f) {
+            normal.negative();
         }
-
-        return new CollisionResult(true, normal, depth);
     }
 
 
-    private static FlatVector findArithmeticMean(FlatVector[] vertices) {
+    private static FlatVector findArithmeticMean(FlatVector[] vertices, FlatVector out) {
         float sumX = 0f;
         float sumY = 0f;
 
@@ -329,7 +353,7 @@ public class Collisions {
             sumX += v.getX();
             sumY += v.getY();
         }
-        return new FlatVector(sumX / vertices.length, sumY / vertices.length);
+        return out.set(sumX / vertices.length, sumY / vertices.length);
     }
 
     /**
@@ -340,12 +364,19 @@ public class Collisions {
      * @param radius
      * @param axis
      */
-    private static PolygonProjection projectCircle(FlatVector center, float radius, FlatVector axis) {
-        FlatVector direction = FlatMath.normalize(axis);
-        FlatVector directionAndRadius = FlatMath.multiply(direction, radius);
+    private static void projectCircle(FlatVector center, float radius, FlatVector axis, PolygonProjection projection) {
+        float len = FlatMath.length(axis);
+        float directionX = 0f;
+        float directionY = 0f;
+        if (len != 0) {
+            directionX = axis.getX() / len;
+            directionY = axis.getY() / len;
+        }
+        float directionAndRadiusX = directionX * radius;
+        float directionAndRadiusY = directionY * radius;
 
-        float min = FlatMath.dot(FlatMath.add(center, directionAndRadius), axis);
-        float max = FlatMath.dot(FlatMath.subtract(center, directionAndRadius), axis);
+        float min = (center.getX() + directionAndRadiusX) * axis.getX() + (center.getY() + directionAndRadiusY) * axis.getY();
+        float max = (center.getX() - directionAndRadiusX) * axis.getX() + (center.getY() - directionAndRadiusY) * axis.getY();
 
         if (min > max) {
             float t = min;
@@ -353,7 +384,8 @@ public class Collisions {
             max = t;
         }
 
-        return new PolygonProjection(min, max);
+        projection.min = min;
+        projection.max = max;
     }
 
     /**
@@ -362,50 +394,286 @@ public class Collisions {
      *
      * @param vertices
      * @param axis
-     * @return
      */
-    private static PolygonProjection projectPolygon(FlatVector[] vertices, FlatVector axis) {
+    private static void projectPolygon(FlatVector[] vertices, FlatVector axis, PolygonProjection projection) {
         float min = Float.MAX_VALUE;
-        float max = Float.MIN_VALUE;
+        // Float.MIN_VALUE is the smallest positive float, it would clip projections that are all negative
+        float max = -Float.MAX_VALUE;
 
         for (FlatVector v : vertices) {
-            float projection = FlatMath.dot(v, axis);
+            float projection1 = FlatMath.dot(v, axis);
 
-            if (projection < min) min = projection;
-            if (projection > max) max = projection;
+            if (projection1 < min) min = projection1;
+            if (projection1 > max) max = projection1;
         }
-        return new PolygonProjection(min, max);
+
+        projection.min = min;
+        projection.max = max;
     }
 
     public static CollisionResult detectIntersectCircles(FlatVector centerA, float radiusA,
                                                          FlatVector centerB, float radiusB) {
+        CollisionResult result = new CollisionResult();
+        detectIntersectCircles(centerA, radiusA, centerB, radiusB, result);
+        return result;
+    }
+
+    /**
+     * same as above, but writes into a reusable result instead of allocating
+     *
+     * @param result manifold owned by the caller
+     * @return is intersected
+     */
+    public static boolean detectIntersectCircles(FlatVector centerA, float radiusA,
+                                                 FlatVector centerB, float radiusB, CollisionResult result) {
         float distance = FlatMath.distance(centerA, centerB);
         float radii = radiusA + radiusB;
 
         if (distance >= radii)
-            return new CollisionResult(false);
+            return result.reset();
 
-        return new CollisionResult(true,
-                FlatMath.normalize(FlatMath.subtract(centerB, centerA)),
-                radii - distance);
+        FlatMath.normalize(FlatMath.subtract(centerB, centerA, result.normal), result.normal);
+        result.depth = radii - distance;
+        result.isIntersect = true;
+        return true;
+    }
+
+    /**
+     * where a ray enters a bounding box
+     *
+     * @return distance along the ray, 0 when it starts inside, -1 when it misses the box within maxDistance
+     */
+    static float raycastBox(float originX, float originY, float directionX, float directionY, float maxDistance,
+                            float minX, float minY, float maxX, float maxY) {
+        float enter = 0f;
+        float exit = maxDistance;
+
+        if (directionX == 0f) {
+            if (originX < minX || originX > maxX) return -1f;
+        } else {
+            float inverse = 1f / directionX;
+            float near = (minX - originX) * inverse;
+            float far = (maxX - originX) * inverse;
+            if (near > far) {
+                float t = near;
+                near = far;
+                far = t;
+            }
+            enter = Math.max(enter, near);
+            exit = Math.min(exit, far);
+            if (enter > exit) return -1f;
+        }
+
+        if (directionY == 0f) {
+            if (originY < minY || originY > maxY) return -1f;
+        } else {
+            float inverse = 1f / directionY;
+            float near = (minY - originY) * inverse;
+            float far = (maxY - originY) * inverse;
+            if (near > far) {
+                float t = near;
+                near = far;
+                far = t;
+            }
+            enter = Math.max(enter, near);
+            exit = Math.min(exit, far);
+            if (enter > exit) return -1f;
+        }
+        return enter;
+    }
+
+    /**
+     * where a ray enters a circle, a ray starting inside the circle does not hit it
+     *
+     * @param directionX x of the unit direction of the ray
+     * @param result     distance along the ray and normal of the circle at the hit point
+     * @return is hit within maxDistance
+     */
+    public static boolean raycastCircle(float originX, float originY, float directionX, float directionY,
+                                        float maxDistance, float centerX, float centerY, float radius,
+                                        RaycastResult result) {
+        float mx = originX - centerX;
+        float my = originY - centerY;
+        float c = mx * mx + my * my - radius * radius;
+        if (c < 0f) return false;
+
+        float b = mx * directionX + my * directionY;
+        float discriminant = b * b - c;
+        if (b > 0f || discriminant < 0f) return false;
+
+        float distance = -b - (float) Math.sqrt(discriminant);
+        if (distance > maxDistance) return false;
+
+        result.distance = Math.max(distance, 0f);
+        result.normal.set((mx + directionX * result.distance) / radius, (my + directionY * result.distance) / radius);
+        return true;
+    }
+
+    /**
+     * where a ray enters a convex polygon, the ray is clipped against every edge.
+     * a ray starting inside the polygon does not hit it
+     *
+     * @param directionX x of the unit direction of the ray
+     * @param vertices   vertices of the polygon in either winding order
+     * @param result     distance along the ray and unit normal of the edge it enters through
+     * @return is hit within maxDistance
+     */
+    public static boolean raycastPolygon(float originX, float originY, float directionX, float directionY,
+                                         float maxDistance, FlatVector[] vertices, RaycastResult result) {
+        int n = vertices.length;
+        // twice the signed area, positive for counter clockwise vertices
+        float area = 0f;
+        for (int i = 0; i < n; i++) {
+            FlatVector a = vertices[i];
+            FlatVector b = vertices[(i + 1) % n];
+            area += a.getX() * b.getY() - b.getX() * a.getY();
+        }
+        float outside = area > 0f ? 1f : -1f;
+
+        // the ray is inside every edge between enter and exit
+        float enter = -Float.MAX_VALUE;
+        float exit = maxDistance;
+        float enterNormalX = 0f;
+        float enterNormalY = 0f;
+        for (int i = 0; i < n; i++) {
+            FlatVector a = vertices[i];
+            FlatVector b = vertices[(i + 1) % n];
+            // edge normal pointing out of the polygon, not normalized
+            float normalX = (b.getY() - a.getY()) * outside;
+            float normalY = (a.getX() - b.getX()) * outside;
+
+            float numerator = normalX * (a.getX() - originX) + normalY * (a.getY() - originY);
+            float denominator = normalX * directionX + normalY * directionY;
+            if (denominator == 0f) {
+                // parallel to the edge and outside of it
+                if (numerator < 0f) return false;
+                continue;
+            }
+
+            float t = numerator / denominator;
+            if (denominator < 0f) {
+                if (t > enter) {
+                    enter = t;
+                    enterNormalX = normalX;
+                    enterNormalY = normalY;
+                }
+            } else if (t < exit) {
+                exit = t;
+            }
+            if (exit < enter) return false;
+        }
+
+        // entered behind the origin, so it starts inside or the polygon is behind it
+        if (enter < 0f) return false;
+
+        float length = (float) Math.sqrt(enterNormalX * enterNormalX + enterNormalY * enterNormalY);
+        result.distance = enter;
+        result.normal.set(enterNormalX / length, enterNormalY / length);
+        return true;
+    }
+
+    /**
+     * does a circle overlap a box, touching counts. a box of no size tests a point
+     */
+    public static boolean detectIntersectCircleAABB(float centerX, float centerY, float radius,
+                                                    float minX, float minY, float maxX, float maxY) {
+        // closest point of the box to the center
+        float dx = centerX - Math.min(Math.max(centerX, minX), maxX);
+        float dy = centerY - Math.min(Math.max(centerY, minY), maxY);
+        return dx * dx + dy * dy <= radius * radius;
+    }
+
+    /**
+     * does a convex polygon overlap a box, touching counts. a box of no size tests a point.
+     * separating axes are the two axes of the box and the edge normals of the polygon
+     *
+     * @param vertices vertices of the polygon in either winding order
+     */
+    public static boolean detectIntersectPolygonAABB(FlatVector[] vertices, float minX, float minY,
+                                                     float maxX, float maxY) {
+        int n = vertices.length;
+        float polygonMinX = Float.MAX_VALUE;
+        float polygonMinY = Float.MAX_VALUE;
+        float polygonMaxX = -Float.MAX_VALUE;
+        float polygonMaxY = -Float.MAX_VALUE;
+        for (int i = 0; i < n; i++) {
+            polygonMinX = Math.min(polygonMinX, vertices[i].getX());
+            polygonMinY = Math.min(polygonMinY, vertices[i].getY());
+            polygonMaxX = Math.max(polygonMaxX, vertices[i].getX());
+            polygonMaxY = Math.max(polygonMaxY, vertices[i].getY());
+        }
+        if (polygonMinX > maxX || minX > polygonMaxX || polygonMinY > maxY || minY > polygonMaxY) return false;
+
+        float centerX = (minX + maxX) * 0.5f;
+        float centerY = (minY + maxY) * 0.5f;
+        float extentX = (maxX - minX) * 0.5f;
+        float extentY = (maxY - minY) * 0.5f;
+        for (int i = 0; i < n; i++) {
+            FlatVector a = vertices[i];
+            FlatVector b = vertices[(i + 1) % n];
+            // edge normal, not normalized, both sides are projected so its direction does not matter
+            float normalX = b.getY() - a.getY();
+            float normalY = a.getX() - b.getX();
+
+            float polygonMin = Float.MAX_VALUE;
+            float polygonMax = -Float.MAX_VALUE;
+            for (int k = 0; k < n; k++) {
+                float projection = vertices[k].getX() * normalX + vertices[k].getY() * normalY;
+                polygonMin = Math.min(polygonMin, projection);
+                polygonMax = Math.max(polygonMax, projection);
+            }
+            float boxCenter = centerX * normalX + centerY * normalY;
+            float boxExtent = extentX * Math.abs(normalX) + extentY * Math.abs(normalY);
+            if (polygonMin > boxCenter + boxExtent || boxCenter - boxExtent > polygonMax) return false;
+        }
+        return true;
+    }
+
+    /**
+     * hit of one ray, reused like CollisionResult
+     */
+    public static class RaycastResult {
+        public float distance;
+        public final FlatVector normal = new FlatVector();
     }
 
     private static class PolygonProjection {
         float min;
         float max;
 
+        public PolygonProjection() {
+        }
+
         public PolygonProjection(float min, float max) {
             this.min = min;
             this.max = max;
         }
     }
 
+    /**
+     * result of one test
+     * <p>
+     * a result can be passed to the detect methods again and again,
+     * it also carries the scratch space those methods need, so a test allocates nothing.
+     * one result must not be shared between threads
+     */
     public static class CollisionResult {
         public boolean isIntersect;
         public FlatVector normal;
         public float depth;
 
+        // scratch space of the detect methods
+        private final PolygonProjection projectionA = new PolygonProjection();
+        private final PolygonProjection projectionB = new PolygonProjection();
+        private final FlatVector axis = new FlatVector();
+        private final FlatVector center = new FlatVector();
+
+        public CollisionResult() {
+            this.normal = new FlatVector();
+        }
+
         public CollisionResult(boolean isIntersect) {
+            this();
             this.isIntersect = isIntersect;
         }
 
@@ -415,6 +683,13 @@ public class Collisions {
             this.depth = depth;
         }
 
+        // mark as not intersected, always returns false so detect methods can return it directly
+        private boolean reset() {
+            this.isIntersect = false;
+            this.depth = 0f;
+            return false;
+        }
+
     }
 //    public static float getIntersectCirclesDepth(FlatVector centerA, float radiusA,
 //                                           FlatVector centerB, float radiusB) {
@@ -0,0 +1,122 @@
+package com.mygdx.game;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * growable list of contacts found by the narrow phase, kept in primitive arrays
+ * <p>
+ * normal points from body a to body b, depth is how far they overlap along the normal
+ */
+public class ContactBuffer {
+
+    private int[] indexA;
+    private int[] indexB;
+    private float[] normalX;
+    private float[] normalY;
+    private float[] depth;
+    private int size;
+
+    public ContactBuffer() {
+        this(16);
+    }
+
+    public ContactBuffer(int capacity) {
+        capacity = Math.max(capacity, 1);
+        this.indexA = new int[capacity];
+        this.indexB = new int[capacity];
+        this.normalX = new float[capacity];
+        this.normalY = new float[capacity];
+        this.depth = new float[capacity];
+        this.size = 0;
+    }
+
+    public void add(int indexA, int indexB, float normalX, float normalY, float depth) {
+        ensureCapacity(this.size + 1);
+
+        int i = this.size++;
+        this.indexA[i] = indexA;
+        this.indexB[i] = indexB;
+        this.normalX[i] = normalX;
+        this.normalY[i] = normalY;
+        this.depth[i] = depth;
+    }
+
+    // append all contacts of another buffer, keeping their order
+    public void addAll(ContactBuffer other) {
+        ensureCapacity(this.size + other.size);
+
+        System.arraycopy(other.indexA, 0, this.indexA, this.size, other.size);
+        System.arraycopy(other.indexB, 0, this.indexB, this.size, other.size);
+        System.arraycopy(other.normalX, 0, this.normalX, this.size, other.size);
+        System.arraycopy(other.normalY, 0, this.normalY, this.size, other.size);
+        System.arraycopy(other.depth, 0, this.depth, this.size, other.size);
+        this.size += other.size;
+    }
+
+    public int getIndexA(int i) {
+        return this.indexA[i];
+    }
+
+    public int getIndexB(int i) {
+        return this.indexB[i];
+    }
+
+    public float getNormalX(int i) {
+        return this.normalX[i];
+    }
+
+    public float getNormalY(int i) {
+        return this.normalY[i];
+    }
+
+    public float getDepth(int i) {
+        return this.depth[i];
+    }
+
+    public int size() {
+        return this.size;
+    }
+
+    public void clear() {
+        this.size = 0;
+    }
+
+    // bytes writeState writes
+    int getStateSize() {
+        return 4 + 5 * 4 * this.size;
+    }
+
+    void writeState(ByteBuffer buffer) {
+        int n = this.size;
+        buffer.putInt(n);
+        FlatBodyStore.putInts(buffer, this.indexA, n);
+        FlatBodyStore.putInts(buffer, this.indexB, n);
+        FlatBodyStore.putFloats(buffer, this.normalX, n);
+        FlatBodyStore.putFloats(buffer, this.normalY, n);
+        FlatBodyStore.putFloats(buffer, this.depth, n);
+    }
+
+    // replace the contacts with the ones writeState wrote
+    void readState(ByteBuffer buffer) {
+        int n = buffer.getInt();
+        ensureCapacity(n);
+        FlatBodyStore.getInts(buffer, this.indexA, n);
+        FlatBodyStore.getInts(buffer, this.indexB, n);
+        FlatBodyStore.getFloats(buffer, this.normalX, n);
+        FlatBodyStore.getFloats(buffer, this.normalY, n);
+        FlatBodyStore.getFloats(buffer, this.depth, n);
+        this.size = n;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= this.indexA.length) return;
+
+        int length = Math.max(capacity, this.indexA.length << 1);
+        this.indexA = Arrays.copyOf(this.indexA, length);
+        this.indexB = Arrays.copyOf(this.indexB, length);
+        this.normalX = Arrays.copyOf(this.normalX, length);
+        this.normalY = Arrays.copyOf(this.normalY, length);
+        this.depth = Arrays.copyOf(this.depth, length);
+    }
+}
@@ -0,0 +1,143 @@
+package com.mygdx.game;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * accumulated normal impulses of the contacts of the last step, keyed by body pair
+ * <p>
+ * contacts come out of the narrow phase sorted by pair, so the contacts of two steps are matched
+ * with one merge walk over both lists instead of a hash lookup per contact
+ */
+class ContactCache {
+
+    // pair keys in ascending order, packed the same way as PairBuffer
+    private long[] keys;
+    private float[] impulses;
+    private int size;
+
+    // contacts of the last body while it is renamed by remove
+    private long[] renamedKeys;
+    private float[] renamedImpulses;
+
+    ContactCache() {
+        this.keys = new long[16];
+        this.impulses = new float[16];
+        this.size = 0;
+        this.renamedKeys = new long[16];
+        this.renamedImpulses = new float[16];
+    }
+
+    static long key(int indexA, int indexB) {
+        return ((long) indexA << 32) | (indexB & 0xFFFFFFFFL);
+    }
+
+    /**
+     * write the impulse of every contact that also touched last step into out, 0 for new contacts
+     *
+     * @param contacts contacts sorted by pair, as the narrow phase leaves them
+     */
+    void load(ContactBuffer contacts, float[] out) {
+        int p = 0;
+        for (int c = 0; c < contacts.size(); c++) {
+            long key = key(contacts.getIndexA(c), contacts.getIndexB(c));
+            while (p < this.size && this.keys[p] < key) p++;
+
+            out[c] = p < this.size && this.keys[p] == key ? this.impulses[p] : 0f;
+        }
+    }
+
+    // remember the impulses of this step for the next one
+    void save(ContactBuffer contacts, float[] impulses) {
+        int count = contacts.size();
+        if (count > this.keys.length) {
+            int length = Math.max(count, this.keys.length << 1);
+            this.keys = Arrays.copyOf(this.keys, length);
+            this.impulses = Arrays.copyOf(this.impulses, length);
+        }
+
+        for (int c = 0; c < count; c++) {
+            this.keys[c] = key(contacts.getIndexA(c), contacts.getIndexB(c));
+        }
+        System.arraycopy(impulses, 0, this.impulses, 0, count);
+        this.size = count;
+    }
+
+    int size() {
+        return this.size;
+    }
+
+    /**
+     * forget the contacts of a removed body, the last body moves into its index
+     *
+     * @param last index of the last body before the removal, larger than any other index
+     */
+    void remove(int index, int last) {
+        // every pair holds at most one of the two, and pairs of the last body are sorted among themselves,
+        // so the kept pairs and the renamed pairs are two sorted lists
+        int kept = 0;
+        int renamed = 0;
+        for (int c = 0; c < this.size; c++) {
+            long key = this.keys[c];
+            int i = (int) (key >>> 32);
+            int j = (int) key;
+            if (i == index || j == index) continue;
+
+            if (j == last) {
+                if (renamed == this.renamedKeys.length) {
+                    this.renamedKeys = Arrays.copyOf(this.renamedKeys, renamed << 1);
+                    this.renamedImpulses = Arrays.copyOf(this.renamedImpulses, renamed << 1);
+                }
+                this.renamedKeys[renamed] = i < index ? key(i, index) : key(index, i);
+                this.renamedImpulses[renamed++] = this.impulses[c];
+            } else {
+                this.keys[kept] = key;
+                this.impulses[kept++] = this.impulses[c];
+            }
+        }
+
+        // merge from the back, the free slots behind the kept pairs fit the renamed ones
+        int c = kept + renamed;
+        this.size = c;
+        while (renamed > 0) {
+            if (kept > 0 && this.keys[kept - 1] > this.renamedKeys[renamed - 1]) {
+                this.keys[--c] = this.keys[--kept];
+                this.impulses[c] = this.impulses[kept];
+            } else {
+                this.keys[--c] = this.renamedKeys[--renamed];
+                this.impulses[c] = this.renamedImpulses[renamed];
+            }
+        }
+    }
+
+    // forget every contact
+    void clear() {
+        this.size = 0;
+    }
+
+    // bytes writeState writes
+    int getStateSize() {
+        return 4 + (8 + 4) * this.size;
+    }
+
+    void writeState(ByteBuffer buffer) {
+        int n = this.size;
+        buffer.putInt(n);
+        buffer.asLongBuffer().put(this.keys, 0, n);
+        buffer.position(buffer.position() + 8 * n);
+        FlatBodyStore.putFloats(buffer, this.impulses, n);
+    }
+
+    // replace the cached impulses with the ones writeState wrote
+    void readState(ByteBuffer buffer) {
+        int n = buffer.getInt();
+        if (n > this.keys.length) {
+            this.keys = new long[n];
+            this.impulses = new float[n];
+        }
+        buffer.asLongBuffer().get(this.keys, 0, n);
+        buffer.position(buffer.position() + 8 * n);
+        FlatBodyStore.getFloats(buffer, this.impulses, n);
+        this.size = n;
+    }
+}
@@ -0,0 +1,273 @@
+package com.mygdx.game;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * changes of the touching pairs from one step to the next, set a ContactListener on FlatWorld to get them
+ * <p>
+ * a pair touching in any pass of a step counts once for the whole step, with the normal and depth of its last pass.
+ * pairs whose bodies are both asleep or static are not tested, they keep touching without events until one wakes up.
+ * bodies are reported by handle, events are overwritten by the next step.
+ * a body removed from the world ends its pairs in the events of the next step, with the handle it had,
+ * FlatWorld.getBodyByHandle returns null for that handle
+ */
+public class ContactEvents {
+
+    // the pair started touching this step
+    public static final int BEGIN = 0;
+    // the pair touched last step and still does
+    public static final int PERSIST = 1;
+    // the pair touched last step and does not anymore, normal and depth are the last ones it had
+    public static final int END = 2;
+
+    // contacts of the events with the handles of their bodies
+    private final ContactBuffer events;
+    private int[] types;
+
+    // pairs touching during the current step and the last one, by body index, sorted by pair
+    private ContactBuffer touching;
+    private ContactBuffer touched;
+    private ContactBuffer merged;
+    // pairs of the last body while it is renamed by removeBody
+    private final ContactBuffer renamed;
+    // pairs of removed bodies, by handle, they end in the events of the next step
+    private final ContactBuffer removed;
+
+    public ContactEvents() {
+        this.events = new ContactBuffer();
+        this.types = new int[16];
+        this.touching = new ContactBuffer();
+        this.touched = new ContactBuffer();
+        this.merged = new ContactBuffer();
+        this.renamed = new ContactBuffer();
+        this.removed = new ContactBuffer();
+    }
+
+    public int size() {
+        return this.events.size();
+    }
+
+    // BEGIN, PERSIST or END
+    public int getType(int e) {
+        return this.types[e];
+    }
+
+    // handle of the first body of the pair, see FlatWorld.getBodyByHandle, null there for a removed body
+    public int getHandleA(int e) {
+        return this.events.getIndexA(e);
+    }
+
+    public int getHandleB(int e) {
+        return this.events.getIndexB(e);
+    }
+
+    public float getNormalX(int e) {
+        return this.events.getNormalX(e);
+    }
+
+    public float getNormalY(int e) {
+        return this.events.getNormalY(e);
+    }
+
+    public float getDepth(int e) {
+        return this.events.getDepth(e);
+    }
+
+    void beginStep() {
+        this.touching.clear();
+    }
+
+    /**
+     * add the contacts of one pass of the step
+     *
+     * @param contacts contacts sorted by pair, as the narrow phase leaves them
+     */
+    void add(ContactBuffer contacts) {
+        if (this.touching.size() == 0) {
+            this.touching.addAll(contacts);
+            return;
+        }
+
+        // merge both sorted lists, a pair found again takes its newer normal and depth
+        ContactBuffer merged = this.merged;
+        ContactBuffer touching = this.touching;
+        merged.clear();
+        int t = 0;
+        int c = 0;
+        while (t < touching.size() || c < contacts.size()) {
+            long keyT = t < touching.size() ? key(touching, t) : Long.MAX_VALUE;
+            long keyC = c < contacts.size() ? key(contacts, c) : Long.MAX_VALUE;
+            if (keyT < keyC) {
+                copy(touching, t++, merged);
+            } else {
+                if (keyT == keyC) t++;
+                copy(contacts, c++, merged);
+            }
+        }
+        this.merged = touching;
+        this.touching = merged;
+    }
+
+    /**
+     * compare the pairs of this step with the last one and write the events
+     */
+    void endStep(FlatBodyStore store) {
+        this.events.clear();
+
+        // pairs of bodies removed since the last step, their handles are gone from the store
+        ContactBuffer removed = this.removed;
+        for (int r = 0; r < removed.size(); r++) {
+            this.addEvent(END, removed.getIndexA(r), removed.getIndexB(r), removed, r);
+        }
+        removed.clear();
+
+        ContactBuffer merged = this.merged;
+        ContactBuffer touching = this.touching;
+        ContactBuffer touched = this.touched;
+        merged.clear();
+        int t = 0;
+        int p = 0;
+        while (t < touching.size() || p < touched.size()) {
+            long keyT = t < touching.size() ? key(touching, t) : Long.MAX_VALUE;
+            long keyP = p < touched.size() ? key(touched, p) : Long.MAX_VALUE;
+            if (keyT < keyP) {
+                this.addEvent(BEGIN, touching, t, store);
+                copy(touching, t++, merged);
+            } else if (keyT == keyP) {
+                this.addEvent(PERSIST, touching, t, store);
+                copy(touching, t++, merged);
+                p++;
+            } else {
+                // resting pairs were skipped by the narrow phase, not separated
+                if (store.isResting(touched.getIndexA(p)) && store.isResting(touched.getIndexB(p))) {
+                    copy(touched, p++, merged);
+                } else {
+                    this.addEvent(END, touched, p++, store);
+                }
+            }
+        }
+
+        // the pairs of this step are the last ones for the next step
+        this.merged = touched;
+        this.touched = merged;
+    }
+
+    /**
+     * end the pairs of a removed body, the last body moves into its index
+     *
+     * @param last  index of the last body before the removal, larger than any other index
+     * @param store the store before the removal, for the handles of the ended pairs
+     */
+    void removeBody(int index, int last, FlatBodyStore store) {
+        ContactBuffer touched = this.touched;
+        ContactBuffer merged = this.merged;
+        ContactBuffer renamed = this.renamed;
+        merged.clear();
+        renamed.clear();
+        for (int p = 0; p < touched.size(); p++) {
+            int i = touched.getIndexA(p);
+            int j = touched.getIndexB(p);
+            if (i == index || j == index) {
+                copy(touched, p, store, this.removed);
+                continue;
+            }
+
+            // pairs of the last body stay sorted among themselves after the rename,
+            // a pair whose bodies swap places gets its normal turned around to keep pointing from a to b
+            if (j == last) {
+                if (i < index) {
+                    renamed.add(i, index, touched.getNormalX(p), touched.getNormalY(p), touched.getDepth(p));
+                } else {
+                    renamed.add(index, i, -touched.getNormalX(p), -touched.getNormalY(p), touched.getDepth(p));
+                }
+            } else {
+                copy(touched, p, merged);
+            }
+        }
+
+        touched.clear();
+        int m = 0;
+        int r = 0;
+        while (m < merged.size() || r < renamed.size()) {
+            long keyM = m < merged.size() ? key(merged, m) : Long.MAX_VALUE;
+            long keyR = r < renamed.size() ? key(renamed, r) : Long.MAX_VALUE;
+            if (keyM < keyR) copy(merged, m++, touched);
+            else copy(renamed, r++, touched);
+        }
+    }
+
+    // forget every pair and event, the next step starts with BEGIN for every touching pair
+    void clear() {
+        this.events.clear();
+        this.touching.clear();
+        this.touched.clear();
+        this.removed.clear();
+    }
+
+    // bytes writeState writes
+    int getStateSize() {
+        return this.touched.getStateSize() + this.removed.getStateSize();
+    }
+
+    // only the pairs of the last step and the ones still to end are state,
+    // events and the pairs of a running step are rebuilt by the next one
+    void writeState(ByteBuffer buffer) {
+        this.touched.writeState(buffer);
+        this.removed.writeState(buffer);
+    }
+
+    void readState(ByteBuffer buffer) {
+        this.touched.readState(buffer);
+        this.removed.readState(buffer);
+        this.events.clear();
+        this.touching.clear();
+    }
+
+    // bytes writeEvents writes
+    int getEventsSize() {
+        return 4 * this.events.size() + this.events.getStateSize();
+    }
+
+    // the events of the last step, so they can be read back without stepping
+    void writeEvents(ByteBuffer buffer) {
+        this.events.writeState(buffer);
+        FlatBodyStore.putInts(buffer, this.types, this.events.size());
+    }
+
+    void readEvents(ByteBuffer buffer) {
+        this.events.readState(buffer);
+        int n = this.events.size();
+        if (n > this.types.length) {
+            this.types = new int[n];
+        }
+        FlatBodyStore.getInts(buffer, this.types, n);
+    }
+
+    private void addEvent(int type, ContactBuffer contacts, int c, FlatBodyStore store) {
+        this.addEvent(type, store.handle[contacts.getIndexA(c)], store.handle[contacts.getIndexB(c)], contacts, c);
+    }
+
+    private void addEvent(int type, int handleA, int handleB, ContactBuffer contacts, int c) {
+        int e = this.events.size();
+        if (e == this.types.length) {
+            this.types = Arrays.copyOf(this.types, this.types.length << 1);
+        }
+        this.types[e] = type;
+        this.events.add(handleA, handleB, contacts.getNormalX(c), contacts.getNormalY(c), contacts.getDepth(c));
+    }
+
+    private static long key(ContactBuffer contacts, int c) {
+        return ContactCache.key(contacts.getIndexA(c), contacts.getIndexB(c));
+    }
+
+    // a pair by body index into one by handle
+    private static void copy(ContactBuffer from, int c, FlatBodyStore store, ContactBuffer to) {
+        to.add(store.handle[from.getIndexA(c)], store.handle[from.getIndexB(c)],
+                from.getNormalX(c), from.getNormalY(c), from.getDepth(c));
+    }
+
+    private static void copy(ContactBuffer from, int c, ContactBuffer to) {
+        to.add(from.getIndexA(c), from.getIndexB(c), from.getNormalX(c), from.getNormalY(c), from.getDepth(c));
+    }
+}
@@ -0,0 +1,161 @@
+package com.mygdx.game;
+
+import java.util.Arrays;
+
+/**
+ * groups awake non static bodies into islands, an island is a connected component of bodies touching each other
+ * <p>
+ * islands are found with union find over the contacts, a static body never joins two islands,
+ * so islands share no moving body and can be solved on different threads.
+ * bodies and contacts of an island are listed in their original order
+ */
+class ContactIslands {
+
+    // union find forest over body indices
+    private int[] parent;
+    // island of every root body, -1 when not assigned yet
+    private int[] islandOfRoot;
+    // next free slot of every island while the orders are filled
+    private int[] cursor;
+
+    // bodies of island k are bodyOrder[bodyStart[k] .. bodyStart[k + 1])
+    int[] bodyStart;
+    int[] bodyOrder;
+    // contacts of island k are contactOrder[contactStart[k] .. contactStart[k + 1])
+    int[] contactStart;
+    int[] contactOrder;
+
+    int islandCount;
+
+    ContactIslands() {
+        this.parent = new int[16];
+        this.islandOfRoot = new int[16];
+        this.cursor = new int[16];
+        this.bodyStart = new int[17];
+        this.bodyOrder = new int[16];
+        this.contactStart = new int[17];
+        this.contactOrder = new int[16];
+    }
+
+    /**
+     * build the islands of the awake non static bodies of a store
+     */
+    void build(FlatBodyStore store, ContactBuffer contacts) {
+        int contactCount = contacts.size();
+        this.ensureCapacity(store.size, contactCount);
+
+        // static bodies are never looked up, only the non static rows need a tree of their own
+        int[] dynamic = store.dynamic;
+        int dynamicCount = store.dynamicCount;
+        for (int k = 0; k < dynamicCount; k++) {
+            int i = dynamic[k];
+            this.parent[i] = i;
+            this.islandOfRoot[i] = -1;
+        }
+
+        // static bodies stay out of the forest, so a floor does not join every pile on it
+        for (int c = 0; c < contactCount; c++) {
+            int i = contacts.getIndexA(c);
+            int j = contacts.getIndexB(c);
+            if (store.invMass[i] != 0f && store.invMass[j] != 0f) this.union(i, j);
+        }
+
+        // number the islands in order of their first body, count the bodies of each
+        this.islandCount = 0;
+        Arrays.fill(this.bodyStart, 0, dynamicCount + 1, 0);
+        for (int k = 0; k < dynamicCount; k++) {
+            int i = dynamic[k];
+            if (store.isResting(i)) continue;
+
+            int root = this.find(i);
+            if (this.islandOfRoot[root] == -1) this.islandOfRoot[root] = this.islandCount++;
+            this.bodyStart[this.islandOfRoot[root] + 1]++;
+        }
+        for (int k = 0; k < this.islandCount; k++) {
+            this.bodyStart[k + 1] += this.bodyStart[k];
+        }
+
+        // counting sort keeps the body order inside every island
+        System.arraycopy(this.bodyStart, 0, this.cursor, 0, this.islandCount);
+        for (int k = 0; k < dynamicCount; k++) {
+            int i = dynamic[k];
+            if (store.isResting(i)) continue;
+            this.bodyOrder[this.cursor[this.islandOfRoot[this.find(i)]]++] = i;
+        }
+
+        // contacts belong to the island of their moving body
+        Arrays.fill(this.contactStart, 0, this.islandCount + 1, 0);
+        for (int c = 0; c < contactCount; c++) {
+            this.contactStart[this.islandOf(store, contacts, c) + 1]++;
+        }
+        for (int k = 0; k < this.islandCount; k++) {
+            this.contactStart[k + 1] += this.contactStart[k];
+        }
+
+        System.arraycopy(this.contactStart, 0, this.cursor, 0, this.islandCount);
+        for (int c = 0; c < contactCount; c++) {
+            this.contactOrder[this.cursor[this.islandOf(store, contacts, c)]++] = c;
+        }
+    }
+
+    /**
+     * put every island to sleep whose bodies all rested for timeToSleep,
+     * a pile falls asleep at once instead of the bodies waking each other up
+     */
+    void sleep(FlatBodyStore store, float timeToSleep) {
+        for (int k = 0; k < this.islandCount; k++) {
+            int start = this.bodyStart[k];
+            int end = this.bodyStart[k + 1];
+
+            float minSleepTime = Float.MAX_VALUE;
+            for (int b = start; b < end; b++) {
+                minSleepTime = Math.min(minSleepTime, store.sleepTime[this.bodyOrder[b]]);
+            }
+            if (minSleepTime < timeToSleep) continue;
+
+            for (int b = start; b < end; b++) {
+                store.sleep(this.bodyOrder[b]);
+            }
+        }
+    }
+
+    private int islandOf(FlatBodyStore store, ContactBuffer contacts, int c) {
+        int i = contacts.getIndexA(c);
+        if (store.invMass[i] == 0f) i = contacts.getIndexB(c);
+        return this.islandOfRoot[this.find(i)];
+    }
+
+    // path halving keeps the trees flat without recursion
+    private int find(int i) {
+        while (this.parent[i] != i) {
+            this.parent[i] = this.parent[this.parent[i]];
+            i = this.parent[i];
+        }
+        return i;
+    }
+
+    private void union(int i, int j) {
+        int rootI = this.find(i);
+        int rootJ = this.find(j);
+        if (rootI == rootJ) return;
+
+        // the smaller index becomes the root, so the result does not depend on contact order
+        if (rootI < rootJ) this.parent[rootJ] = rootI;
+        else this.parent[rootI] = rootJ;
+    }
+
+    private void ensureCapacity(int bodyCount, int contactCount) {
+        if (bodyCount > this.parent.length) {
+            int length = Math.max(bodyCount, this.parent.length << 1);
+            this.parent = new int[length];
+            this.islandOfRoot = new int[length];
+            this.cursor = new int[length];
+            this.bodyStart = new int[length + 1];
+            this.bodyOrder = new int[length];
+            this.contactStart = new int[length + 1];
+        }
+        if (contactCount > this.contactOrder.length) {
+            this.contactOrder = new int[Math.max(contactCount, this.contactOrder.length << 1)];
+        }
+    }
+}
@@ -0,0 +1,607 @@
+package com.mygdx.game;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.IntConsumer;
+
+/**
+ * bounding volume hierarchy broadphase, works with bodies of any size
+ * <p>
+ * every body owns a leaf holding a fattened copy of its bounding box.
+ * as long as the body stays inside its fat box the tree is left alone,
+ * only bodies that moved out of it are removed and inserted again.
+ * the tree is kept balanced by rotating nodes on the way back up after every insertion and removal.
+ * many bodies added at once are built into a balanced subtree of their own, which is then inserted like a leaf.
+ * a raycast walks down the nodes its ray crosses, the nearer child first, so a closest hit clips away the rest early,
+ * a box query walks down the nodes overlapping the box
+ * <p>
+ * nodes live in a pool of primitive arrays and are referred to by their index, -1 means no node
+ */
+public class DynamicTreeBroadphase implements Broadphase {
+
+    public static final float DEFAULT_MARGIN = 4f;
+
+    private static final int NULL_NODE = -1;
+    // at least this many new leaves in one call are built into a subtree instead of inserted one by one
+    private static final int MIN_NEW_LEAVES_TO_BUILD = 32;
+
+    // how far the fat box reaches out of the tight box on every side
+    private final float margin;
+
+    // node pool, a free node has height -1 and uses parent as the next free node
+    private float[] nodeMinX;
+    private float[] nodeMinY;
+    private float[] nodeMaxX;
+    private float[] nodeMaxY;
+    private int[] parent;
+    private int[] child1;
+    private int[] child2;
+    private int[] height;
+    // body index of a leaf
+    private int[] nodeBody;
+    private int nodeCapacity;
+    private int freeList;
+    private int root;
+
+    // leaf and tight bounding box indexed by body index
+    private int[] proxyOfBody;
+    private float[] minX;
+    private float[] minY;
+    private float[] maxX;
+    private float[] maxY;
+    private int bodyCount;
+
+    // bodies added since the last call, and the leaves made for them when they are built into a subtree
+    private int addedCount;
+    private int[] newLeaves;
+    // center of every new leaf along the split axis, only used while building
+    private float[] newLeafCenter;
+
+    // traversal stack reused by queries
+    private int[] stack;
+
+    public DynamicTreeBroadphase() {
+        this(DEFAULT_MARGIN);
+    }
+
+    public DynamicTreeBroadphase(float margin) {
+        if (margin < 0f) {
+            throw new IllegalArgumentException("margin can not be negative");
+        }
+        this.margin = margin;
+
+        this.nodeCapacity = 0;
+        this.freeList = NULL_NODE;
+        this.root = NULL_NODE;
+        growNodes(16);
+
+        this.proxyOfBody = new int[16];
+        this.minX = new float[16];
+        this.minY = new float[16];
+        this.maxX = new float[16];
+        this.maxY = new float[16];
+        this.bodyCount = 0;
+        this.newLeaves = new int[16];
+        this.newLeafCenter = new float[16];
+
+        this.stack = new int[64];
+    }
+
+    public float getMargin() {
+        return margin;
+    }
+
+    /**
+     * @return height of the tree, 0 for a single leaf, -1 when empty
+     */
+    public int getHeight() {
+        return this.root == NULL_NODE ? -1 : this.height[this.root];
+    }
+
+    @Override
+    public void add(int index) {
+        ensureBodyCapacity(this.bodyCount + 1);
+        // the leaf is created on the next call to findPairs, once the bounding box is known
+        this.proxyOfBody[this.bodyCount++] = NULL_NODE;
+        this.addedCount++;
+    }
+
+    @Override
+    public void addAll(int index, int count) {
+        ensureBodyCapacity(this.bodyCount + count);
+        Arrays.fill(this.proxyOfBody, this.bodyCount, this.bodyCount + count, NULL_NODE);
+        this.bodyCount += count;
+        this.addedCount += count;
+    }
+
+    @Override
+    public void remove(int index) {
+        int proxy = this.proxyOfBody[index];
+        if (proxy != NULL_NODE) {
+            removeLeaf(proxy);
+            freeNode(proxy);
+        }
+
+        // the leaf of the last body is renamed, nothing else in the tree changes
+        int last = --this.bodyCount;
+        if (last == index) return;
+
+        int moved = this.proxyOfBody[last];
+        this.proxyOfBody[index] = moved;
+        if (moved != NULL_NODE) this.nodeBody[moved] = index;
+    }
+
+    @Override
+    public void findPairs(List<FlatBody> bodies, PairBuffer pairs) {
+        pairs.clear();
+        update(bodies);
+
+        for (int i = 0; i < this.bodyCount; i++) {
+            query(i, pairs);
+        }
+    }
+
+    @Override
+    public void update(List<FlatBody> bodies) {
+        boolean isBuildingNewLeaves = this.addedCount >= MIN_NEW_LEAVES_TO_BUILD;
+        if (isBuildingNewLeaves && this.newLeaves.length < this.addedCount) {
+            this.newLeaves = new int[this.addedCount];
+            this.newLeafCenter = new float[this.addedCount];
+        }
+        int newLeafCount = 0;
+
+        // refit, only bodies that left their fat box are moved in the tree
+        for (int i = 0; i < this.bodyCount; i++) {
+            FlatAABB aabb = bodies.get(i).getBoundingBox();
+            this.minX[i] = aabb.getMin().getX();
+            this.minY[i] = aabb.getMin().getY();
+            this.maxX[i] = aabb.getMax().getX();
+            this.maxY[i] = aabb.getMax().getY();
+
+            int proxy = this.proxyOfBody[i];
+            if (proxy == NULL_NODE) {
+                proxy = allocateNode();
+                this.nodeBody[proxy] = i;
+                this.height[proxy] = 0;
+                setFatBox(proxy, i);
+                if (isBuildingNewLeaves) this.newLeaves[newLeafCount++] = proxy;
+                else insertLeaf(proxy);
+                this.proxyOfBody[i] = proxy;
+            } else if (!containsTightBox(proxy, i)) {
+                removeLeaf(proxy);
+                setFatBox(proxy, i);
+                insertLeaf(proxy);
+            }
+        }
+
+        if (newLeafCount > 0) insertLeaf(buildSubtree(0, newLeafCount));
+        this.addedCount = 0;
+    }
+
+    @Override
+    public void raycast(List<FlatBody> bodies, float originX, float originY, float directionX, float directionY,
+                        float maxDistance, RayVisitor visitor) {
+        int root = this.root;
+        if (root == NULL_NODE || raycastNode(root, originX, originY, directionX, directionY, maxDistance) < 0f) return;
+        raycast(root, originX, originY, directionX, directionY, maxDistance, visitor);
+    }
+
+    // walk a node the ray crosses, returns the max distance left. recursive, so threads do not share a stack
+    private float raycast(int node, float originX, float originY, float directionX, float directionY,
+                          float maxDistance, RayVisitor visitor) {
+        if (this.height[node] == 0) {
+            // the fat box is crossed, make sure the tight one is too
+            int body = this.nodeBody[node];
+            if (Collisions.raycastBox(originX, originY, directionX, directionY, maxDistance,
+                    this.minX[body], this.minY[body], this.maxX[body], this.maxY[body]) < 0f) return maxDistance;
+            return Math.min(maxDistance, visitor.visit(body));
+        }
+
+        int near = this.child1[node];
+        int far = this.child2[node];
+        float nearDistance = raycastNode(near, originX, originY, directionX, directionY, maxDistance);
+        float farDistance = raycastNode(far, originX, originY, directionX, directionY, maxDistance);
+        if (farDistance >= 0f && (nearDistance < 0f || farDistance < nearDistance)) {
+            int t = near;
+            near = far;
+            far = t;
+            float d = nearDistance;
+            nearDistance = farDistance;
+            farDistance = d;
+        }
+
+        if (nearDistance >= 0f) {
+            maxDistance = raycast(near, originX, originY, directionX, directionY, maxDistance, visitor);
+            if (maxDistance <= 0f) return maxDistance;
+        }
+        // the near child may have clipped the ray before the far one starts
+        if (farDistance >= 0f && farDistance <= maxDistance) {
+            maxDistance = raycast(far, originX, originY, directionX, directionY, maxDistance, visitor);
+        }
+        return maxDistance;
+    }
+
+    @Override
+    public void query(List<FlatBody> bodies, float minX, float minY, float maxX, float maxY, IntConsumer visitor) {
+        if (this.root != NULL_NODE) query(this.root, minX, minY, maxX, maxY, visitor);
+    }
+
+    // walk a node overlapping the box. recursive like raycast, so threads do not share a stack
+    private void query(int node, float minX, float minY, float maxX, float maxY, IntConsumer visitor) {
+        if (this.nodeMinX[node] > maxX || minX > this.nodeMaxX[node]) return;
+        if (this.nodeMinY[node] > maxY || minY > this.nodeMaxY[node]) return;
+
+        if (this.height[node] == 0) {
+            // the fat box overlaps, make sure the tight one does too
+            int body = this.nodeBody[node];
+            if (this.minX[body] > maxX || minX > this.maxX[body]) return;
+            if (this.minY[body] > maxY || minY > this.maxY[body]) return;
+            visitor.accept(body);
+            return;
+        }
+        query(this.child1[node], minX, minY, maxX, maxY, visitor);
+        query(this.child2[node], minX, minY, maxX, maxY, visitor);
+    }
+
+    private float raycastNode(int node, float originX, float originY, float directionX, float directionY,
+                              float maxDistance) {
+        return Collisions.raycastBox(originX, originY, directionX, directionY, maxDistance,
+                this.nodeMinX[node], this.nodeMinY[node], this.nodeMaxX[node], this.nodeMaxY[node]);
+    }
+
+    // collect leaves overlapping the tight box of a body, each pair is only reported by its smaller index
+    private void query(int body, PairBuffer pairs) {
+        float qMinX = this.minX[body];
+        float qMinY = this.minY[body];
+        float qMaxX = this.maxX[body];
+        float qMaxY = this.maxY[body];
+
+        int top = 0;
+        this.stack[top++] = this.root;
+
+        while (top > 0) {
+            int node = this.stack[--top];
+            if (node == NULL_NODE) continue;
+
+            if (this.nodeMinX[node] > qMaxX || qMinX > this.nodeMaxX[node]) continue;
+            if (this.nodeMinY[node] > qMaxY || qMinY > this.nodeMaxY[node]) continue;
+
+            if (this.height[node] == 0) {
+                int other = this.nodeBody[node];
+                if (other <= body) continue;
+
+                // fat boxes overlap, make sure the tight ones do too
+                if (this.minX[other] > qMaxX || qMinX > this.maxX[other]) continue;
+                if (this.minY[other] > qMaxY || qMinY > this.maxY[other]) continue;
+
+                pairs.add(body, other);
+            } else {
+                if (top + 2 > this.stack.length) {
+                    this.stack = Arrays.copyOf(this.stack, this.stack.length << 1);
+                }
+                this.stack[top++] = this.child1[node];
+                this.stack[top++] = this.child2[node];
+            }
+        }
+    }
+
+    private boolean containsTightBox(int node, int body) {
+        return this.nodeMinX[node] <= this.minX[body] && this.nodeMinY[node] <= this.minY[body]
+                && this.maxX[body] <= this.nodeMaxX[node] && this.maxY[body] <= this.nodeMaxY[node];
+    }
+
+    private void setFatBox(int node, int body) {
+        this.nodeMinX[node] = this.minX[body] - this.margin;
+        this.nodeMinY[node] = this.minY[body] - this.margin;
+        this.nodeMaxX[node] = this.maxX[body] + this.margin;
+        this.nodeMaxY[node] = this.maxY[body] + this.margin;
+    }
+
+    private void insertLeaf(int leaf) {
+        if (this.root == NULL_NODE) {
+            this.root = leaf;
+            this.parent[leaf] = NULL_NODE;
+            return;
+        }
+
+        float leafMinX = this.nodeMinX[leaf];
+        float leafMinY = this.nodeMinY[leaf];
+        float leafMaxX = this.nodeMaxX[leaf];
+        float leafMaxY = this.nodeMaxY[leaf];
+
+        // walk down to the sibling that makes the tree grow the least, measured by perimeter
+        int index = this.root;
+        while (this.height[index] > 0) {
+            int c1 = this.child1[index];
+            int c2 = this.child2[index];
+
+            float perimeter = perimeter(index);
+            float combinedPerimeter = 2f * (Math.max(this.nodeMaxX[index], leafMaxX) - Math.min(this.nodeMinX[index], leafMinX)
+                    + Math.max(this.nodeMaxY[index], leafMaxY) - Math.min(this.nodeMinY[index], leafMinY));
+
+            // cost of making a new parent for this node and the leaf
+            float cost = 2f * combinedPerimeter;
+            // minimum cost of pushing the leaf further down the tree
+            float inheritanceCost = 2f * (combinedPerimeter - perimeter);
+
+            float cost1 = descendCost(c1, leafMinX, leafMinY, leafMaxX, leafMaxY) + inheritanceCost;
+            float cost2 = descendCost(c2, leafMinX, leafMinY, leafMaxX, leafMaxY) + inheritanceCost;
+
+            if (cost < cost1 && cost < cost2) break;
+
+            index = cost1 < cost2 ? c1 : c2;
+        }
+
+        int sibling = index;
+
+        // create a new parent for the sibling and the leaf
+        int oldParent = this.parent[sibling];
+        int newParent = allocateNode();
+        this.parent[newParent] = oldParent;
+        this.nodeBody[newParent] = NULL_NODE;
+        this.height[newParent] = this.height[sibling] + 1;
+        this.child1[newParent] = sibling;
+        this.child2[newParent] = leaf;
+        this.parent[sibling] = newParent;
+        this.parent[leaf] = newParent;
+        combine(newParent, sibling, leaf);
+
+        if (oldParent != NULL_NODE) {
+            if (this.child1[oldParent] == sibling) this.child1[oldParent] = newParent;
+            else this.child2[oldParent] = newParent;
+        } else {
+            this.root = newParent;
+        }
+
+        fixUpwards(this.parent[leaf]);
+    }
+
+    // build a balanced subtree over newLeaves [from, to), every node splits its leaves at the median of the longer axis
+    private int buildSubtree(int from, int to) {
+        if (to - from == 1) return this.newLeaves[from];
+
+        float minX = Float.MAX_VALUE;
+        float minY = Float.MAX_VALUE;
+        float maxX = -Float.MAX_VALUE;
+        float maxY = -Float.MAX_VALUE;
+        for (int k = from; k < to; k++) {
+            int leaf = this.newLeaves[k];
+            float x = this.nodeMinX[leaf] + this.nodeMaxX[leaf];
+            float y = this.nodeMinY[leaf] + this.nodeMaxY[leaf];
+            minX = Math.min(minX, x);
+            minY = Math.min(minY, y);
+            maxX = Math.max(maxX, x);
+            maxY = Math.max(maxY, y);
+        }
+        boolean isAlongX = maxX - minX >= maxY - minY;
+        for (int k = from; k < to; k++) {
+            int leaf = this.newLeaves[k];
+            this.newLeafCenter[k] = isAlongX ? this.nodeMinX[leaf] + this.nodeMaxX[leaf]
+                    : this.nodeMinY[leaf] + this.nodeMaxY[leaf];
+        }
+        int middle = (from + to) >>> 1;
+        selectNewLeaf(from, to - 1, middle);
+
+        int c1 = buildSubtree(from, middle);
+        int c2 = buildSubtree(middle, to);
+
+        int node = allocateNode();
+        this.nodeBody[node] = NULL_NODE;
+        this.child1[node] = c1;
+        this.child2[node] = c2;
+        this.parent[c1] = node;
+        this.parent[c2] = node;
+        this.height[node] = 1 + Math.max(this.height[c1], this.height[c2]);
+        combine(node, c1, c2);
+        return node;
+    }
+
+    // partially sort newLeaves [low, high] by center so that the leaf at k is the one a full sort would put there
+    private void selectNewLeaf(int low, int high, int k) {
+        float[] center = this.newLeafCenter;
+        int[] leaves = this.newLeaves;
+        while (high > low) {
+            float pivot = center[(low + high) >>> 1];
+            int i = low;
+            int j = high;
+            while (i <= j) {
+                while (center[i] < pivot) i++;
+                while (center[j] > pivot) j--;
+                if (i <= j) {
+                    float c = center[i];
+                    center[i] = center[j];
+                    center[j] = c;
+                    int leaf = leaves[i];
+                    leaves[i++] = leaves[j];
+                    leaves[j--] = leaf;
+                }
+            }
+            if (k <= j) high = j;
+            else if (k >= i) low = i;
+            else return;
+        }
+    }
+
+    private void removeLeaf(int leaf) {
+        if (leaf == this.root) {
+            this.root = NULL_NODE;
+            return;
+        }
+
+        int oldParent = this.parent[leaf];
+        int grandParent = this.parent[oldParent];
+        int sibling = this.child1[oldParent] == leaf ? this.child2[oldParent] : this.child1[oldParent];
+
+        // the sibling takes the place of the parent
+        if (grandParent != NULL_NODE) {
+            if (this.child1[grandParent] == oldParent) this.child1[grandParent] = sibling;
+            else this.child2[grandParent] = sibling;
+            this.parent[sibling] = grandParent;
+            freeNode(oldParent);
+
+            fixUpwards(grandParent);
+        } else {
+            this.root = sibling;
+            this.parent[sibling] = NULL_NODE;
+            freeNode(oldParent);
+        }
+    }
+
+    // rebalance and refit every node from here up to the root
+    private void fixUpwards(int index) {
+        while (index != NULL_NODE) {
+            index = balance(index);
+
+            int c1 = this.child1[index];
+            int c2 = this.child2[index];
+            this.height[index] = 1 + Math.max(this.height[c1], this.height[c2]);
+            combine(index, c1, c2);
+
+            index = this.parent[index];
+        }
+    }
+
+    /**
+     * rotate the taller child up if the subtree of a is out of balance
+     *
+     * @return index of the node now at the place of a
+     */
+    private int balance(int a) {
+        if (this.height[a] < 2) return a;
+
+        int b = this.child1[a];
+        int c = this.child2[a];
+        int balance = this.height[c] - this.height[b];
+
+        if (balance > 1) {
+            rotateUp(a, c, b, false);
+            return c;
+        }
+        if (balance < -1) {
+            rotateUp(a, b, c, true);
+            return b;
+        }
+        return a;
+    }
+
+    /**
+     * swap node a with its taller child, the taller grandchild stays under the child
+     * and the shorter one moves under a
+     *
+     * @param a       the node out of balance
+     * @param up      the taller child of a
+     * @param other   the other child of a
+     * @param upFirst whether up is the first child of a
+     */
+    private void rotateUp(int a, int up, int other, boolean upFirst) {
+        int f = this.child1[up];
+        int g = this.child2[up];
+
+        this.child1[up] = a;
+        this.parent[up] = this.parent[a];
+        this.parent[a] = up;
+
+        int upParent = this.parent[up];
+        if (upParent != NULL_NODE) {
+            if (this.child1[upParent] == a) this.child1[upParent] = up;
+            else this.child2[upParent] = up;
+        } else {
+            this.root = up;
+        }
+
+        int tall = this.height[f] > this.height[g] ? f : g;
+        int shorter = tall == f ? g : f;
+
+        this.child2[up] = tall;
+        if (upFirst) this.child1[a] = shorter;
+        else this.child2[a] = shorter;
+        this.parent[shorter] = a;
+
+        combine(a, other, shorter);
+        combine(up, a, tall);
+        this.height[a] = 1 + Math.max(this.height[other], this.height[shorter]);
+        this.height[up] = 1 + Math.max(this.height[a], this.height[tall]);
+    }
+
+    private float descendCost(int child, float leafMinX, float leafMinY, float leafMaxX, float leafMaxY) {
+        float combined = 2f * (Math.max(this.nodeMaxX[child], leafMaxX) - Math.min(this.nodeMinX[child], leafMinX)
+                + Math.max(this.nodeMaxY[child], leafMaxY) - Math.min(this.nodeMinY[child], leafMinY));
+        if (this.height[child] == 0) return combined;
+        return combined - perimeter(child);
+    }
+
+    private float perimeter(int node) {
+        return 2f * (this.nodeMaxX[node] - this.nodeMinX[node] + this.nodeMaxY[node] - this.nodeMinY[node]);
+    }
+
+    private void combine(int node, int a, int b) {
+        this.nodeMinX[node] = Math.min(this.nodeMinX[a], this.nodeMinX[b]);
+        this.nodeMinY[node] = Math.min(this.nodeMinY[a], this.nodeMinY[b]);
+        this.nodeMaxX[node] = Math.max(this.nodeMaxX[a], this.nodeMaxX[b]);
+        this.nodeMaxY[node] = Math.max(this.nodeMaxY[a], this.nodeMaxY[b]);
+    }
+
+    private int allocateNode() {
+        if (this.freeList == NULL_NODE) {
+            growNodes(this.nodeCapacity << 1);
+        }
+
+        int node = this.freeList;
+        this.freeList = this.parent[node];
+        this.parent[node] = NULL_NODE;
+        this.child1[node] = NULL_NODE;
+        this.child2[node] = NULL_NODE;
+        this.height[node] = 0;
+        return node;
+    }
+
+    private void freeNode(int node) {
+        this.parent[node] = this.freeList;
+        this.height[node] = -1;
+        this.freeList = node;
+    }
+
+    private void growNodes(int capacity) {
+        int old = this.nodeCapacity;
+        if (old == 0) {
+            this.nodeMinX = new float[capacity];
+            this.nodeMinY = new float[capacity];
+            this.nodeMaxX = new float[capacity];
+            this.nodeMaxY = new float[capacity];
+            this.parent = new int[capacity];
+            this.child1 = new int[capacity];
+            this.child2 = new int[capacity];
+            this.height = new int[capacity];
+            this.nodeBody = new int[capacity];
+        } else {
+            this.nodeMinX = Arrays.copyOf(this.nodeMinX, capacity);
+            this.nodeMinY = Arrays.copyOf(this.nodeMinY, capacity);
+            this.nodeMaxX = Arrays.copyOf(this.nodeMaxX, capacity);
+            this.nodeMaxY = Arrays.copyOf(this.nodeMaxY, capacity);
+            this.parent = Arrays.copyOf(this.parent, capacity);
+            this.child1 = Arrays.copyOf(this.child1, capacity);
+            this.child2 = Arrays.copyOf(this.child2, capacity);
+            this.height = Arrays.copyOf(this.height, capacity);
+            this.nodeBody = Arrays.copyOf(this.nodeBody, capacity);
+        }
+
+        // link the new nodes into the free list
+        for (int node = capacity - 1; node >= old; node--) {
+            this.parent[node] = this.freeList;
+            this.height[node] = -1;
+            this.freeList = node;
+        }
+        this.nodeCapacity = capacity;
+    }
+
+    private void ensureBodyCapacity(int capacity) {
+        if (capacity <= this.proxyOfBody.length) return;
+
+        int length = Math.max(capacity, this.proxyOfBody.length << 1);
+        this.proxyOfBody = Arrays.copyOf(this.proxyOfBody, length);
+        this.minX = Arrays.copyOf(this.minX, length);
+        this.minY = Arrays.copyOf(this.minY, length);
+        this.maxX = Arrays.copyOf(this.maxX, length);
+        this.maxY = Arrays.copyOf(this.maxY, length);
+    }
+}
@@ -23,6 +23,18 @@ public class FlatAABB {
         this.max = new FlatVector(maxX, maxY);
     }
 
+    public FlatAABB set(float minX, float minY, float maxX, float maxY) {
+        this.min.set(minX, minY);
+        this.max.set(maxX, maxY);
+        return this;
+    }
+
+    // boxes that only touch do not overlap, same as the sat tests in Collisions
+    public boolean overlaps(FlatAABB other) {
+        return this.max.getX() > other.min.getX() && other.max.getX() > this.min.getX()
+                && this.max.getY() > other.min.getY() && other.max.getY() > this.min.getY();
+    }
+
     public FlatVector getMin() {
         return min;
     }
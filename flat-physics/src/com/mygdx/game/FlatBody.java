@@ -7,25 +7,29 @@ public class FlatBody {
     public static final int BOX_SHAPE       = 1;
     public static final int POLYGON_SHAPE   = 2;
 
-    private FlatVector      position;
-    private FlatVector      linearVelocity;
-    private float           rotation;
-    private float           rotationalVelocity;
+    // a new body is in the first category and collides with every category
+    public static final int DEFAULT_CATEGORY_BITS   = 1;
+    public static final int DEFAULT_MASK_BITS       = 0xFFFFFFFF;
+
+    // position, velocity, rotation, invMass, restitution, radius and shape type live in a row of a store,
+    // a body in a world shares the store of the world, otherwise it owns a store with a single row
+    private FlatBodyStore   store;
+    private int             index;
+
+    // returned by getPosition and getLinearVelocity, refreshed from the store on every call
+    private final FlatVector position;
+    private final FlatVector linearVelocity;
 
     private FlatVector      force;
 
     private float           density;
     // unit is kg
     private float           mass;
-    // 1 / mass
-    private float           invMass;
-    private float           restitution;
     private float           area;
 
     // whether is affected by other rigid body
     private boolean         isStatic;
 
-    private float           radius;
     private float           width;
     private float           height;
 
@@ -33,53 +37,72 @@ public class FlatBody {
     // rect and polygon need vertex info to detect collision
     private FlatVector[]    vertices;
     private FlatVector[]    transformedVertices;
-    private boolean         doesVerticesRequireUpdate;
+    // unit edge normals in local space, parallel edges share one normal, used as sat axes
+    private FlatVector[]    normals;
+    private FlatVector[]    transformedNormals;
+    // reused every time the transformed vertices are rebuilt
+    private FlatTransform   transform;
+    private FlatTransform   interpolatedTransform;
     // rect need to be divided int triangles inorder to work properly
     // here stores the order of triangles by storing the vertex in order grouped by three vertices
     private short[]         triangles;
 
-    private int             shapeType;
+    // anything the game wants to find the body by, e.g. its color, never touched by the engine
+    private Object          userData;
 
     private FlatBody() {
+        this(new FlatBodyStore(1));
+    }
+
+    // a body whose row is appended to the given store, a world passes its own to create bodies in place
+    private FlatBody(FlatBodyStore store) {
+        this.store = store;
+        this.index = this.store.add(this);
+        this.position = new FlatVector(0f, 0f);
         this.linearVelocity = new FlatVector(0f, 0f);
-        this.rotation = 0f;
-        this.rotationalVelocity = 0f;
         this.force = FlatVector.getZero();
+        this.transform = new FlatTransform();
+        this.interpolatedTransform = new FlatTransform();
+        this.boundingBox = new FlatAABB(0f, 0f, 0f, 0f);
+        this.store.flags[this.index] = FlatBodyStore.TRANSFORM_DIRTY;
+        this.store.categoryBits[this.index] = DEFAULT_CATEGORY_BITS;
+        this.store.maskBits[this.index] = DEFAULT_MASK_BITS;
+        this.store.handle[this.index] = FlatWorld.NULL_HANDLE;
     }
 
     private FlatBody(FlatVector position, FlatVector linearVelocity, float rotation, float rotationalVelocity,
                      float density, float mass, float restitution, float area,
                      boolean isStatic, float radius, float width, float height, int shapeType) {
-        this();
+        this(position, density, mass, restitution, area, isStatic, shapeType);
 
-        this.position = position;
-        this.linearVelocity = linearVelocity;
-        this.rotation = rotation;
-        this.rotationalVelocity = rotationalVelocity;
-        this.density = density;
-        this.mass = mass;
-        this.invMass = isStatic ? 0f : 1f / mass;
-        this.restitution = restitution;
-        this.area = area;
-        this.isStatic = isStatic;
-        this.radius = radius;
+        this.store.linearVelocityX[this.index] = linearVelocity.getX();
+        this.store.linearVelocityY[this.index] = linearVelocity.getY();
+        this.store.rotation[this.index] = rotation;
+        this.store.rotationalVelocity[this.index] = rotationalVelocity;
+        this.store.radius[this.index] = radius;
         this.width = width;
         this.height = height;
-        this.shapeType = shapeType;
+        this.store.resetPrevious(this.index);
     }
 
     public FlatBody(FlatVector position, float density, float mass, float restitution, float area,
                     boolean isStatic, int shapeType) {
         this();
+        this.setUp(position.getX(), position.getY(), density, mass, restitution, area, isStatic, shapeType);
+    }
 
-        this.position = position;
+    private void setUp(float x, float y, float density, float mass, float restitution, float area,
+                       boolean isStatic, int shapeType) {
+        this.store.positionX[this.index] = x;
+        this.store.positionY[this.index] = y;
+        this.store.invMass[this.index] = isStatic ? 0f : 1f / mass;
+        this.store.restitution[this.index] = restitution;
+        this.store.shapeType[this.index] = shapeType;
         this.density = density;
         this.mass = mass;
-        this.invMass = isStatic ? 0f : 1f / mass;
-        this.restitution = restitution;
         this.area = area;
         this.isStatic = isStatic;
-        this.shapeType = shapeType;
+        this.store.resetPrevious(this.index);
     }
 
 
@@ -119,6 +142,46 @@ public class FlatBody {
         return vertices;
     }
 
+    /**
+     * unit normals of the edges of a polygon, pointing outside for clockwise vertices
+     * <p>
+     * opposite edges give the same sat axis, so a normal parallel to one already found is dropped,
+     * a box ends up with 2 axes instead of 4
+     */
+    private static FlatVector[] createEdgeNormals(FlatVector[] vertices) {
+        FlatVector[] normals = new FlatVector[vertices.length];
+        int count = 0;
+
+        for (int i = 0; i < vertices.length; i++) {
+            FlatVector va = vertices[i];
+            FlatVector vb = vertices[(i + 1) % vertices.length];
+
+            // -y means normal direction is pointing outside of polygon
+            FlatVector normal = FlatMath.normalize(new FlatVector(-(vb.getY() - va.getY()), vb.getX() - va.getX()));
+
+            boolean isParallel = false;
+            for (int j = 0; j < count; j++) {
+                if (Math.abs(FlatMath.cross(normals[j], normal)) < 1e-6f) {
+                    isParallel = true;
+                    break;
+                }
+            }
+            if (!isParallel) normals[count++] = normal;
+        }
+
+        FlatVector[] result = new FlatVector[count];
+        System.arraycopy(normals, 0, result, 0, count);
+        return result;
+    }
+
+    private static FlatVector[] createVectors(int length) {
+        FlatVector[] vectors = new FlatVector[length];
+        for (int i = 0; i < length; i++) {
+            vectors[i] = new FlatVector();
+        }
+        return vectors;
+    }
+
     private static short[] createTrisVerticesOrder() {
         short[] tris = new short[6];
         tris[0] = 0;
@@ -130,50 +193,129 @@ public class FlatBody {
         return tris;
     }
 
+    /**
+     * move the row of this body into the store of a world
+     */
+    void attach(FlatBodyStore worldStore) {
+        int worldIndex = worldStore.add(this.store, this.index, this);
+        this.store = worldStore;
+        this.index = worldIndex;
+    }
+
+    /**
+     * copy the row of this body out of the store of a world, before the world removes it
+     */
+    void detach() {
+        FlatBodyStore own = new FlatBodyStore(1);
+        int ownIndex = own.add(this.store, this.index, this);
+        own.handle[ownIndex] = FlatWorld.NULL_HANDLE;
+        this.store = own;
+        this.index = ownIndex;
+    }
+
+    int getStoreIndex() {
+        return this.index;
+    }
+
+    void setStoreIndex(int index) {
+        this.index = index;
+    }
+
+    /**
+     * the handle the world gave this body when it was added, it stays the same while other bodies come and go.
+     * callbacks, contact events and pair filters report bodies by it, see FlatWorld.getBodyByHandle
+     *
+     * @return FlatWorld.NULL_HANDLE when the body is not in a world
+     */
+    public int getHandle() {
+        return this.store.handle[this.index];
+    }
+
+    void setHandle(int handle) {
+        this.store.handle[this.index] = handle;
+    }
+
+    public Object getUserData() {
+        return this.userData;
+    }
+
+    public void setUserData(Object userData) {
+        this.userData = userData;
+    }
+
     // calculate and cache actual vertices with position and rotation
     // when we actually need to use these vertices
+    // edge normals are only rotated, and share the cache flag with the vertices
     public FlatVector[] getTransformedVertices() {
-        if(this.doesVerticesRequireUpdate) {
-            FlatTransform transform = new FlatTransform(this.position, this.rotation);
+        int flags = this.store.flags[this.index];
+        if((flags & FlatBodyStore.VERTICES_DIRTY) != 0) {
+            FlatTransform transform = this.store.isDeterministic
+                    ? this.transform.setStrict(this.store.positionX[this.index], this.store.positionY[this.index],
+                    this.store.rotation[this.index])
+                    : this.transform.set(this.store.positionX[this.index], this.store.positionY[this.index],
+                    this.store.rotation[this.index]);
 
             for (int i = 0; i < this.vertices.length; i++) {
-                FlatVector v = this.vertices[i];
-                this.transformedVertices[i] = FlatVector.transform(v, transform);
+                FlatVector.transform(this.vertices[i], transform, this.transformedVertices[i]);
+            }
+            for (int i = 0; i < this.normals.length; i++) {
+                FlatVector.rotate(this.normals[i], transform, this.transformedNormals[i]);
             }
-        }
 
-        this.doesVerticesRequireUpdate = false;
+            this.store.flags[this.index] = flags & ~FlatBodyStore.VERTICES_DIRTY;
+        }
 
         return this.transformedVertices;
     }
 
-    public void handleForceAndVelocity(float time, FlatVector gravity, int iterations) {
+    // unit edge normals with the current rotation, parallel edges are left out
+    public FlatVector[] getTransformedNormals() {
+        this.getTransformedVertices();
+        return this.transformedNormals;
+    }
 
-        if(this.isStatic) return;
+    /**
+     * move the body by its velocity for one of iterations parts of time, then add gravity to the velocity
+     *
+     * @deprecated the world integrates every body through its store when it steps, calling this as well moves
+     * the body twice. kept for code that stepped bodies by hand
+     */
+    @Deprecated
+    public void handleForceAndVelocity(float time, FlatVector gravity, int iterations) {
 
-//        FlatVector acceleration = FlatMath.divide(this.force, this.mass);
-//        this.linearVelocity = FlatMath.add(this.linearVelocity, FlatMath.multiply(acceleration, time));
+        if(this.isStatic || !this.isAwake()) return;
 
         time /= iterations;
 
-        this.position = FlatMath.add(this.position, FlatMath.multiply(this.linearVelocity, time));
-        this.rotation += (this.rotationalVelocity * time);
+        FlatBodyStore s = this.store;
+        int i = this.index;
+        s.positionX[i] += s.linearVelocityX[i] * time;
+        s.positionY[i] += s.linearVelocityY[i] * time;
+        s.rotation[i] += s.rotationalVelocity[i] * time;
 
         this.force = FlatVector.getZero();
 
-        this.doesVerticesRequireUpdate = true;
+        s.flags[i] |= FlatBodyStore.TRANSFORM_DIRTY;
+        this.movedByHand();
 
-        this.linearVelocity = FlatMath.add(this.linearVelocity, FlatMath.multiply(gravity, time));
+        s.linearVelocityX[i] += gravity.getX() * time;
+        s.linearVelocityY[i] += gravity.getY() * time;
     }
 
     public void move(FlatVector amount) {
-        this.position = FlatMath.add(this.position, amount);
-        this.doesVerticesRequireUpdate = true;
+        this.store.wake(this.index);
+        this.store.move(this.index, amount.getX(), amount.getY());
+        this.movedByHand();
     }
 
     public void moveTo(FlatVector pos) {
-        this.position = pos;
-        this.doesVerticesRequireUpdate = true;
+        this.store.wake(this.index);
+        this.store.positionX[this.index] = pos.getX();
+        this.store.positionY[this.index] = pos.getY();
+        this.store.flags[this.index] |= FlatBodyStore.TRANSFORM_DIRTY;
+        // a teleport, not a movement to interpolate
+        this.store.resetPrevious(this.index);
+        this.movedByHand();
     }
 
     /**
@@ -181,9 +323,11 @@ public class FlatBody {
      * @param amount the amount of angle in degree to rotate by.
      */
     public void rotate(float amount) {
-        this.rotation -= amount;
-        this.rotation %= 360f;
-        this.doesVerticesRequireUpdate = true;
+        this.store.wake(this.index);
+        float rotation = this.store.rotation[this.index] - amount;
+        this.store.rotation[this.index] = rotation % 360f;
+        this.store.flags[this.index] |= FlatBodyStore.TRANSFORM_DIRTY;
+        this.movedByHand();
     }
 
     /**
@@ -191,8 +335,22 @@ public class FlatBody {
      * @param rotation the amount of angle in degree to rotate to.
      */
     public void rotateTo(float rotation) {
-        this.rotation = -rotation;
-        this.doesVerticesRequireUpdate = true;
+        this.store.wake(this.index);
+        this.store.rotation[this.index] = -rotation;
+        this.store.flags[this.index] |= FlatBodyStore.TRANSFORM_DIRTY;
+        this.store.resetPrevious(this.index);
+        this.movedByHand();
+    }
+
+    // queries of the world bring the broadphase up to date only when told.
+    // the world keeps static bodies in an index that is only rebuilt when told,
+    // and the step does not save their previous transform
+    private void movedByHand() {
+        this.store.isQueryStale = true;
+        if (!this.isStatic) return;
+        this.store.flags[this.index] |= FlatBodyStore.MOVED_BY_HAND;
+        this.store.isStaticMoved = true;
+        this.store.resetPrevious(this.index);
     }
 
     public static FlatBody createFlatBody(float area, float mass, FlatVector position, float density,
@@ -200,20 +358,28 @@ public class FlatBody {
         FlatBody body = null;
         restitution = FlatMath.clamp(restitution, 0f, 1f);
 
+        checkArea(area);
+        checkDensity(density);
+        body = new FlatBody(position, density, mass, restitution, area, isStatic, shapeType);
+        return body;
+    }
+
+    static void checkArea(float area) {
         if(area < FlatWorld.MIN_BODY_SIZE) {
             throw new IllegalArgumentException("area is too small, min area is " + FlatWorld.MIN_BODY_SIZE);
         }
         if(area > FlatWorld.MAX_BODY_SIZE) {
             throw new IllegalArgumentException("area is too large, max area is " + FlatWorld.MAX_BODY_SIZE);
         }
+    }
+
+    static void checkDensity(float density) {
         if(density < FlatWorld.MIN_DENSITY) {
             throw new IllegalArgumentException("density is too small, min density is " + FlatWorld.MIN_DENSITY);
         }
         if(density > FlatWorld.MAX_DENSITY) {
             throw new IllegalArgumentException("density is too large, max density is " + FlatWorld.MAX_DENSITY);
         }
-        body = new FlatBody(position, density, mass, restitution, area, isStatic, shapeType);
-        return body;
     }
 
     public static FlatBody createCircleBody(float radius, FlatVector position, float density,
@@ -221,7 +387,7 @@ public class FlatBody {
         float area = radius * radius * (float) Math.PI;
         float mass = area * density;
         FlatBody body = createFlatBody(area, mass, position, density, isStatic, restitution, CIRCLE_SHAPE);
-        body.radius = radius;
+        body.store.radius[body.index] = radius;
         return body;
     }
 
@@ -230,26 +396,75 @@ public class FlatBody {
         float area = width * height;
         float mass = area * density;
         FlatBody body = createFlatBody(area, mass, position, density, isStatic, restitution, BOX_SHAPE);
-        body.width = width;
-        body.height = height;
-        body.vertices = createBoxVerticesAtOrigin(width, height);
-        body.transformedVertices = new FlatVector[body.vertices.length];
-        body.triangles = createTrisVerticesOrder();
-        body.doesVerticesRequireUpdate = true;
+        body.setBoxShape(width, height);
+        return body;
+    }
+
+    /**
+     * a circle whose row is appended straight to the store of a world, the caller checks the arguments
+     */
+    static FlatBody createCircleBody(FlatBodyStore store, float x, float y, float radius, float density,
+                                     boolean isStatic, float restitution) {
+        float area = radius * radius * (float) Math.PI;
+        FlatBody body = new FlatBody(store);
+        body.setUp(x, y, density, area * density, restitution, area, isStatic, CIRCLE_SHAPE);
+        store.radius[body.index] = radius;
+        return body;
+    }
+
+    /**
+     * a box whose row is appended straight to the store of a world, the caller checks the arguments
+     */
+    static FlatBody createBoxBody(FlatBodyStore store, float x, float y, float width, float height, float density,
+                                  boolean isStatic, float restitution) {
+        float area = width * height;
+        FlatBody body = new FlatBody(store);
+        body.setUp(x, y, density, area * density, restitution, area, isStatic, BOX_SHAPE);
+        body.setBoxShape(width, height);
+        return body;
+    }
 
+    /**
+     * a body of any shape with every property given, used to rebuild recorded bodies, the caller checks the arguments.
+     * the position is left at the origin
+     */
+    static FlatBody createBody(FlatBodyStore store, int shapeType, float density, float mass, float restitution,
+                               float area, boolean isStatic, float radius, float width, float height) {
+        FlatBody body = new FlatBody(store);
+        body.setUp(0f, 0f, density, mass, restitution, area, isStatic, shapeType);
+        store.radius[body.index] = radius;
+        if (shapeType == BOX_SHAPE) {
+            body.setBoxShape(width, height);
+        } else {
+            body.width = width;
+            body.height = height;
+        }
         return body;
     }
 
+    private void setBoxShape(float width, float height) {
+        this.width = width;
+        this.height = height;
+        this.vertices = createBoxVerticesAtOrigin(width, height);
+        this.transformedVertices = createVectors(this.vertices.length);
+        this.normals = createEdgeNormals(this.vertices);
+        this.transformedNormals = createVectors(this.normals.length);
+        this.triangles = createTrisVerticesOrder();
+    }
+
+    // bounding box is cached with its own flag,
+    // because getTransformedVertices clears the vertices flag before the box is rebuilt
     public FlatAABB getBoundingBox() {
-        if(!doesVerticesRequireUpdate)
+        if((this.store.flags[this.index] & FlatBodyStore.BOUNDING_BOX_DIRTY) == 0)
             return this.boundingBox;
 
-        float minX = 0f;
-        float minY = 0f;
-        float maxX = 0f;
-        float maxY = 0f;
+        float minX = Float.MAX_VALUE;
+        float minY = Float.MAX_VALUE;
+        float maxX = -Float.MAX_VALUE;
+        float maxY = -Float.MAX_VALUE;
 
-        if(this.shapeType == BOX_SHAPE) {
+        int shapeType = this.store.shapeType[this.index];
+        if(shapeType == BOX_SHAPE) {
             FlatVector[] vertices = this.getTransformedVertices();
             for (FlatVector vertex : vertices) {
                 if (vertex.getX() < minX) minX = vertex.getX();
@@ -257,22 +472,73 @@ public class FlatBody {
                 if (vertex.getX() > maxX) maxX = vertex.getX();
                 if (vertex.getY() > maxY) maxY = vertex.getY();
             }
-        }else if(this.shapeType == CIRCLE_SHAPE) {
-            minX = this.position.getX() - this.radius;
-            minY = this.position.getY() - this.radius;
-            maxX = this.position.getY() + this.radius;
-            maxY = this.position.getY() + this.radius;
+        }else if(shapeType == CIRCLE_SHAPE) {
+            float x = this.store.positionX[this.index];
+            float y = this.store.positionY[this.index];
+            float radius = this.store.radius[this.index];
+            minX = x - radius;
+            minY = y - radius;
+            maxX = x + radius;
+            maxY = y + radius;
         }
-        this.boundingBox = new FlatAABB(minX, minY, maxX, maxY);
+        this.boundingBox.set(minX, minY, maxX, maxY);
+        this.store.flags[this.index] &= ~FlatBodyStore.BOUNDING_BOX_DIRTY;
         return boundingBox;
     }
 
+    /**
+     * the body keeps one vector for this and overwrites it on every call, copy it or use getPosition(out)
+     * to hold on to a position. not safe to call from several threads for the same body
+     */
     public FlatVector getPosition() {
+        this.position.set(this.store.positionX[this.index], this.store.positionY[this.index]);
         return position;
     }
 
+    // position written into out
+    public FlatVector getPosition(FlatVector out) {
+        return out.set(this.store.positionX[this.index], this.store.positionY[this.index]);
+    }
+
     public float getRotation() {
-        return rotation;
+        return this.store.rotation[this.index];
+    }
+
+    /**
+     * position between the start and the end of the last step
+     *
+     * @param alpha 0 for the start, 1 for the current position, see FlatWorld.getInterpolationAlpha
+     */
+    public FlatVector getInterpolatedPosition(float alpha, FlatVector out) {
+        FlatBodyStore s = this.store;
+        int i = this.index;
+        return out.set(s.previousPositionX[i] + (s.positionX[i] - s.previousPositionX[i]) * alpha,
+                s.previousPositionY[i] + (s.positionY[i] - s.previousPositionY[i]) * alpha);
+    }
+
+    // rotation between the start and the end of the last step
+    public float getInterpolatedRotation(float alpha) {
+        float previous = this.store.previousRotation[this.index];
+        return previous + (this.store.rotation[this.index] - previous) * alpha;
+    }
+
+    /**
+     * vertices with the interpolated position and rotation, not cached
+     *
+     * @param out at least as long as the vertices of this body
+     */
+    public FlatVector[] getInterpolatedVertices(float alpha, FlatVector[] out) {
+        FlatBodyStore s = this.store;
+        int i = this.index;
+        FlatTransform transform = this.interpolatedTransform.set(
+                s.previousPositionX[i] + (s.positionX[i] - s.previousPositionX[i]) * alpha,
+                s.previousPositionY[i] + (s.positionY[i] - s.previousPositionY[i]) * alpha,
+                this.getInterpolatedRotation(alpha));
+
+        for (int v = 0; v < this.vertices.length; v++) {
+            FlatVector.transform(this.vertices[v], transform, out[v]);
+        }
+        return out;
     }
 
     public float getDensity() {
@@ -284,7 +550,7 @@ public class FlatBody {
     }
 
     public float getRadius() {
-        return radius;
+        return this.store.radius[this.index];
     }
 
     public float getWidth() {
@@ -299,32 +565,49 @@ public class FlatBody {
         return vertices;
     }
 
+    public FlatVector[] getNormals() {
+        return normals;
+    }
+
     public short[] getTriangles() {
         return triangles;
     }
 
     public int getShapeType() {
-        return shapeType;
+        return this.store.shapeType[this.index];
     }
 
     public void setForce(FlatVector force) {
+        this.store.wake(this.index);
         this.force = force;
     }
 
+    /**
+     * the body keeps one vector for this and overwrites it on every call, copy it or use
+     * getLinearVelocity(out) to hold on to a velocity. not safe to call from several threads for the same body
+     */
     public FlatVector getLinearVelocity() {
+        this.linearVelocity.set(this.store.linearVelocityX[this.index], this.store.linearVelocityY[this.index]);
         return linearVelocity;
     }
 
+    // linear velocity written into out
+    public FlatVector getLinearVelocity(FlatVector out) {
+        return out.set(this.store.linearVelocityX[this.index], this.store.linearVelocityY[this.index]);
+    }
+
     public void setLinearVelocity(FlatVector linearVelocity) {
-        this.linearVelocity = linearVelocity;
+        this.store.wake(this.index);
+        this.store.linearVelocityX[this.index] = linearVelocity.getX();
+        this.store.linearVelocityY[this.index] = linearVelocity.getY();
     }
 
     public float getRestitution() {
-        return restitution;
+        return this.store.restitution[this.index];
     }
 
     public void setRestitution(float restitution) {
-        this.restitution = restitution;
+        this.store.restitution[this.index] = restitution;
     }
 
     public float getMass() {
@@ -332,19 +615,74 @@ public class FlatBody {
     }
 
     public float getInvMass() {
-        return invMass;
+        return this.store.invMass[this.index];
     }
 
     public boolean isStatic() {
         return isStatic;
     }
 
+    public int getCategoryBits() {
+        return this.store.categoryBits[this.index];
+    }
+
+    // categories this body belongs to, one bit each
+    public void setCategoryBits(int categoryBits) {
+        this.store.categoryBits[this.index] = categoryBits;
+    }
+
+    public int getMaskBits() {
+        return this.store.maskBits[this.index];
+    }
+
+    // categories this body collides with
+    public void setMaskBits(int maskBits) {
+        this.store.maskBits[this.index] = maskBits;
+    }
+
+    public int getGroup() {
+        return this.store.group[this.index];
+    }
+
+    /**
+     * bodies of the same positive group always collide, bodies of the same negative group never do,
+     * whatever their categories and masks. 0 is no group
+     */
+    public void setGroup(int group) {
+        this.store.group[this.index] = group;
+    }
+
+    /**
+     * set category, mask and group at once, checked for every candidate pair before the narrow phase
+     *
+     * @see #setGroup(int)
+     */
+    public void setCollisionFilter(int categoryBits, int maskBits, int group) {
+        this.store.categoryBits[this.index] = categoryBits;
+        this.store.maskBits[this.index] = maskBits;
+        this.store.group[this.index] = group;
+    }
+
+    // a sleeping body is not integrated until something wakes it
+    public boolean isAwake() {
+        return (this.store.flags[this.index] & FlatBodyStore.SLEEPING) == 0;
+    }
+
+    /**
+     * wake a body up or put it to sleep right away
+     * a body put to sleep loses its velocity
+     */
+    public void setAwake(boolean isAwake) {
+        if (isAwake) this.store.wake(this.index);
+        else if (!this.isStatic) this.store.sleep(this.index);
+    }
+
     @Override
     public String toString() {
         return "FlatBody{" +
-                "position=" + position +
-                ", rotation=" + rotation +
-                ", shapeType=" + shapeType +
+                "position=" + getPosition() +
+                ", rotation=" + getRotation() +
+                ", shapeType=" + getShapeType() +
                 '}';
     }
 }
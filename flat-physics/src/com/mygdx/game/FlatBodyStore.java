@@ -0,0 +1,442 @@
+package com.mygdx.game;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * structure of arrays storage for the state the step touches on every substep
+ * <p>
+ * every column is a primitive array indexed by body index, so the integration and the circle narrow phase
+ * walk through memory in order instead of chasing a pointer per body.
+ * a world keeps the rows in the same order as its body list, a body that is not in a world owns a store with one row.
+ * removing a row moves the last row into its place, so rows are not kept in the order they were added
+ */
+class FlatBodyStore {
+
+    // transformed vertices need to be rebuilt
+    static final int VERTICES_DIRTY     = 1;
+    // bounding box needs to be rebuilt
+    static final int BOUNDING_BOX_DIRTY = 1 << 1;
+    static final int TRANSFORM_DIRTY    = VERTICES_DIRTY | BOUNDING_BOX_DIRTY;
+    // body is at rest, it is not integrated and not tested against other resting or static bodies
+    static final int SLEEPING           = 1 << 2;
+    // static body added, moved or turned since the static index was built, the bodies around it are woken then
+    static final int MOVED_BY_HAND      = 1 << 3;
+    // flags that are state, the rest is cache
+    static final int SAVED_FLAGS        = SLEEPING | MOVED_BY_HAND;
+
+    float[] positionX;
+    float[] positionY;
+    float[] linearVelocityX;
+    float[] linearVelocityY;
+    float[] rotation;
+    float[] rotationalVelocity;
+    // position and rotation at the start of the last step, renderers interpolate between them and the current ones
+    float[] previousPositionX;
+    float[] previousPositionY;
+    float[] previousRotation;
+    // 0 for static bodies
+    float[] invMass;
+    float[] restitution;
+    float[] radius;
+    int[]   shapeType;
+    int[]   flags;
+    // how long the body has been slower than the sleep thresholds
+    float[] sleepTime;
+    // collision filter, see shouldCollide
+    int[]   categoryBits;
+    int[]   maskBits;
+    int[]   group;
+    // handle the world gave the body, -1 for a body that is not in a world
+    int[]   handle;
+
+    // body owning each row, so its index can be updated when rows move
+    FlatBody[] bodies;
+
+    int size;
+
+    // rows of the non static bodies, the step only walks these.
+    // kept for rows copied in from another store, which is how a world adds bodies
+    int[] dynamic;
+    int dynamicCount;
+    // position of every row in dynamic, -1 for static rows
+    int[] dynamicPosition;
+    // a static body was moved or turned by hand, the static index of the world is out of date
+    boolean isStaticMoved;
+    // bodies moved since the broadphase was last brought up to date for queries
+    boolean isQueryStale = true;
+    // transforms use StrictMath, see FlatWorld.setDeterministic
+    boolean isDeterministic;
+
+    FlatBodyStore(int capacity) {
+        capacity = Math.max(capacity, 1);
+        this.positionX = new float[capacity];
+        this.positionY = new float[capacity];
+        this.linearVelocityX = new float[capacity];
+        this.linearVelocityY = new float[capacity];
+        this.rotation = new float[capacity];
+        this.rotationalVelocity = new float[capacity];
+        this.previousPositionX = new float[capacity];
+        this.previousPositionY = new float[capacity];
+        this.previousRotation = new float[capacity];
+        this.invMass = new float[capacity];
+        this.restitution = new float[capacity];
+        this.radius = new float[capacity];
+        this.shapeType = new int[capacity];
+        this.flags = new int[capacity];
+        this.sleepTime = new float[capacity];
+        this.categoryBits = new int[capacity];
+        this.maskBits = new int[capacity];
+        this.group = new int[capacity];
+        this.handle = new int[capacity];
+        this.bodies = new FlatBody[capacity];
+        this.size = 0;
+        this.dynamic = new int[capacity];
+        this.dynamicCount = 0;
+        this.dynamicPosition = new int[capacity];
+    }
+
+    /**
+     * append a row for a body, the caller fills in the values
+     *
+     * @return index of the new row
+     */
+    int add(FlatBody body) {
+        ensureCapacity(this.size + 1);
+
+        int index = this.size++;
+        this.bodies[index] = body;
+        this.dynamicPosition[index] = -1;
+        return index;
+    }
+
+    /**
+     * append a copy of a row of another store
+     *
+     * @return index of the new row
+     */
+    int add(FlatBodyStore source, int sourceIndex, FlatBody body) {
+        int index = add(body);
+        copyRow(source, sourceIndex, this, index);
+        if (this.invMass[index] != 0f) this.addDynamic(index);
+        return index;
+    }
+
+    // list a row among the non static rows, once its inverse mass is set
+    void addDynamic(int index) {
+        this.dynamicPosition[index] = this.dynamicCount;
+        this.dynamic[this.dynamicCount++] = index;
+    }
+
+    // make room for count more rows, so a batch of bodies grows the columns only once
+    void reserve(int count) {
+        ensureCapacity(this.size + count);
+    }
+
+    /**
+     * remove a row, the last row moves into its place.
+     * the last non static row takes the place of a removed non static row in dynamic the same way
+     */
+    void remove(int index) {
+        int k = this.dynamicPosition[index];
+        if (k != -1) {
+            int lastDynamic = this.dynamic[--this.dynamicCount];
+            this.dynamic[k] = lastDynamic;
+            this.dynamicPosition[lastDynamic] = k;
+        }
+
+        int last = --this.size;
+        if (index != last) {
+            copyRow(this, last, this, index);
+            this.bodies[index] = this.bodies[last];
+            this.bodies[index].setStoreIndex(index);
+            k = this.dynamicPosition[last];
+            this.dynamicPosition[index] = k;
+            if (k != -1) this.dynamic[k] = index;
+        }
+        this.bodies[last] = null;
+    }
+
+    /**
+     * move every non static, awake body by its velocity, then apply gravity to the velocity
+     *
+     * @param time time of one substep
+     */
+    void integrate(float time, float gravityX, float gravityY) {
+        for (int k = 0; k < this.dynamicCount; k++) {
+            int i = this.dynamic[k];
+            if ((this.flags[i] & SLEEPING) != 0) continue;
+
+            this.positionX[i] += this.linearVelocityX[i] * time;
+            this.positionY[i] += this.linearVelocityY[i] * time;
+            this.rotation[i] += this.rotationalVelocity[i] * time;
+
+            this.flags[i] |= TRANSFORM_DIRTY;
+
+            this.linearVelocityX[i] += gravityX * time;
+            this.linearVelocityY[i] += gravityY * time;
+        }
+    }
+
+    // apply gravity to the velocity of every non static, awake body
+    void integrateVelocities(float time, float gravityX, float gravityY) {
+        for (int k = 0; k < this.dynamicCount; k++) {
+            int i = this.dynamic[k];
+            if ((this.flags[i] & SLEEPING) != 0) continue;
+
+            this.linearVelocityX[i] += gravityX * time;
+            this.linearVelocityY[i] += gravityY * time;
+        }
+    }
+
+    // move every non static, awake body by its velocity
+    void integratePositions(float time) {
+        for (int k = 0; k < this.dynamicCount; k++) {
+            int i = this.dynamic[k];
+            if ((this.flags[i] & SLEEPING) != 0) continue;
+
+            this.positionX[i] += this.linearVelocityX[i] * time;
+            this.positionY[i] += this.linearVelocityY[i] * time;
+            this.rotation[i] += this.rotationalVelocity[i] * time;
+
+            this.flags[i] |= TRANSFORM_DIRTY;
+        }
+    }
+
+    void move(int index, float amountX, float amountY) {
+        this.positionX[index] += amountX;
+        this.positionY[index] += amountY;
+        this.flags[index] |= TRANSFORM_DIRTY;
+    }
+
+    // remember the current transforms as the previous ones, called before a step moves anything.
+    // static bodies only move by hand, which resets their previous transform
+    void savePrevious() {
+        for (int k = 0; k < this.dynamicCount; k++) {
+            this.resetPrevious(this.dynamic[k]);
+        }
+    }
+
+    // drop the previous transform of one body, so a teleported body is not drawn sliding to its new place
+    void resetPrevious(int index) {
+        this.previousPositionX[index] = this.positionX[index];
+        this.previousPositionY[index] = this.positionY[index];
+        this.previousRotation[index] = this.rotation[index];
+    }
+
+    // static bodies and sleeping bodies do not move on their own
+    boolean isResting(int index) {
+        return this.invMass[index] == 0f || (this.flags[index] & SLEEPING) != 0;
+    }
+
+    /**
+     * bodies of the same non zero group always collide when it is positive and never when it is negative,
+     * otherwise each category has to be in the mask of the other body
+     */
+    boolean shouldCollide(int i, int j) {
+        int group = this.group[i];
+        if (group != 0 && group == this.group[j]) return group > 0;
+        return (this.categoryBits[i] & this.maskBits[j]) != 0 && (this.categoryBits[j] & this.maskBits[i]) != 0;
+    }
+
+    void wake(int index) {
+        this.flags[index] &= ~SLEEPING;
+        this.sleepTime[index] = 0f;
+    }
+
+    void sleep(int index) {
+        this.flags[index] |= SLEEPING;
+        this.linearVelocityX[index] = 0f;
+        this.linearVelocityY[index] = 0f;
+        this.rotationalVelocity[index] = 0f;
+    }
+
+    /**
+     * add time to the bodies slower than the thresholds, the time of a faster body starts over
+     *
+     * @param time time of one step
+     */
+    void updateSleepTime(float time, float linearVelocity, float rotationalVelocity) {
+        float linearVelocitySquared = linearVelocity * linearVelocity;
+        for (int k = 0; k < this.dynamicCount; k++) {
+            int i = this.dynamic[k];
+            if ((this.flags[i] & SLEEPING) != 0) continue;
+
+            float vx = this.linearVelocityX[i];
+            float vy = this.linearVelocityY[i];
+            if (vx * vx + vy * vy > linearVelocitySquared || Math.abs(this.rotationalVelocity[i]) > rotationalVelocity) {
+                this.sleepTime[i] = 0f;
+            } else {
+                this.sleepTime[i] += time;
+            }
+        }
+    }
+
+    /**
+     * hash of the handle, position, velocity, rotation and sleep state of every row, in row order
+     */
+    long hashState() {
+        long hash = this.size;
+        for (int i = 0; i < this.size; i++) {
+            hash = mix(hash, this.handle[i]);
+            hash = mix(hash, Float.floatToRawIntBits(this.positionX[i]));
+            hash = mix(hash, Float.floatToRawIntBits(this.positionY[i]));
+            hash = mix(hash, Float.floatToRawIntBits(this.linearVelocityX[i]));
+            hash = mix(hash, Float.floatToRawIntBits(this.linearVelocityY[i]));
+            hash = mix(hash, Float.floatToRawIntBits(this.rotation[i]));
+            hash = mix(hash, Float.floatToRawIntBits(this.rotationalVelocity[i]));
+            hash = mix(hash, this.flags[i] & SLEEPING);
+        }
+        // finalizer of murmur3, so a change in one bit spreads over the whole hash
+        hash ^= hash >>> 33;
+        hash *= 0xFF51AFD7ED558CCDL;
+        hash ^= hash >>> 33;
+        hash *= 0xC4CEB9FE1A85EC53L;
+        return hash ^ hash >>> 33;
+    }
+
+    private static long mix(long hash, int value) {
+        return (hash ^ (value & 0xFFFFFFFFL)) * 0x100000001B3L;
+    }
+
+    // bytes writeState writes per row: the handle, 10 float columns and the flags
+    static final int STATE_BYTES_PER_ROW = 12 * 4;
+
+    /**
+     * write the handles and the state a step changes of every row, column by column.
+     * only the sleeping and moved flags are kept, cached transforms are rebuilt after a restore anyway
+     */
+    void writeState(ByteBuffer buffer) {
+        int n = this.size;
+        putInts(buffer, this.handle, n);
+        putFloats(buffer, this.positionX, n);
+        putFloats(buffer, this.positionY, n);
+        putFloats(buffer, this.linearVelocityX, n);
+        putFloats(buffer, this.linearVelocityY, n);
+        putFloats(buffer, this.rotation, n);
+        putFloats(buffer, this.rotationalVelocity, n);
+        putFloats(buffer, this.previousPositionX, n);
+        putFloats(buffer, this.previousPositionY, n);
+        putFloats(buffer, this.previousRotation, n);
+        putFloats(buffer, this.sleepTime, n);
+        for (int i = 0; i < n; i++) {
+            buffer.putInt(this.flags[i] & SAVED_FLAGS);
+        }
+    }
+
+    /**
+     * whether the handles at the position of the buffer are the handles of the rows, the buffer does not move
+     */
+    boolean isStateOfRows(ByteBuffer buffer) {
+        int start = buffer.position();
+        for (int i = 0; i < this.size; i++) {
+            if (buffer.getInt(start + 4 * i) != this.handle[i]) return false;
+        }
+        return true;
+    }
+
+    /**
+     * read back what writeState wrote for the same rows
+     */
+    void readState(ByteBuffer buffer) {
+        int n = this.size;
+        buffer.position(buffer.position() + 4 * n);
+
+        // a static body put back somewhere else needs the static index of the world built again
+        int positionXStart = buffer.position();
+        int positionYStart = positionXStart + 4 * n;
+        int rotationStart = positionYStart + 3 * 4 * n;
+        for (int i = 0; i < n && !this.isStaticMoved; i++) {
+            if (this.invMass[i] != 0f) continue;
+            this.isStaticMoved = buffer.getFloat(positionXStart + 4 * i) != this.positionX[i]
+                    || buffer.getFloat(positionYStart + 4 * i) != this.positionY[i]
+                    || buffer.getFloat(rotationStart + 4 * i) != this.rotation[i];
+        }
+
+        getFloats(buffer, this.positionX, n);
+        getFloats(buffer, this.positionY, n);
+        getFloats(buffer, this.linearVelocityX, n);
+        getFloats(buffer, this.linearVelocityY, n);
+        getFloats(buffer, this.rotation, n);
+        getFloats(buffer, this.rotationalVelocity, n);
+        getFloats(buffer, this.previousPositionX, n);
+        getFloats(buffer, this.previousPositionY, n);
+        getFloats(buffer, this.previousRotation, n);
+        getFloats(buffer, this.sleepTime, n);
+        for (int i = 0; i < n; i++) {
+            this.flags[i] = (buffer.getInt() & SAVED_FLAGS) | TRANSFORM_DIRTY;
+            if ((this.flags[i] & MOVED_BY_HAND) != 0) this.isStaticMoved = true;
+        }
+    }
+
+    // bulk copies through a view of the buffer, then move the buffer past them
+    static void putFloats(ByteBuffer buffer, float[] values, int count) {
+        buffer.asFloatBuffer().put(values, 0, count);
+        buffer.position(buffer.position() + 4 * count);
+    }
+
+    static void getFloats(ByteBuffer buffer, float[] values, int count) {
+        buffer.asFloatBuffer().get(values, 0, count);
+        buffer.position(buffer.position() + 4 * count);
+    }
+
+    static void putInts(ByteBuffer buffer, int[] values, int count) {
+        buffer.asIntBuffer().put(values, 0, count);
+        buffer.position(buffer.position() + 4 * count);
+    }
+
+    static void getInts(ByteBuffer buffer, int[] values, int count) {
+        buffer.asIntBuffer().get(values, 0, count);
+        buffer.position(buffer.position() + 4 * count);
+    }
+
+    static void copyRow(FlatBodyStore source, int sourceIndex, FlatBodyStore target, int targetIndex) {
+        target.positionX[targetIndex] = source.positionX[sourceIndex];
+        target.positionY[targetIndex] = source.positionY[sourceIndex];
+        target.linearVelocityX[targetIndex] = source.linearVelocityX[sourceIndex];
+        target.linearVelocityY[targetIndex] = source.linearVelocityY[sourceIndex];
+        target.rotation[targetIndex] = source.rotation[sourceIndex];
+        target.rotationalVelocity[targetIndex] = source.rotationalVelocity[sourceIndex];
+        target.previousPositionX[targetIndex] = source.previousPositionX[sourceIndex];
+        target.previousPositionY[targetIndex] = source.previousPositionY[sourceIndex];
+        target.previousRotation[targetIndex] = source.previousRotation[sourceIndex];
+        target.invMass[targetIndex] = source.invMass[sourceIndex];
+        target.restitution[targetIndex] = source.restitution[sourceIndex];
+        target.radius[targetIndex] = source.radius[sourceIndex];
+        target.shapeType[targetIndex] = source.shapeType[sourceIndex];
+        target.flags[targetIndex] = source.flags[sourceIndex];
+        target.sleepTime[targetIndex] = source.sleepTime[sourceIndex];
+        target.categoryBits[targetIndex] = source.categoryBits[sourceIndex];
+        target.maskBits[targetIndex] = source.maskBits[sourceIndex];
+        target.group[targetIndex] = source.group[sourceIndex];
+        target.handle[targetIndex] = source.handle[sourceIndex];
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= this.positionX.length) return;
+
+        int length = Math.max(capacity, this.positionX.length << 1);
+        this.positionX = Arrays.copyOf(this.positionX, length);
+        this.positionY = Arrays.copyOf(this.positionY, length);
+        this.linearVelocityX = Arrays.copyOf(this.linearVelocityX, length);
+        this.linearVelocityY = Arrays.copyOf(this.linearVelocityY, length);
+        this.rotation = Arrays.copyOf(this.rotation, length);
+        this.rotationalVelocity = Arrays.copyOf(this.rotationalVelocity, length);
+        this.previousPositionX = Arrays.copyOf(this.previousPositionX, length);
+        this.previousPositionY = Arrays.copyOf(this.previousPositionY, length);
+        this.previousRotation = Arrays.copyOf(this.previousRotation, length);
+        this.invMass = Arrays.copyOf(this.invMass, length);
+        this.restitution = Arrays.copyOf(this.restitution, length);
+        this.radius = Arrays.copyOf(this.radius, length);
+        this.shapeType = Arrays.copyOf(this.shapeType, length);
+        this.flags = Arrays.copyOf(this.flags, length);
+        this.sleepTime = Arrays.copyOf(this.sleepTime, length);
+        this.categoryBits = Arrays.copyOf(this.categoryBits, length);
+        this.maskBits = Arrays.copyOf(this.maskBits, length);
+        this.group = Arrays.copyOf(this.group, length);
+        this.handle = Arrays.copyOf(this.handle, length);
+        this.bodies = Arrays.copyOf(this.bodies, length);
+        this.dynamic = Arrays.copyOf(this.dynamic, length);
+        this.dynamicPosition = Arrays.copyOf(this.dynamicPosition, length);
+    }
+}
@@ -22,6 +22,28 @@ public class FlatMath {
         return new FlatVector(a.getX() / scale, a.getY() / scale);
     }
 
+    // variants writing into out instead of a new vector, out may be one of the arguments
+
+    public static FlatVector add(FlatVector a, FlatVector b, FlatVector out) {
+        return out.set(a.getX() + b.getX(), a.getY() + b.getY());
+    }
+
+    public static FlatVector subtract(FlatVector a, FlatVector b, FlatVector out) {
+        return out.set(a.getX() - b.getX(), a.getY() - b.getY());
+    }
+
+    public static FlatVector negative(FlatVector a, FlatVector out) {
+        return out.set(-a.getX(), -a.getY());
+    }
+
+    public static FlatVector multiply(FlatVector a, float scale, FlatVector out) {
+        return out.set(a.getX() * scale, a.getY() * scale);
+    }
+
+    public static FlatVector divide(FlatVector a, float scale, FlatVector out) {
+        return out.set(a.getX() / scale, a.getY() / scale);
+    }
+
     public static float clamp(float value, float min, float max) {
         if(min == max)  return min;
         if(min > max)   throw new IllegalArgumentException("min is greater then max");
@@ -49,6 +71,12 @@ public class FlatMath {
         return new FlatVector(v.getX() / len, v.getY() / len);
     }
 
+    public static FlatVector normalize(FlatVector v, FlatVector out) {
+        float len = length(v);
+        if(len == 0) return out.set(0f, 0f);
+        return out.set(v.getX() / len, v.getY() / len);
+    }
+
     public static float dot(FlatVector a, FlatVector b) {
         // https://www.mathsisfun.com/algebra/vectors-dot-product.html
         // a · b = ax × bx + ay × by
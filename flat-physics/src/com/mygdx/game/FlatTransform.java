@@ -35,6 +35,27 @@ public class FlatTransform {
         this.cos = (float) Math.cos(angle);
     }
 
+    // reuse this transform for another position and angle
+    public FlatTransform set(float x, float y, float angle) {
+        this.x = x;
+        this.y = y;
+        this.sin = (float) Math.sin(angle);
+        this.cos = (float) Math.cos(angle);
+        return this;
+    }
+
+    /**
+     * set with the sin and cos of StrictMath, they give the same bits on every machine and jvm,
+     * Math may use faster instructions that differ in the last bit
+     */
+    public FlatTransform setStrict(float x, float y, float angle) {
+        this.x = x;
+        this.y = y;
+        this.sin = (float) StrictMath.sin(angle);
+        this.cos = (float) StrictMath.cos(angle);
+        return this;
+    }
+
     public static FlatTransform getZero() {
         return Zero;
     }
@@ -19,39 +19,55 @@ public class FlatVector {
         this.y = y;
     }
 
+    // shared instance, never modify it
     public static FlatVector getZero() {
         return Zero;
     }
 
-//    public FlatVector add(FlatVector b) {
-//        this.x += b.x;
-//        this.y += b.y;
-//        return this;
-//    }
-//
-//    public FlatVector subtract(FlatVector b) {
-//        this.x -= b.x;
-//        this.y -= b.y;
-//        return this;
-//    }
-//
-//    public FlatVector negative() {
-//        this.x = -this.x;
-//        this.y = -this.y;
-//        return this;
-//    }
-//
-//    public FlatVector multiply(float scale) {
-//        this.x *= scale;
-//        this.y *= scale;
-//        return this;
-//    }
-//
-//    public FlatVector divide(float scale) {
-//        this.x /= scale;
-//        this.y /= scale;
-//        return this;
-//    }
+    // the following operations modify this vector in place and return it,
+    // use them instead of FlatMath where a new vector on every call is too expensive
+
+    public FlatVector set(float x, float y) {
+        this.x = x;
+        this.y = y;
+        return this;
+    }
+
+    public FlatVector set(FlatVector v) {
+        this.x = v.x;
+        this.y = v.y;
+        return this;
+    }
+
+    public FlatVector add(FlatVector b) {
+        this.x += b.x;
+        this.y += b.y;
+        return this;
+    }
+
+    public FlatVector subtract(FlatVector b) {
+        this.x -= b.x;
+        this.y -= b.y;
+        return this;
+    }
+
+    public FlatVector negative() {
+        this.x = -this.x;
+        this.y = -this.y;
+        return this;
+    }
+
+    public FlatVector multiply(float scale) {
+        this.x *= scale;
+        this.y *= scale;
+        return this;
+    }
+
+    public FlatVector divide(float scale) {
+        this.x /= scale;
+        this.y /= scale;
+        return this;
+    }
 
     public FlatVector transform(FlatTransform t) {
         // rotation first, then translate
@@ -91,6 +107,22 @@ public class FlatVector {
         return new FlatVector(tx, ty);
     }
 
+    // same as above, but writes into out, out may be v itself
+    public static FlatVector transform(FlatVector v, FlatTransform t, FlatVector out) {
+        float rx = t.getCos() * v.x - t.getSin() * v.y;
+        float ry = t.getSin() * v.x + t.getCos() * v.y;
+
+        return out.set(rx + t.getX(), ry + t.getY());
+    }
+
+    // rotation of a transform only, for directions like edge normals
+    public static FlatVector rotate(FlatVector v, FlatTransform t, FlatVector out) {
+        float rx = t.getCos() * v.x - t.getSin() * v.y;
+        float ry = t.getSin() * v.x + t.getCos() * v.y;
+
+        return out.set(rx, ry);
+    }
+
     public float getX() {
         return x;
     }
@@ -1,8 +1,16 @@
 package com.mygdx.game;
 
 import com.mygdx.game.callback.CollisionCallback;
+import com.mygdx.game.callback.ContactListener;
+import com.mygdx.game.callback.PairFilter;
+import com.mygdx.game.callback.RaycastCallback;
 
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntConsumer;
 
 public class FlatWorld {
     // all values are set based on some real values
@@ -11,18 +19,154 @@ public class FlatWorld {
     public static final float MIN_DENSITY = 0.5f; // g/cm^3
     public static final float MAX_DENSITY = 21.4f;
 
+    // a body slower than these for DEFAULT_TIME_TO_SLEEP falls asleep
+    public static final float DEFAULT_SLEEP_LINEAR_VELOCITY = 0.2f;
+    public static final float DEFAULT_SLEEP_ROTATIONAL_VELOCITY = 0.05f;
+    // same unit as the time of step, one step of DEFAULT_FIXED_TIME_STEP is 0.5
+    public static final float DEFAULT_TIME_TO_SLEEP = 15f;
+
+    // first int of a saved state, bump it when the layout changes
+    private static final int STATE_MAGIC = 0x464C5301;
+    // magic, body count, accumulator and interpolation alpha
+    private static final int STATE_HEADER_BYTES = 4 * 4;
+
+    // below this many candidate pairs the narrow phase is not worth splitting across threads
+    private static final int MIN_PAIRS_PER_NARROWPHASE_TASK = 128;
+    // islands are grouped into tasks of at least this many contacts
+    private static final int MIN_CONTACTS_PER_ISLAND_TASK = 64;
+    // rays of a batch are grouped into tasks of at least this many
+    private static final int MIN_RAYS_PER_TASK = 64;
+
+    // world time per real second, the demo was tuned with a step time of 0.5 at 60 steps per second
+    public static final float TIME_UNITS_PER_SECOND = 30f;
+    public static final float DEFAULT_FIXED_TIME_STEP = 1f / 60f;
+    // update runs at most this many steps per frame, a slow frame must not make the next one slower
+    public static final int DEFAULT_MAX_STEPS_PER_UPDATE = 5;
+
+    // every step is split into passes that each move, detect and push apart, stable stacks need many passes
+    public static final int SOLVER_SUBSTEPS = 0;
+    // every step detects once and iterates impulses that are kept from one step to the next
+    public static final int SOLVER_SEQUENTIAL_IMPULSE = 1;
+
+    // handle of a body that is not in a world, never handed out
+    public static final int NULL_HANDLE = -1;
+
     private ArrayList<FlatBody> bodyList;
+    // state of the bodies in the same order as bodyList
+    private FlatBodyStore store;
+    // handles of the bodies, they keep pointing at their body when rows move
+    private final BodyHandles handles = new BodyHandles();
     private FlatVector gravity;
 
+    // bodies added and handles removed while a step runs, applied once the step is done
+    private boolean isStepping;
+    private final ArrayList<FlatBody> pendingAdds = new ArrayList<>();
+    private int[] pendingRemoves = new int[16];
+    private int pendingRemoveCount;
+    // changes whenever a body joins or leaves, a recorder writes the bodies again when it does
+    private int bodyVersion;
+
+    // non static bodies in the order of store.dynamic, the only ones the broadphase sees
+    private final ArrayList<FlatBody> dynamicBodies = new ArrayList<>();
+    private Broadphase broadphase;
+    // pairs of the broadphase, indices into dynamicBodies
+    private final PairBuffer dynamicPairs = new PairBuffer();
+    // static bodies, built again only when one is added, removed or moved
+    private final StaticBodyIndex staticIndex = new StaticBodyIndex();
+    // candidate pairs of the current substep
+    private PairBuffer pairs;
+    // contacts of the current substep, in pair order
+    private ContactBuffer contacts;
+    // scratch space and counters of the serial narrow phase, every parallel task owns its own
+    private final NarrowphaseScratch narrowphaseScratch = new NarrowphaseScratch();
+
+    // gameplay rules run on the candidate pairs before the narrow phase, null for none
+    private PairFilter pairFilter;
+
+    // bounding box tests in front of the narrow phase during the last step, and how many of them rejected the pair
+    private int aabbTestCount;
+    private int aabbRejectCount;
+
+    private boolean isSleepingEnabled;
+    private float sleepLinearVelocity;
+    private float sleepRotationalVelocity;
+    private float timeToSleep;
+
+    // parallel narrow phase, null when the pairs are tested on the calling thread
+    private ForkJoinPool narrowphasePool;
+    private NarrowphaseTask[] narrowphaseTasks;
+    private ForkAllJob narrowphaseJob;
+
+    // real seconds per step, and the world time one step advances by
+    private float fixedTimeStep;
+    private float stepTime;
+    private int maxStepsPerUpdate;
+    // real time not simulated yet
+    private float accumulator;
+    private float interpolationAlpha;
+
+    private int solver;
+    private final SequentialImpulseSolver impulseSolver = new SequentialImpulseSolver();
+    // impulses of the last step, keyed by body pair
+    private final ContactCache contactCache = new ContactCache();
+
+    // contact islands of the current substep
+    private final ContactIslands islands = new ContactIslands();
+    // parallel island solver, null when the contacts are resolved on the calling thread
+    private ForkJoinPool islandPool;
+    private IslandTask[] islandTasks;
+    private ForkAllJob islandJob;
+
+    // timings and counts of every step, null when they are not recorded
+    private StepStatistics statistics;
+
+    // gets the contact events once after every step, null when they are not tracked
+    private ContactListener contactListener;
+    private final ContactEvents contactEvents = new ContactEvents();
+
+    // writes every step to a file, null when steps are not recorded
+    private StepRecorder recorder;
+
+    // box and point queries
+    private final AABBQuery aabbQuery = new AABBQuery();
+    // raycasts on the calling thread, every task of a parallel batch owns its own
+    private final RayQuery rayQuery = new RayQuery();
+    // pool the tasks of the last parallel batch were made for
+    private ForkJoinPool raycastPool;
+    private RaycastTask[] raycastTasks;
+    private ForkAllJob raycastJob;
+
+    // scratch vectors of resolveCollision
+    private final FlatVector relativeVelocity = new FlatVector();
+    private final FlatVector impulse = new FlatVector();
+    private final FlatVector velocity = new FlatVector();
+
     public FlatWorld() {
         this.bodyList = new ArrayList<>();
+        this.store = new FlatBodyStore(16);
         this.gravity = new FlatVector(0f, -0.98f);
+        this.broadphase = new SweepAndPruneBroadphase();
+        this.pairs = new PairBuffer();
+        this.contacts = new ContactBuffer();
+        this.solver = SOLVER_SUBSTEPS;
+        this.fixedTimeStep = DEFAULT_FIXED_TIME_STEP;
+        this.stepTime = DEFAULT_FIXED_TIME_STEP * TIME_UNITS_PER_SECOND;
+        this.maxStepsPerUpdate = DEFAULT_MAX_STEPS_PER_UPDATE;
+        this.interpolationAlpha = 1f;
+        this.isSleepingEnabled = true;
+        this.sleepLinearVelocity = DEFAULT_SLEEP_LINEAR_VELOCITY;
+        this.sleepRotationalVelocity = DEFAULT_SLEEP_ROTATIONAL_VELOCITY;
+        this.timeToSleep = DEFAULT_TIME_TO_SLEEP;
     }
 
     public FlatWorld(ArrayList<FlatBody> bodyList, FlatVector gravity) {
         this();
         this.bodyList = bodyList;
         this.gravity = gravity;
+
+        for (int i = 0; i < this.bodyList.size(); i++) {
+            this.attach(this.bodyList.get(i));
+        }
     }
 
     public int getBodyCount() {
@@ -30,63 +174,1325 @@ public class FlatWorld {
         return this.bodyList.size();
     }
 
+    public FlatVector getGravity() {
+        return this.gravity;
+    }
+
+    int getBodyVersion() {
+        return this.bodyVersion;
+    }
+
+    /**
+     * add a body at the end of the body list, it gets a handle that stays the same until it is removed.
+     * during a step, e.g. from a callback, the body gets its handle right away but joins the world after the step
+     */
     public boolean addBody(FlatBody body) {
-        return this.bodyList.add(body);
+        if (body.getHandle() != NULL_HANDLE) {
+            throw new IllegalArgumentException("body is already in a world");
+        }
+        if (this.isStepping) {
+            body.setHandle(this.handles.allocate(BodyHandles.PENDING_ROW));
+            this.pendingAdds.add(body);
+            return true;
+        }
+        if (!this.bodyList.add(body)) return false;
+        this.attach(body);
+        return true;
+    }
+
+    /**
+     * create circles from primitive arrays and add them in one go, the rows are written straight into the world
+     * and the broadphase takes them all at once.
+     * arguments are checked before any body is created, nothing is added when one of them is invalid
+     *
+     * @param x       x of the center of every circle
+     * @param y       y of the center of every circle
+     * @param radius  radius of every circle
+     * @param count   number of circles, the first count entries of every array are used
+     * @param handles receives the handle of every new body, may be null
+     */
+    public void addCircleBodies(float[] x, float[] y, float[] radius, int count,
+                                float density, boolean isStatic, float restitution, int[] handles) {
+        this.addBodies(FlatBody.CIRCLE_SHAPE, x, y, radius, null, count, density, isStatic, restitution, handles);
+    }
+
+    /**
+     * create boxes from primitive arrays and add them in one go, see addCircleBodies
+     *
+     * @param x       x of the center of every box
+     * @param y       y of the center of every box
+     * @param width   width of every box
+     * @param height  height of every box
+     * @param count   number of boxes, the first count entries of every array are used
+     * @param handles receives the handle of every new body, may be null
+     */
+    public void addBoxBodies(float[] x, float[] y, float[] width, float[] height, int count,
+                             float density, boolean isStatic, float restitution, int[] handles) {
+        if (height == null || height.length < count) {
+            throw new IllegalArgumentException("height must hold at least count values");
+        }
+        this.addBodies(FlatBody.BOX_SHAPE, x, y, width, height, count, density, isStatic, restitution, handles);
+    }
+
+    // sizeA is the radius of a circle or the width of a box, sizeB the height of a box
+    private void addBodies(int shapeType, float[] x, float[] y, float[] sizeA, float[] sizeB, int count,
+                           float density, boolean isStatic, float restitution, int[] handles) {
+        if (count < 0) {
+            throw new IllegalArgumentException("count can not be negative");
+        }
+        if (x == null || y == null || sizeA == null || x.length < count || y.length < count || sizeA.length < count) {
+            throw new IllegalArgumentException("positions and sizes must hold at least count values");
+        }
+        if (handles != null && handles.length < count) {
+            throw new IllegalArgumentException("handles must hold at least count values");
+        }
+        FlatBody.checkDensity(density);
+        for (int k = 0; k < count; k++) {
+            FlatBody.checkArea(shapeType == FlatBody.CIRCLE_SHAPE
+                    ? sizeA[k] * sizeA[k] * (float) Math.PI : sizeA[k] * sizeB[k]);
+        }
+        restitution = FlatMath.clamp(restitution, 0f, 1f);
+
+        FlatBodyStore s = this.store;
+        boolean isDeferred = this.isStepping;
+        if (!isDeferred) {
+            s.reserve(count);
+            this.bodyList.ensureCapacity(this.bodyList.size() + count);
+        }
+
+        int firstDynamic = this.dynamicBodies.size();
+        for (int k = 0; k < count; k++) {
+            // bodies made during a step wait in stores of their own like any other body added then
+            FlatBodyStore target = isDeferred ? new FlatBodyStore(1) : s;
+            FlatBody body = shapeType == FlatBody.CIRCLE_SHAPE
+                    ? FlatBody.createCircleBody(target, x[k], y[k], sizeA[k], density, isStatic, restitution)
+                    : FlatBody.createBoxBody(target, x[k], y[k], sizeA[k], sizeB[k], density, isStatic, restitution);
+
+            if (isDeferred) {
+                this.addBody(body);
+            } else {
+                this.bodyList.add(body);
+                if (!isStatic) s.addDynamic(body.getStoreIndex());
+                this.register(body);
+            }
+            if (handles != null) handles[k] = body.getHandle();
+        }
+
+        if (!isDeferred && !isStatic) {
+            this.broadphase.addAll(firstDynamic, this.dynamicBodies.size() - firstDynamic);
+        }
+    }
+
+    // add a body under the handle it had in the world it was recorded from, see StepReplay
+    void addBody(FlatBody body, int handle) {
+        if (this.isStepping) {
+            throw new IllegalStateException("can not add recorded bodies while the world steps");
+        }
+        this.handles.claim(handle, this.bodyList.size());
+        body.setHandle(handle);
+        this.bodyList.add(body);
+        this.attach(body);
+    }
+
+    // move the state of a body that was just appended to the body list into the store
+    private void attach(FlatBody body) {
+        body.attach(this.store);
+        this.register(body);
+        if (!body.isStatic()) this.broadphase.add(this.dynamicBodies.size() - 1);
+    }
+
+    // hand out the handle of a body whose row is in the store, and list it with the static or non static bodies
+    private void register(FlatBody body) {
+        int i = body.getStoreIndex();
+        int handle = this.store.handle[i];
+        // bodies added during a step got their handle when they were added
+        if (handle == NULL_HANDLE) this.store.handle[i] = this.handles.allocate(i);
+        else this.handles.setRow(handle, i);
+        this.bodyVersion++;
+        this.store.isQueryStale = true;
+
+        if (body.isStatic()) {
+            // a static body put onto sleeping ones wakes them
+            this.store.flags[i] |= FlatBodyStore.MOVED_BY_HAND;
+            this.store.isStaticMoved = true;
+            this.staticIndex.markDirty();
+        } else {
+            this.dynamicBodies.add(body);
+        }
     }
 
     public boolean removeBody(FlatBody body) {
-        return this.bodyList.remove(body);
+        int handle = body.getHandle();
+        if (this.getBodyByHandle(handle) != body && !this.pendingAdds.contains(body)) return false;
+        return this.removeBodyByHandle(handle) != null;
+    }
+
+    // the body of a handle, null once the body was removed and while a body added during a step waits to join
+    public FlatBody getBodyByHandle(int handle) {
+        int i = this.handles.rowOf(handle);
+        return i == -1 ? null : this.bodyList.get(i);
+    }
+
+    /**
+     * @return the removed body, null if the body of the handle was removed already
+     */
+    public FlatBody removeBodyByHandle(int handle) {
+        if (this.isStepping) return this.queueRemove(handle);
+        return this.removeBody(this.handles.rowOf(handle));
     }
 
+    /**
+     * remove the body at index i, the last body of the body list takes its place.
+     * takes the same time however many bodies there are, handles of the other bodies stay valid.
+     * during a step, e.g. from a callback, the body stays in the world until the step is done
+     */
     public FlatBody removeBody(int i) {
-        if (i >= 0 && i < this.bodyList.size())
-            return this.bodyList.remove(i);
-        return null;
+        if (i < 0 || i >= this.bodyList.size()) return null;
+        if (this.isStepping) return this.queueRemove(this.store.handle[i]);
+
+        FlatBodyStore s = this.store;
+        int last = s.size - 1;
+        // what rested on the body has to fall, sleeping bodies are not tested against each other or static bodies
+        FlatAABB aabb = this.bodyList.get(i).getBoundingBox();
+        this.wakeSleepingIn(aabb.getMin().getX(), aabb.getMin().getY(), aabb.getMax().getX(), aabb.getMax().getY());
+        int d = s.dynamicPosition[i];
+        if (d != -1) {
+            // the last non static body takes the place of this one, in the store and in the broadphase alike
+            this.broadphase.remove(d);
+            removeSwap(this.dynamicBodies, d);
+        } else {
+            this.staticIndex.markDirty();
+        }
+        // the pairs of the last body are renamed, the rest of the cached pairs stay as they are
+        this.contactCache.remove(i, last);
+        this.contactEvents.removeBody(i, last, s);
+
+        FlatBody body = this.bodyList.get(i);
+        int handle = s.handle[i];
+        body.detach();
+        s.remove(i);
+        this.handles.free(handle);
+        if (i != last) this.handles.setRow(s.handle[i], i);
+        removeSwap(this.bodyList, i);
+        this.bodyVersion++;
+        s.isQueryStale = true;
+        return body;
+    }
+
+    // remember a removal until the step is done, returns the body that will be removed
+    private FlatBody queueRemove(int handle) {
+        FlatBody body = this.getBodyByHandle(handle);
+        for (int k = 0; body == null && k < this.pendingAdds.size(); k++) {
+            if (this.pendingAdds.get(k).getHandle() == handle) body = this.pendingAdds.get(k);
+        }
+        if (body == null) return null;
+
+        if (this.pendingRemoveCount == this.pendingRemoves.length) {
+            this.pendingRemoves = Arrays.copyOf(this.pendingRemoves, this.pendingRemoveCount << 1);
+        }
+        this.pendingRemoves[this.pendingRemoveCount++] = handle;
+        return body;
+    }
+
+    // add and remove what callbacks asked for during the step, additions first so a body can be added and removed
+    private void applyPendingChanges() {
+        for (int k = 0; k < this.pendingAdds.size(); k++) {
+            FlatBody body = this.pendingAdds.get(k);
+            this.bodyList.add(body);
+            this.attach(body);
+        }
+        this.pendingAdds.clear();
+
+        for (int k = 0; k < this.pendingRemoveCount; k++) {
+            this.removeBodyByHandle(this.pendingRemoves[k]);
+        }
+        this.pendingRemoveCount = 0;
+    }
+
+    // move the last element into i instead of shifting every element after it
+    private static void removeSwap(ArrayList<FlatBody> list, int i) {
+        int last = list.size() - 1;
+        list.set(i, list.get(last));
+        list.remove(last);
+    }
+
+    public Broadphase getBroadphase() {
+        return broadphase;
+    }
+
+    /**
+     * replace the broadphase used to find candidate pairs, all existing non static bodies are added to it.
+     * static bodies never go into the broadphase, they are kept in an index of their own
+     *
+     * @param broadphase a fresh broadphase that is not used by any other world
+     */
+    public void setBroadphase(Broadphase broadphase) {
+        if (broadphase == null) {
+            throw new IllegalArgumentException("broadphase can not be null");
+        }
+        this.broadphase = broadphase;
+
+        for (int d = 0; d < this.dynamicBodies.size(); d++) {
+            this.broadphase.add(d);
+        }
+        this.store.isQueryStale = true;
+    }
+
+    public PairFilter getPairFilter() {
+        return this.pairFilter;
+    }
+
+    /**
+     * reject candidate pairs before the narrow phase, after the categories, masks and groups of the bodies.
+     * called on the stepping thread, also with a parallel narrow phase, pairs of resting bodies are not passed
+     *
+     * @param pairFilter gets the handles of the bodies, returns false for pairs that must not collide,
+     *                   null to let every pair through
+     */
+    public void setPairFilter(PairFilter pairFilter) {
+        this.pairFilter = pairFilter;
+    }
+
+    public boolean isParallelNarrowphase() {
+        return this.narrowphasePool != null;
+    }
+
+    public boolean isSleepingEnabled() {
+        return this.isSleepingEnabled;
     }
 
+    /**
+     * let bodies at rest fall asleep, turning it off wakes every body
+     */
+    public void setSleepingEnabled(boolean isSleepingEnabled) {
+        this.isSleepingEnabled = isSleepingEnabled;
+        if (isSleepingEnabled) return;
+
+        for (int k = 0; k < this.store.dynamicCount; k++) {
+            this.store.wake(this.store.dynamic[k]);
+        }
+    }
+
+    public float getSleepLinearVelocity() {
+        return this.sleepLinearVelocity;
+    }
+
+    public float getSleepRotationalVelocity() {
+        return this.sleepRotationalVelocity;
+    }
+
+    public float getTimeToSleep() {
+        return this.timeToSleep;
+    }
+
+    /**
+     * a body falls asleep once its speeds stay at or below the thresholds for timeToSleep
+     *
+     * @param linearVelocity max length of the linear velocity
+     * @param rotationalVelocity max absolute rotational velocity
+     * @param timeToSleep in world time, see TIME_UNITS_PER_SECOND
+     */
+    public void setSleepThresholds(float linearVelocity, float rotationalVelocity, float timeToSleep) {
+        if (linearVelocity < 0f || rotationalVelocity < 0f) {
+            throw new IllegalArgumentException("sleep velocity can not be negative");
+        }
+        if (timeToSleep < 0f) {
+            throw new IllegalArgumentException("time to sleep can not be negative");
+        }
+        this.sleepLinearVelocity = linearVelocity;
+        this.sleepRotationalVelocity = rotationalVelocity;
+        this.timeToSleep = timeToSleep;
+    }
+
+    // pairs of the last step whose bounding boxes were tested before the narrow phase, pairs of resting bodies are not counted
+    public int getAABBTestCount() {
+        return this.aabbTestCount;
+    }
+
+    // pairs of the last step rejected by the bounding box test, they never reached sat
+    public int getAABBRejectCount() {
+        return this.aabbRejectCount;
+    }
+
+    /**
+     * test candidate pairs on the common fork join pool
+     *
+     * @param parallel false to test them on the calling thread
+     */
+    public void setParallelNarrowphase(boolean parallel) {
+        this.setParallelNarrowphase(parallel ? ForkJoinPool.commonPool() : null);
+    }
+
+    /**
+     * test candidate pairs on the given pool, every task writes into its own contact buffer
+     * and the buffers are merged in pair order, so the result is the same as on one thread
+     *
+     * @param pool the pool to run on, null to test them on the calling thread
+     */
+    public void setParallelNarrowphase(ForkJoinPool pool) {
+        this.narrowphasePool = pool;
+        this.narrowphaseTasks = null;
+        this.narrowphaseJob = null;
+        if (pool == null) return;
+
+        // a few tasks per thread so a thread that finishes early can take over some work
+        this.narrowphaseTasks = new NarrowphaseTask[pool.getParallelism() * 4];
+        for (int t = 0; t < this.narrowphaseTasks.length; t++) {
+            this.narrowphaseTasks[t] = new NarrowphaseTask();
+        }
+        this.narrowphaseJob = new ForkAllJob(this.narrowphaseTasks);
+    }
+
+    public boolean isDeterministic() {
+        return this.store.isDeterministic;
+    }
+
+    /**
+     * make every step give the same bits on every machine, for lockstep games that only send their inputs
+     * <p>
+     * the step already tests and solves in an order that does not depend on threads, pairs are sorted and the
+     * parallel narrow phase and solver put their results together in that order, so both stay usable.
+     * what this changes is the rotation of the bodies, it is done with StrictMath instead of Math.
+     * two worlds only agree when they get the same settings and the same bodies added and removed in the same order,
+     * compare getStateHash after every step to find out when they stopped agreeing
+     */
+    public void setDeterministic(boolean isDeterministic) {
+        FlatBodyStore s = this.store;
+        if (s.isDeterministic == isDeterministic) return;
+        s.isDeterministic = isDeterministic;
+        // cached vertices were rotated the other way
+        for (int i = 0; i < s.size; i++) {
+            s.flags[i] |= FlatBodyStore.TRANSFORM_DIRTY;
+        }
+        this.staticIndex.markDirty();
+        s.isQueryStale = true;
+    }
+
+    /**
+     * hash of the handle, position, velocity, rotation and sleep state of every body.
+     * worlds stepped the same way have the same hash, a different one means they went apart
+     */
+    public long getStateHash() {
+        return this.store.hashState();
+    }
+
+    public int getSolver() {
+        return this.solver;
+    }
+
+    /**
+     * choose how contacts are resolved
+     *
+     * @param solver SOLVER_SUBSTEPS or SOLVER_SEQUENTIAL_IMPULSE
+     */
+    public void setSolver(int solver) {
+        if (solver != SOLVER_SUBSTEPS && solver != SOLVER_SEQUENTIAL_IMPULSE) {
+            throw new IllegalArgumentException("unknown solver " + solver);
+        }
+        this.solver = solver;
+        this.contactCache.clear();
+    }
+
+    public boolean isParallelSolver() {
+        return this.islandPool != null;
+    }
+
+    /**
+     * resolve contact islands on the common fork join pool
+     *
+     * @param parallel false to resolve them on the calling thread
+     */
+    public void setParallelSolver(boolean parallel) {
+        this.setParallelSolver(parallel ? ForkJoinPool.commonPool() : null);
+    }
+
+    /**
+     * resolve contact islands on the given pool
+     * <p>
+     * islands share no moving body and the contacts of an island keep their order,
+     * so the result is the same as on one thread
+     *
+     * @param pool the pool to run on, null to resolve them on the calling thread
+     */
+    public void setParallelSolver(ForkJoinPool pool) {
+        this.islandPool = pool;
+        this.islandTasks = null;
+        this.islandJob = null;
+        if (pool == null) return;
+
+        this.islandTasks = new IslandTask[0];
+        this.islandJob = new ForkAllJob(this.islandTasks);
+    }
+
+    public StepStatistics getStatistics() {
+        return this.statistics;
+    }
+
+    /**
+     * record timings and counts of every step, off by default.
+     * when off, step only pays a null check per phase
+     *
+     * @param statistics filled by every step, null to stop recording
+     */
+    public void setStatistics(StepStatistics statistics) {
+        this.statistics = statistics;
+    }
+
+    public StepRecorder getRecorder() {
+        return this.recorder;
+    }
+
+    /**
+     * @param recorder gets every step once it is done, including bodies added and removed during it,
+     *                 null to stop recording
+     */
+    public void setRecorder(StepRecorder recorder) {
+        this.recorder = recorder;
+    }
+
+    public ContactListener getContactListener() {
+        return this.contactListener;
+    }
+
+    /**
+     * get begin, persist and end events of touching pairs once after every step,
+     * instead of a collision callback for every contact of every pass
+     *
+     * @param listener called on the stepping thread, null to stop tracking contacts
+     */
+    public void setContactListener(ContactListener listener) {
+        this.contactListener = listener;
+        this.contactEvents.clear();
+    }
+
+    // events of the last step, empty when no contact listener is set
+    public ContactEvents getContactEvents() {
+        return this.contactEvents;
+    }
+
+    /**
+     * the body at index i of the body list, removing a body moves the last one into its index.
+     * keep a handle to find a body again later
+     */
     public FlatBody getBody(int i) {
         if (i >= 0 && i < this.bodyList.size())
             return this.bodyList.get(i);
         return null;
     }
 
+    /**
+     * run as many fixed steps as the real time since the last call covers
+     * <p>
+     * time left over is kept for the next call, getInterpolationAlpha tells how far the world is into the next step,
+     * so a renderer can draw bodies between their previous and current transforms
+     *
+     * @param frameDelta real seconds since the last call
+     * @param iterations passed to every step
+     * @return the number of steps run
+     */
+    public int update(float frameDelta, int iterations, CollisionCallback callback) {
+        if (frameDelta < 0f) {
+            throw new IllegalArgumentException("frame delta can not be negative");
+        }
+        this.accumulator += frameDelta;
+
+        int steps = 0;
+        while (this.accumulator >= this.fixedTimeStep && steps < this.maxStepsPerUpdate) {
+            this.step(iterations, callback);
+            this.accumulator -= this.fixedTimeStep;
+            steps++;
+        }
+
+        // too far behind, the world slows down instead of spending every following frame catching up
+        if (this.accumulator >= this.fixedTimeStep) {
+            this.accumulator %= this.fixedTimeStep;
+        }
+        this.interpolationAlpha = this.accumulator / this.fixedTimeStep;
+        return steps;
+    }
+
+    // 0 draws the state at the start of the last step, 1 the current state
+    public float getInterpolationAlpha() {
+        return this.interpolationAlpha;
+    }
+
+    public float getFixedTimeStep() {
+        return this.fixedTimeStep;
+    }
+
+    /**
+     * real seconds one step covers, the world time of a step changes with it so the world keeps its speed
+     */
+    public void setFixedTimeStep(float fixedTimeStep) {
+        if (fixedTimeStep <= 0f) {
+            throw new IllegalArgumentException("fixed time step must be positive");
+        }
+        this.fixedTimeStep = fixedTimeStep;
+        this.stepTime = fixedTimeStep * TIME_UNITS_PER_SECOND;
+    }
+
+    public int getMaxStepsPerUpdate() {
+        return this.maxStepsPerUpdate;
+    }
+
+    public void setMaxStepsPerUpdate(int maxStepsPerUpdate) {
+        if (maxStepsPerUpdate < 1) {
+            throw new IllegalArgumentException("max steps per update must be at least 1");
+        }
+        this.maxStepsPerUpdate = maxStepsPerUpdate;
+    }
+
+    // bytes saveState needs for the current bodies and contacts
+    public int getStateSize() {
+        return STATE_HEADER_BYTES + FlatBodyStore.STATE_BYTES_PER_ROW * this.store.size
+                + this.contactCache.getStateSize() + this.contactEvents.getStateSize();
+    }
+
+    /**
+     * write everything a step changes into a buffer, restoreState puts the world back to this point
+     * <p>
+     * that is the position, velocity, rotation and sleep state of every body, the cached impulses and the touching
+     * pairs of the last step, written column by column in the byte order of the buffer.
+     * the bodies themselves are not written, only their handles to check the state belongs to them
+     *
+     * @param buffer written from its position on, it needs getStateSize bytes left
+     */
+    public void saveState(ByteBuffer buffer) {
+        if (this.isStepping) {
+            throw new IllegalStateException("can not save the state while the world steps");
+        }
+        buffer.putInt(STATE_MAGIC);
+        buffer.putInt(this.store.size);
+        buffer.putFloat(this.accumulator);
+        buffer.putFloat(this.interpolationAlpha);
+        this.store.writeState(buffer);
+        this.contactCache.writeState(buffer);
+        this.contactEvents.writeState(buffer);
+    }
+
+    /**
+     * put the world back to a state saveState wrote, in place.
+     * the world must hold the same bodies in the same order as when it was saved,
+     * a body added or removed since then has to be undone first
+     *
+     * @param buffer read from its position on, with the byte order it was written with
+     * @throws IllegalArgumentException when the buffer holds no state or the state of other bodies, the world is
+     *                                  not touched then
+     */
+    public void restoreState(ByteBuffer buffer) {
+        if (this.isStepping) {
+            throw new IllegalStateException("can not restore a state while the world steps");
+        }
+        int start = buffer.position();
+        if (buffer.remaining() < STATE_HEADER_BYTES || buffer.getInt(start) != STATE_MAGIC) {
+            throw new IllegalArgumentException("buffer does not hold a world state");
+        }
+        int bodyCount = buffer.getInt(start + 4);
+        if (bodyCount != this.store.size) {
+            throw new IllegalArgumentException("state is of " + bodyCount + " bodies, the world has " + this.store.size);
+        }
+        buffer.position(start + STATE_HEADER_BYTES);
+        if (buffer.remaining() < FlatBodyStore.STATE_BYTES_PER_ROW * bodyCount || !this.store.isStateOfRows(buffer)) {
+            buffer.position(start);
+            throw new IllegalArgumentException("state is of other bodies than the ones in the world");
+        }
+
+        this.accumulator = buffer.getFloat(start + 8);
+        this.interpolationAlpha = buffer.getFloat(start + 12);
+        this.store.readState(buffer);
+        this.contactCache.readState(buffer);
+        this.contactEvents.readState(buffer);
+        this.store.isQueryStale = true;
+    }
+
+    /**
+     * advance the world by one step
+     *
+     * @param iterations with SOLVER_SUBSTEPS the number of integrate, detect and resolve passes,
+     *                   with SOLVER_SEQUENTIAL_IMPULSE the number of velocity iterations after a single detection
+     * @param callback called for every contact with the handles of its bodies, on the calling thread, may be null.
+     *                 bodies it adds or removes join or leave the world once the step is done
+     */
     public void step(int iterations, CollisionCallback callback) {
+        if (iterations < 1) {
+            throw new IllegalArgumentException("iterations must be at least 1");
+        }
+        StepStatistics statistics = this.statistics;
+        if (statistics != null) statistics.begin();
+
+        // the step walks the bodies by index, callbacks must not move them around underneath it
+        this.isStepping = true;
+        try {
+            this.simulate(iterations, callback);
+        } finally {
+            this.isStepping = false;
+            this.store.isQueryStale = true;
+        }
+        this.applyPendingChanges();
+        if (this.recorder != null) this.recorder.record(this);
+
+        if (statistics != null) statistics.end(this.countAwakeBodies());
+    }
+
+    private void simulate(int iterations, CollisionCallback callback) {
+        StepStatistics statistics = this.statistics;
+        this.aabbTestCount = 0;
+        this.aabbRejectCount = 0;
+        this.store.savePrevious();
+        this.interpolationAlpha = 1f;
+        if (this.contactListener != null) this.contactEvents.beginStep();
+
+        if (this.solver == SOLVER_SEQUENTIAL_IMPULSE) {
+            this.stepSequentialImpulse(iterations, callback);
+        } else {
+            this.stepSubsteps(iterations, callback);
+        }
+
+        // islands of the last detection fall asleep as a whole
+        long time = statistics != null ? System.nanoTime() : 0L;
+        if (this.isSleepingEnabled) {
+            this.store.updateSleepTime(this.stepTime, this.sleepLinearVelocity, this.sleepRotationalVelocity);
+            this.islands.sleep(this.store, this.timeToSleep);
+        }
+        if (statistics != null) time = statistics.lap(StepStatistics.INTEGRATE, time);
 
+        // after sleeping, so pairs that just fell asleep keep touching
+        if (this.contactListener != null) {
+            this.contactEvents.endStep(this.store);
+            this.contactListener.contacts(this.contactEvents);
+            if (statistics != null) statistics.lap(StepStatistics.CALLBACKS, time);
+        }
+    }
+
+    private int countAwakeBodies() {
+        int count = 0;
+        for (int k = 0; k < this.store.dynamicCount; k++) {
+            if ((this.store.flags[this.store.dynamic[k]] & FlatBodyStore.SLEEPING) == 0) count++;
+        }
+        return count;
+    }
+
+    // split the step into passes that each move the bodies, then push apart what overlaps
+    private void stepSubsteps(int iterations, CollisionCallback callback) {
+        StepStatistics statistics = this.statistics;
         for (int k = 0; k < iterations; k++) {
 
             // move step
-            for (FlatBody body : this.bodyList) {
-                body.handleForceAndVelocity(0.5f, this.gravity, iterations);
-            }
+            long time = statistics != null ? System.nanoTime() : 0L;
+            this.store.integrate(this.stepTime / iterations, this.gravity.getX(), this.gravity.getY());
+            if (statistics != null) statistics.lap(StepStatistics.INTEGRATE, time);
+
+            findContacts();
 
             // collision step
-            for (int i = 0; i < this.bodyList.size() - 1; i++) {
+            time = statistics != null ? System.nanoTime() : 0L;
+            solveIslands(0);
+            if (statistics != null) statistics.lap(StepStatistics.RESOLVE, time);
+
+            collide(callback);
+        }
+    }
+
+    // detect once, solve velocities with the impulses of the last step as a starting point, then move
+    private void stepSequentialImpulse(int iterations, CollisionCallback callback) {
+        StepStatistics statistics = this.statistics;
+        findContacts();
+
+        long time = statistics != null ? System.nanoTime() : 0L;
+        this.store.integrateVelocities(this.stepTime, this.gravity.getX(), this.gravity.getY());
+        if (statistics != null) time = statistics.lap(StepStatistics.INTEGRATE, time);
+
+        this.impulseSolver.prepare(this.store, this.contacts, this.contactCache, this.stepTime);
+        solveIslands(iterations);
+        this.contactCache.save(this.contacts, this.impulseSolver.getAccumulatedImpulses());
+        if (statistics != null) time = statistics.lap(StepStatistics.RESOLVE, time);
+
+        this.store.integratePositions(this.stepTime);
+        if (statistics != null) statistics.lap(StepStatistics.INTEGRATE, time);
+
+        collide(callback);
+    }
+
+    // contacts of the current positions, grouped into islands
+    private void findContacts() {
+        StepStatistics statistics = this.statistics;
+        long time = statistics != null ? System.nanoTime() : 0L;
+
+        // broad phase, only bodies with overlapping bounding boxes go on to the narrow phase
+        findPairs();
+        // test pairs in the same order as the i < j loop
+        this.pairs.sort();
+        if (this.pairFilter != null) filterPairs(this.pairFilter);
+        if (statistics != null) time = statistics.lap(StepStatistics.BROADPHASE, time);
+
+        // narrow phase, contacts of all pairs are found before any of them is resolved,
+        // so the pairs can be tested on several threads and still give the same result
+        this.contacts.clear();
+        if (this.narrowphasePool != null && this.pairs.size() >= MIN_PAIRS_PER_NARROWPHASE_TASK * 2) {
+            detectContactsParallel();
+        } else {
+            NarrowphaseScratch scratch = this.narrowphaseScratch;
+            scratch.aabbTestCount = 0;
+            scratch.aabbRejectCount = 0;
+            detectContacts(0, this.pairs.size(), this.contacts, scratch);
+            this.aabbTestCount += scratch.aabbTestCount;
+            this.aabbRejectCount += scratch.aabbRejectCount;
+        }
+
+        // an awake body touching a sleeping one wakes it, static bodies never sleep
+        FlatBodyStore s = this.store;
+        for (int c = 0; c < this.contacts.size(); c++) {
+            int i = this.contacts.getIndexA(c);
+            int j = this.contacts.getIndexB(c);
+            if ((s.flags[i] & FlatBodyStore.SLEEPING) != 0) s.wake(i);
+            if ((s.flags[j] & FlatBodyStore.SLEEPING) != 0) s.wake(j);
+        }
+        if (statistics != null) {
+            time = statistics.lap(StepStatistics.NARROWPHASE, time);
+            statistics.addPairs(this.pairs.size(), this.contacts.size());
+        }
+
+        this.islands.build(s, this.contacts);
+        if (statistics != null) statistics.lap(StepStatistics.RESOLVE, time);
+    }
+
+    // candidate pairs of the non static bodies from the broadphase, and of awake bodies with the static bodies under them
+    private void findPairs() {
+        FlatBodyStore s = this.store;
+        this.updateStaticIndex();
+
+        this.broadphase.findPairs(this.dynamicBodies, this.dynamicPairs);
+
+        // back to body list indices
+        PairBuffer pairs = this.pairs;
+        PairBuffer dynamicPairs = this.dynamicPairs;
+        int[] dynamic = s.dynamic;
+        pairs.clear();
+        for (int p = 0; p < dynamicPairs.size(); p++) {
+            pairs.add(dynamic[dynamicPairs.getIndexA(p)], dynamic[dynamicPairs.getIndexB(p)]);
+        }
+
+        // sleeping bodies can not start touching a static body, their boxes are cached already by the broadphase
+        for (int k = 0; k < s.dynamicCount; k++) {
+            int i = dynamic[k];
+            if ((s.flags[i] & FlatBodyStore.SLEEPING) != 0) continue;
+
+            FlatAABB aabb = this.dynamicBodies.get(k).getBoundingBox();
+            this.staticIndex.query(aabb.getMin().getX(), aabb.getMin().getY(), aabb.getMax().getX(), aabb.getMax().getY(),
+                    i, this.handles, pairs);
+        }
+    }
+
+    private void updateStaticIndex() {
+        FlatBodyStore s = this.store;
+        if (this.staticIndex.isDirty() || s.isStaticMoved) {
+            if (s.isStaticMoved) this.wakeAroundMovedStatics();
+            this.staticIndex.build(s, this.bodyList);
+            s.isStaticMoved = false;
+        }
+    }
+
+    // sleeping bodies are never tested against static ones, wake those a static body moved away from or onto.
+    // the static index still holds the boxes from before the move
+    private void wakeAroundMovedStatics() {
+        FlatBodyStore s = this.store;
+        StaticBodyIndex index = this.staticIndex;
+        for (int k = 0; k < index.size(); k++) {
+            int i = this.handles.rowOf(index.getHandle(k));
+            if (i == -1 || (s.flags[i] & FlatBodyStore.MOVED_BY_HAND) == 0) continue;
+            this.wakeSleepingIn(index.getMinX(k), index.getMinY(k), index.getMaxX(k), index.getMaxY(k));
+        }
+
+        for (int i = 0; i < s.size; i++) {
+            if ((s.flags[i] & FlatBodyStore.MOVED_BY_HAND) == 0) continue;
+            s.flags[i] &= ~FlatBodyStore.MOVED_BY_HAND;
+            FlatAABB aabb = this.bodyList.get(i).getBoundingBox();
+            this.wakeSleepingIn(aabb.getMin().getX(), aabb.getMin().getY(), aabb.getMax().getX(), aabb.getMax().getY());
+        }
+    }
+
+    // wake every sleeping body whose bounding box overlaps a box, touching counts
+    private void wakeSleepingIn(float minX, float minY, float maxX, float maxY) {
+        FlatBodyStore s = this.store;
+        for (int k = 0; k < s.dynamicCount; k++) {
+            int i = s.dynamic[k];
+            if ((s.flags[i] & FlatBodyStore.SLEEPING) == 0) continue;
+
+            // boxes of sleeping bodies are cached, they do not move
+            FlatAABB aabb = this.dynamicBodies.get(k).getBoundingBox();
+            if (aabb.getMin().getX() > maxX || minX > aabb.getMax().getX()) continue;
+            if (aabb.getMin().getY() > maxY || minY > aabb.getMax().getY()) continue;
+            s.wake(i);
+        }
+    }
+
+    /**
+     * cast a ray through the world, static bodies included
+     *
+     * @param direction  does not need to be of unit length
+     * @param maskBits   only bodies with a category bit in the mask are hit, -1 for all
+     * @param callback   gets every hit closer than the max distance it returned last, see RaycastCallback.
+     *                   a ray that starts inside a body does not hit it. must not add, remove or move bodies
+     */
+    public void raycast(FlatVector origin, FlatVector direction, float maxDistance, int maskBits,
+                        RaycastCallback callback) {
+        if (callback == null) {
+            throw new IllegalArgumentException("callback can not be null");
+        }
+        float length = FlatMath.length(direction);
+        if (length == 0f) {
+            throw new IllegalArgumentException("direction can not be zero");
+        }
+        if (maxDistance < 0f) {
+            throw new IllegalArgumentException("max distance can not be negative");
+        }
+        this.prepareQueries();
+
+        this.rayQuery.begin(this.store, this.bodyList, origin.getX(), origin.getY(),
+                direction.getX() / length, direction.getY() / length, maxDistance, maskBits, callback);
+        this.cast(this.rayQuery, origin.getX(), origin.getY(), direction.getX() / length, direction.getY() / length,
+                maxDistance);
+    }
+
+    /**
+     * find the closest body every ray of the batch hits, the results go into the batch
+     *
+     * @param maskBits only bodies with a category bit in the mask are hit, -1 for all
+     * @param pool     to cast the rays on, null to cast them on the calling thread.
+     *                 queries only read the world, so the rays need no locking
+     */
+    public void raycast(RaycastBatch batch, int maskBits, ForkJoinPool pool) {
+        this.prepareQueries();
+
+        int rayCount = batch.size();
+        if (pool == null || rayCount < MIN_RAYS_PER_TASK * 2) {
+            this.castRays(batch, 0, rayCount, maskBits, this.rayQuery);
+            return;
+        }
+
+        if (this.raycastPool != pool) {
+            this.raycastPool = pool;
+            this.raycastTasks = new RaycastTask[pool.getParallelism() * 4];
+            for (int t = 0; t < this.raycastTasks.length; t++) {
+                this.raycastTasks[t] = new RaycastTask();
+            }
+            this.raycastJob = new ForkAllJob(this.raycastTasks);
+        }
+
+        int taskCount = Math.min(this.raycastTasks.length, rayCount / MIN_RAYS_PER_TASK);
+        int chunk = (rayCount + taskCount - 1) / taskCount;
+        for (int t = 0; t < taskCount; t++) {
+            RaycastTask task = this.raycastTasks[t];
+            task.batch = batch;
+            task.maskBits = maskBits;
+            task.start = Math.min(t * chunk, rayCount);
+            task.end = Math.min(task.start + chunk, rayCount);
+            task.reinitialize();
+        }
+        this.raycastJob.taskCount = taskCount;
+        this.raycastJob.reinitialize();
+        pool.invoke(this.raycastJob);
+    }
+
+    // closest hits of a range of rays of a batch
+    private void castRays(RaycastBatch batch, int start, int end, int maskBits, RayQuery query) {
+        for (int r = start; r < end; r++) {
+            float originX = batch.getOriginX(r);
+            float originY = batch.getOriginY(r);
+            float directionX = batch.getDirectionX(r);
+            float directionY = batch.getDirectionY(r);
+            query.begin(this.store, this.bodyList, originX, originY, directionX, directionY,
+                    batch.getMaxDistance(r), maskBits, null);
+            this.cast(query, originX, originY, directionX, directionY, batch.getMaxDistance(r));
+
+            batch.setHit(r, query.hitHandle, query.hitDistance, query.hitNormalX, query.hitNormalY);
+        }
+    }
+
+    // static bodies first, whatever they hit shortens the ray through the broadphase
+    private void cast(RayQuery query, float originX, float originY, float directionX, float directionY,
+                      float maxDistance) {
+        query.isStaticPass = true;
+        maxDistance = this.staticIndex.raycast(originX, originY, directionX, directionY, maxDistance,
+                this.handles, query);
+        if (maxDistance <= 0f) return;
+
+        query.isStaticPass = false;
+        this.broadphase.raycast(this.dynamicBodies, originX, originY, directionX, directionY, maxDistance, query);
+    }
+
+    /**
+     * the handles of every body whose bounding box overlaps a box, static bodies included
+     *
+     * @param consumer must not add, remove or move bodies
+     */
+    public void queryAABB(FlatAABB aabb, IntConsumer consumer) {
+        this.queryAABB(aabb, -1, false, consumer);
+    }
+
+    /**
+     * the handles of every body overlapping a box, touching counts
+     *
+     * @param maskBits only bodies with a category bit in the mask are found, -1 for all
+     * @param isExact  test the shape of the body, not only its bounding box
+     * @param consumer must not add, remove or move bodies
+     */
+    public void queryAABB(FlatAABB aabb, int maskBits, boolean isExact, IntConsumer consumer) {
+        if (consumer == null) {
+            throw new IllegalArgumentException("consumer can not be null");
+        }
+        this.query(aabb.getMin().getX(), aabb.getMin().getY(), aabb.getMax().getX(), aabb.getMax().getY(),
+                maskBits, isExact, consumer, null);
+    }
+
+    /**
+     * same as above, but writes the handles into an array instead of handing them to a consumer
+     *
+     * @param handles the first bodies found go here, the rest are only counted
+     * @return number of bodies found, call again with a larger array when it is larger than the array
+     */
+    public int queryAABB(FlatAABB aabb, int maskBits, boolean isExact, int[] handles) {
+        return this.query(aabb.getMin().getX(), aabb.getMin().getY(), aabb.getMax().getX(), aabb.getMax().getY(),
+                maskBits, isExact, null, handles);
+    }
+
+    /**
+     * the handles of every body under a point, e.g. to pick bodies with the mouse
+     *
+     * @param maskBits only bodies with a category bit in the mask are found, -1 for all
+     * @param isExact  test the shape of the body, not only its bounding box
+     * @param consumer must not add, remove or move bodies
+     */
+    public void queryPoint(FlatVector point, int maskBits, boolean isExact, IntConsumer consumer) {
+        if (consumer == null) {
+            throw new IllegalArgumentException("consumer can not be null");
+        }
+        this.query(point.getX(), point.getY(), point.getX(), point.getY(), maskBits, isExact, consumer, null);
+    }
+
+    /**
+     * same as above, but writes the handles into an array instead of handing them to a consumer
+     *
+     * @param handles the first bodies found go here, the rest are only counted
+     * @return number of bodies found, call again with a larger array when it is larger than the array
+     */
+    public int queryPoint(FlatVector point, int maskBits, boolean isExact, int[] handles) {
+        return this.query(point.getX(), point.getY(), point.getX(), point.getY(), maskBits, isExact, null, handles);
+    }
+
+    // static bodies from the static index, the others from the broadphase
+    private int query(float minX, float minY, float maxX, float maxY, int maskBits, boolean isExact,
+                      IntConsumer consumer, int[] out) {
+        if (consumer == null && out == null) {
+            throw new IllegalArgumentException("handles can not be null");
+        }
+        this.prepareQueries();
+
+        AABBQuery query = this.aabbQuery;
+        query.begin(this.store, this.bodyList, minX, minY, maxX, maxY, maskBits, isExact, consumer, out);
+        query.isStaticPass = true;
+        this.staticIndex.query(minX, minY, maxX, maxY, this.handles, query);
+        query.isStaticPass = false;
+        this.broadphase.query(this.dynamicBodies, minX, minY, maxX, maxY, query);
+        return query.count;
+    }
+
+    // bring the static index and the broadphase up to where the bodies are, and fill the lazy caches queries read,
+    // after this queries only read and can run on several threads
+    private void prepareQueries() {
+        if (this.isStepping) {
+            throw new IllegalStateException("can not query the world while it steps");
+        }
+        this.updateStaticIndex();
+
+        FlatBodyStore s = this.store;
+        if (!s.isQueryStale) return;
+        for (int k = 0; k < s.dynamicCount; k++) {
+            int i = s.dynamic[k];
+            this.dynamicBodies.get(k).getBoundingBox();
+            if (s.shapeType[i] != FlatBody.CIRCLE_SHAPE) this.dynamicBodies.get(k).getTransformedVertices();
+        }
+        this.broadphase.update(this.dynamicBodies);
+        s.isQueryStale = false;
+    }
+
+    // drop the candidate pairs the pair filter rejects, the rest keep their order
+    private void filterPairs(PairFilter pairFilter) {
+        FlatBodyStore s = this.store;
+        PairBuffer pairs = this.pairs;
+        int kept = 0;
+        for (int p = 0; p < pairs.size(); p++) {
+            int i = pairs.getIndexA(p);
+            int j = pairs.getIndexB(p);
+
+            // the narrow phase skips these anyway, the filter does not need to see them
+            boolean isRejected = !(s.isResting(i) && s.isResting(j))
+                    && (!s.shouldCollide(i, j) || !pairFilter.shouldCollide(s.handle[i], s.handle[j]));
+            if (isRejected) continue;
+
+            pairs.move(p, kept++);
+        }
+        pairs.truncate(kept);
+    }
+
+    // callbacks run on the calling thread, after all contacts are resolved
+    private void collide(CollisionCallback callback) {
+        StepStatistics statistics = this.statistics;
+        long time = statistics != null ? System.nanoTime() : 0L;
+        if (this.contactListener != null) this.contactEvents.add(this.contacts);
+
+        if (callback != null) {
+            int[] handle = this.store.handle;
+            for (int c = 0; c < this.contacts.size(); c++) {
+                callback.collide(handle[this.contacts.getIndexA(c)], handle[this.contacts.getIndexB(c)]);
+            }
+        }
+        if (statistics != null) statistics.lap(StepStatistics.CALLBACKS, time);
+    }
 
-                FlatBody bodyA = this.bodyList.get(i);
+    // push the bodies of a contact apart, then add impulses
+    private void resolveContact(int c) {
+        FlatBodyStore s = this.store;
+        int i = this.contacts.getIndexA(c);
+        int j = this.contacts.getIndexB(c);
 
-                for (int j = i + 1; j < this.bodyList.size(); j++) {
-                    FlatBody bodyB = this.bodyList.get(j);
-                    Collisions.CollisionResult collisionResult;
+        float normalX = this.contacts.getNormalX(c);
+        float normalY = this.contacts.getNormalY(c);
+        float forceX = normalX * this.contacts.getDepth(c);
+        float forceY = normalY * this.contacts.getDepth(c);
+        if (s.invMass[i] == 0f)
+            s.move(j, forceX / 2f, forceY / 2f);
+        else if (s.invMass[j] == 0f)
+            s.move(i, forceX / -2f, forceY / -2f);
+        else {
+            s.move(i, forceX / -2f, forceY / -2f);
+            s.move(j, forceX / 2f, forceY / 2f);
+        }
+        resolveCollision(i, j, normalX, normalY);
+    }
+
+    // solve all islands, on the island pool when there is enough work to split
+    private void solveIslands(int velocityIterations) {
+        if (this.islandPool != null && this.islands.islandCount > 1
+                && this.contacts.size() >= MIN_CONTACTS_PER_ISLAND_TASK * 2) {
+            solveIslandsParallel(velocityIterations);
+        } else {
+            solveIslands(0, this.islands.islandCount, velocityIterations);
+        }
+    }
 
-                    if (bodyA.isStatic() && bodyB.isStatic()) continue;
+    // solve the contacts of islands in [start, end) with the current solver
+    private void solveIslands(int start, int end, int velocityIterations) {
+        if (this.solver == SOLVER_SEQUENTIAL_IMPULSE) {
+            this.impulseSolver.solve(this.store, this.contacts, this.islands, start, end, velocityIterations);
+        } else {
+            resolveIslands(start, end);
+        }
+    }
 
-                    collisionResult = getCollisionResult(bodyA, bodyB);
+    // resolve the contacts of islands in [start, end), each island in contact order
+    private void resolveIslands(int start, int end) {
+        ContactIslands islands = this.islands;
+        for (int k = start; k < end; k++) {
+            for (int c = islands.contactStart[k]; c < islands.contactStart[k + 1]; c++) {
+                resolveContact(islands.contactOrder[c]);
+            }
+        }
+    }
 
-                    if (collisionResult.isIntersect) {
-                        FlatVector force = FlatMath.multiply(collisionResult.normal, collisionResult.depth);
-                        if (bodyA.isStatic())
-                            bodyB.move(FlatMath.divide(force, 2f));
-                        else if (bodyB.isStatic())
-                            bodyA.move(FlatMath.divide(force, -2f));
-                        else {
-                            bodyA.move(FlatMath.divide(force, -2f));
-                            bodyB.move(FlatMath.divide(force, 2f));
-                        }
-                        resolveCollision(bodyA, bodyB, collisionResult.normal);
+    private void solveIslandsParallel(int velocityIterations) {
+        // consecutive islands are grouped until a group has enough contacts to be worth a task
+        ContactIslands islands = this.islands;
+        int taskCount = 0;
+        int start = 0;
+        for (int k = 0; k < islands.islandCount; k++) {
+            int contactCount = islands.contactStart[k + 1] - islands.contactStart[start];
+            if (contactCount < MIN_CONTACTS_PER_ISLAND_TASK && k < islands.islandCount - 1) continue;
 
-                        callback.collide(i, j);
-                    }
+            if (taskCount == this.islandTasks.length) {
+                this.islandTasks = Arrays.copyOf(this.islandTasks, Math.max(taskCount << 1, 8));
+                for (int t = taskCount; t < this.islandTasks.length; t++) {
+                    this.islandTasks[t] = new IslandTask();
                 }
+                this.islandJob.tasks = this.islandTasks;
+            }
+            IslandTask task = this.islandTasks[taskCount++];
+            task.start = start;
+            task.end = k + 1;
+            task.velocityIterations = velocityIterations;
+            task.reinitialize();
+            start = k + 1;
+        }
+
+        this.islandJob.taskCount = taskCount;
+        this.islandJob.reinitialize();
+        this.islandPool.invoke(this.islandJob);
+    }
+
+    /**
+     * test candidate pairs in [start, end) and append the contacts in pair order
+     * <p>
+     * only reads bodies, so ranges can be tested on several threads at once
+     */
+    private void detectContacts(int start, int end, ContactBuffer buffer, NarrowphaseScratch scratch) {
+        Collisions.CollisionResult collisionResult = scratch.collisionResult;
+        FlatBodyStore s = this.store;
+        for (int p = start; p < end; p++) {
+            int i = this.pairs.getIndexA(p);
+            int j = this.pairs.getIndexB(p);
+
+            // static and sleeping bodies do not move, so pairs of them can not start touching
+            if (this.store.isResting(i) && this.store.isResting(j)) continue;
+
+            // categories, masks and groups, before any geometry is touched
+            if (!this.store.shouldCollide(i, j)) continue;
+
+            // broad phases may report pairs whose tight boxes are apart, e.g. fat tree boxes or shared hash cells
+            scratch.aabbTestCount++;
+            if (!this.bodyList.get(i).getBoundingBox().overlaps(this.bodyList.get(j).getBoundingBox())) {
+                scratch.aabbRejectCount++;
+                continue;
+            }
+
+            // circles only need the columns of the store
+            if (this.store.shapeType[i] == FlatBody.CIRCLE_SHAPE && this.store.shapeType[j] == FlatBody.CIRCLE_SHAPE) {
+                detectCircles(i, j, buffer);
+                continue;
+            }
+
+            // centers are copied into the scratch, getPosition writes one vector per body that other tasks share
+            scratch.centerA.set(s.positionX[i], s.positionY[i]);
+            scratch.centerB.set(s.positionX[j], s.positionY[j]);
+            if (getCollisionResult(this.bodyList.get(i), scratch.centerA, this.bodyList.get(j), scratch.centerB,
+                    collisionResult)) {
+                buffer.add(i, j, collisionResult.normal.getX(), collisionResult.normal.getY(), collisionResult.depth);
+            }
+        }
+    }
+
+    // same as Collisions.detectIntersectCircles, but straight from the columns of the store
+    private void detectCircles(int i, int j, ContactBuffer buffer) {
+        FlatBodyStore s = this.store;
+        float deltaX = s.positionX[j] - s.positionX[i];
+        float deltaY = s.positionY[j] - s.positionY[i];
+        float distance = (float) Math.sqrt(deltaX * deltaX + deltaY * deltaY);
+        float radii = s.radius[i] + s.radius[j];
+
+        if (distance >= radii) return;
+
+        float normalX = 0f;
+        float normalY = 0f;
+        if (distance != 0f) {
+            normalX = deltaX / distance;
+            normalY = deltaY / distance;
+        }
+        buffer.add(i, j, normalX, normalY, radii - distance);
+    }
+
+    private void detectContactsParallel() {
+        // transformed vertices and bounding boxes are cached lazily, fill the caches here so the tasks only read bodies.
+        // the static index fills the caches of static bodies when it is built
+        for (int k = 0; k < this.store.dynamicCount; k++) {
+            int i = this.store.dynamic[k];
+            this.bodyList.get(i).getBoundingBox();
+            if (this.store.shapeType[i] != FlatBody.CIRCLE_SHAPE) this.bodyList.get(i).getTransformedVertices();
+        }
+
+        int pairCount = this.pairs.size();
+        int taskCount = Math.min(this.narrowphaseTasks.length, pairCount / MIN_PAIRS_PER_NARROWPHASE_TASK);
+        int chunk = (pairCount + taskCount - 1) / taskCount;
+
+        for (int t = 0; t < taskCount; t++) {
+            NarrowphaseTask task = this.narrowphaseTasks[t];
+            task.start = Math.min(t * chunk, pairCount);
+            task.end = Math.min(task.start + chunk, pairCount);
+            task.contacts.clear();
+            task.scratch.aabbTestCount = 0;
+            task.scratch.aabbRejectCount = 0;
+            task.reinitialize();
+        }
+        this.narrowphaseJob.taskCount = taskCount;
+        this.narrowphaseJob.reinitialize();
+        this.narrowphasePool.invoke(this.narrowphaseJob);
+
+        // tasks hold consecutive ranges, appending them in task order keeps the pair order
+        for (int t = 0; t < taskCount; t++) {
+            NarrowphaseTask task = this.narrowphaseTasks[t];
+            this.contacts.addAll(task.contacts);
+            this.aabbTestCount += task.scratch.aabbTestCount;
+            this.aabbRejectCount += task.scratch.aabbRejectCount;
+        }
+    }
+
+    // tests one range of candidate pairs into its own buffer
+    @SuppressWarnings("serial")
+    private class NarrowphaseTask extends RecursiveAction {
+        private final ContactBuffer contacts = new ContactBuffer();
+        private final NarrowphaseScratch scratch = new NarrowphaseScratch();
+        private int start;
+        private int end;
+
+        @Override
+        protected void compute() {
+            detectContacts(this.start, this.end, this.contacts, this.scratch);
+        }
+    }
+
+    // state one thread of the narrow phase writes to
+    private static class NarrowphaseScratch {
+        private final Collisions.CollisionResult collisionResult = new Collisions.CollisionResult();
+        private final FlatVector centerA = new FlatVector(0f, 0f);
+        private final FlatVector centerB = new FlatVector(0f, 0f);
+        private int aabbTestCount;
+        private int aabbRejectCount;
+    }
+
+    // solves one range of islands, islands do not share moving bodies
+    @SuppressWarnings("serial")
+    private class IslandTask extends RecursiveAction {
+        private int start;
+        private int end;
+        private int velocityIterations;
+
+        @Override
+        protected void compute() {
+            solveIslands(this.start, this.end, this.velocityIterations);
+        }
+    }
+
+    // casts one range of rays of a batch
+    @SuppressWarnings("serial")
+    private class RaycastTask extends RecursiveAction {
+        private final RayQuery query = new RayQuery();
+        private RaycastBatch batch;
+        private int maskBits;
+        private int start;
+        private int end;
+
+        @Override
+        protected void compute() {
+            castRays(this.batch, this.start, this.end, this.maskBits, this.query);
+        }
+    }
+
+    // runs the first taskCount prepared tasks and waits for all of them
+    @SuppressWarnings("serial")
+    private static class ForkAllJob extends RecursiveAction {
+        private RecursiveAction[] tasks;
+        private int taskCount;
+
+        private ForkAllJob(RecursiveAction[] tasks) {
+            this.tasks = tasks;
+        }
+
+        @Override
+        protected void compute() {
+            for (int t = 1; t < this.taskCount; t++) {
+                this.tasks[t].fork();
+            }
+            this.tasks[0].invoke();
+            for (int t = this.taskCount - 1; t > 0; t--) {
+                this.tasks[t].join();
             }
         }
     }
@@ -100,7 +1506,7 @@ public class FlatWorld {
      * @param normal
      */
     public void resolveCollision(FlatBody bodyA, FlatBody bodyB, FlatVector normal) {
-        FlatVector relativeVelocity = FlatMath.subtract(bodyB.getLinearVelocity(), bodyA.getLinearVelocity());
+        FlatVector relativeVelocity = FlatMath.subtract(bodyB.getLinearVelocity(), bodyA.getLinearVelocity(), this.relativeVelocity);
 
         // if forces of two objects towards opposite direction, then don't need to calculate collision
         if (FlatMath.dot(relativeVelocity, normal) > 0f) return;
@@ -110,51 +1516,84 @@ public class FlatWorld {
         // normal dot normal is ignored because normal is already normalized and result is 1
         j /= bodyA.getInvMass() + bodyB.getInvMass();
 
-        FlatVector impulse = FlatMath.multiply(normal, j);
-        bodyA.setLinearVelocity(FlatMath.subtract(bodyA.getLinearVelocity(), FlatMath.multiply(impulse, bodyA.getInvMass())));
-        bodyB.setLinearVelocity(FlatMath.add(bodyB.getLinearVelocity(), FlatMath.multiply(impulse, bodyB.getInvMass())));
+        FlatVector impulse = FlatMath.multiply(normal, j, this.impulse);
+        FlatVector velocity = this.velocity;
+        bodyA.setLinearVelocity(velocity.set(impulse).multiply(-bodyA.getInvMass()).add(bodyA.getLinearVelocity()));
+        bodyB.setLinearVelocity(velocity.set(impulse).multiply(bodyB.getInvMass()).add(bodyB.getLinearVelocity()));
+    }
+
+    // same as resolveCollision above, on the columns of the store
+    private void resolveCollision(int i, int j, float normalX, float normalY) {
+        FlatBodyStore s = this.store;
+        float relativeVelocityX = s.linearVelocityX[j] - s.linearVelocityX[i];
+        float relativeVelocityY = s.linearVelocityY[j] - s.linearVelocityY[i];
+        float velocityAlongNormal = relativeVelocityX * normalX + relativeVelocityY * normalY;
+
+        if (velocityAlongNormal > 0f) return;
+
+        float e = Math.min(s.restitution[i], s.restitution[j]);
+        float impulse = -(1f + e) * velocityAlongNormal;
+        impulse /= s.invMass[i] + s.invMass[j];
+
+        float impulseX = normalX * impulse;
+        float impulseY = normalY * impulse;
+        // static bodies are shared between islands, they must not be written even with a zero impulse
+        if (s.invMass[i] != 0f) {
+            s.linearVelocityX[i] -= impulseX * s.invMass[i];
+            s.linearVelocityY[i] -= impulseY * s.invMass[i];
+        }
+        if (s.invMass[j] != 0f) {
+            s.linearVelocityX[j] += impulseX * s.invMass[j];
+            s.linearVelocityY[j] += impulseY * s.invMass[j];
+        }
     }
 
 
-    private Collisions.CollisionResult getCollisionResult(FlatBody bodyA, FlatBody bodyB) {
-        Collisions.CollisionResult collisionResult;
+    // writes the manifold of two bodies at the given centers into result, returns whether they intersect
+    private boolean getCollisionResult(FlatBody bodyA, FlatVector centerA, FlatBody bodyB, FlatVector centerB,
+                                       Collisions.CollisionResult result) {
+        boolean isIntersect;
         if (bodyA.getShapeType() == bodyB.getShapeType()) {
             if (FlatBody.BOX_SHAPE == bodyA.getShapeType()) {
-                collisionResult = doPolygonsCollide(bodyA, bodyB);
+                isIntersect = doPolygonsCollide(bodyA, centerA, bodyB, centerB, result);
             } else {
-                collisionResult = doCirclesCollide(bodyA, bodyB);
+                isIntersect = doCirclesCollide(bodyA, centerA, bodyB, centerB, result);
             }
         } else {
             if (FlatBody.BOX_SHAPE == bodyA.getShapeType()) {
-                collisionResult = doCirclePolygonCollide(bodyB, bodyA);
+                isIntersect = doCirclePolygonCollide(bodyB, centerB, bodyA, centerA, result);
 
                 // make sure normal is pointing from the first to the second
-                if (collisionResult.isIntersect) {
-                    collisionResult.normal = FlatMath.negative(collisionResult.normal);
+                if (isIntersect) {
+                    result.normal.negative();
                 }
             } else {
-                collisionResult = doCirclePolygonCollide(bodyA, bodyB);
+                isIntersect = doCirclePolygonCollide(bodyA, centerA, bodyB, centerB, result);
             }
         }
-        return collisionResult;
+        return isIntersect;
     }
 
 
-    private Collisions.CollisionResult doCirclePolygonCollide(FlatBody circle, FlatBody polygon) {
-        return Collisions.detectIntersectCirclePolygon(circle.getPosition(), circle.getRadius(),
-                polygon.getPosition(), polygon.getTransformedVertices());
+    private boolean doCirclePolygonCollide(FlatBody circle, FlatVector circleCenter, FlatBody polygon,
+                                           FlatVector polygonCenter, Collisions.CollisionResult result) {
+        return Collisions.detectIntersectCirclePolygon(circleCenter, circle.getRadius(),
+                polygonCenter, polygon.getTransformedVertices(), polygon.getTransformedNormals(), result);
     }
 
-    private Collisions.CollisionResult doCirclesCollide(FlatBody bodyA, FlatBody bodyB) {
+    private boolean doCirclesCollide(FlatBody bodyA, FlatVector centerA, FlatBody bodyB, FlatVector centerB,
+                                     Collisions.CollisionResult result) {
         return Collisions.detectIntersectCircles(
-                bodyA.getPosition(), bodyA.getRadius(),
-                bodyB.getPosition(), bodyB.getRadius());
+                centerA, bodyA.getRadius(),
+                centerB, bodyB.getRadius(), result);
     }
 
-    private Collisions.CollisionResult doPolygonsCollide(FlatBody bodyA, FlatBody bodyB) {
+    private boolean doPolygonsCollide(FlatBody bodyA, FlatVector centerA, FlatBody bodyB, FlatVector centerB,
+                                      Collisions.CollisionResult result) {
         FlatVector[] verticesA = bodyA.getTransformedVertices();
         FlatVector[] verticesB = bodyB.getTransformedVertices();
-        return Collisions.detectIntersectPolygons(bodyA.getPosition(), verticesA, bodyB.getPosition(), verticesB);
+        return Collisions.detectIntersectPolygons(centerA, verticesA, bodyA.getTransformedNormals(),
+                centerB, verticesB, bodyB.getTransformedNormals(), result);
     }
 
 }
@@ -0,0 +1,119 @@
+package com.mygdx.game;
+
+import java.util.Arrays;
+
+/**
+ * growable list of body index pairs
+ * <p>
+ * every pair is packed into one long, the smaller index goes into the high 32 bits,
+ * so sorting the keys gives the same order as the i < j double loop
+ */
+public class PairBuffer {
+
+    private long[] pairs;
+    private int size;
+
+    public PairBuffer() {
+        this(64);
+    }
+
+    public PairBuffer(int capacity) {
+        this.pairs = new long[Math.max(capacity, 1)];
+        this.size = 0;
+    }
+
+    public void add(int indexA, int indexB) {
+        if (this.size == this.pairs.length) {
+            this.pairs = Arrays.copyOf(this.pairs, this.pairs.length << 1);
+        }
+
+        if (indexA > indexB) {
+            int t = indexA;
+            indexA = indexB;
+            indexB = t;
+        }
+        this.pairs[this.size++] = ((long) indexA << 32) | (indexB & 0xFFFFFFFFL);
+    }
+
+    public int getIndexA(int i) {
+        return (int) (this.pairs[i] >>> 32);
+    }
+
+    public int getIndexB(int i) {
+        return (int) this.pairs[i];
+    }
+
+    public int size() {
+        return this.size;
+    }
+
+    // copy pair from over pair to, for compacting the buffer in place
+    public void move(int from, int to) {
+        this.pairs[to] = this.pairs[from];
+    }
+
+    // drop every pair from size on
+    public void truncate(int size) {
+        if (size < 0 || size > this.size) {
+            throw new IllegalArgumentException("size must be between 0 and " + this.size);
+        }
+        this.size = size;
+    }
+
+    /**
+     * sort pairs by smaller index, then by larger index
+     * <p>
+     * Arrays.sort may allocate a work array on partly sorted input, this one sorts in place
+     */
+    public void sort() {
+        sort(this.pairs, 0, this.size - 1);
+    }
+
+    // quicksort with median of three, recursing into the smaller side keeps the stack depth at log n
+    private static void sort(long[] a, int low, int high) {
+        while (high - low > 16) {
+            int middle = (low + high) >>> 1;
+            if (a[middle] < a[low]) swap(a, middle, low);
+            if (a[high] < a[low]) swap(a, high, low);
+            if (a[high] < a[middle]) swap(a, high, middle);
+            long pivot = a[middle];
+
+            int i = low;
+            int j = high;
+            while (i <= j) {
+                while (a[i] < pivot) i++;
+                while (a[j] > pivot) j--;
+                if (i <= j) swap(a, i++, j--);
+            }
+
+            if (j - low < high - i) {
+                sort(a, low, j);
+                low = i;
+            } else {
+                sort(a, i, high);
+                high = j;
+            }
+        }
+
+        // insertion sort for short ranges
+        for (int i = low + 1; i <= high; i++) {
+            long key = a[i];
+            int j = i - 1;
+            while (j >= low && a[j] > key) {
+                a[j + 1] = a[j];
+                j--;
+            }
+            a[j + 1] = key;
+        }
+    }
+
+    private static void swap(long[] a, int i, int j) {
+        long t = a[i];
+        a[i] = a[j];
+        a[j] = t;
+    }
+
+    public void clear() {
+        this.size = 0;
+    }
+}
@@ -0,0 +1,80 @@
+package com.mygdx.game;
+
+import com.mygdx.game.callback.RaycastCallback;
+
+import java.util.List;
+
+/**
+ * tests the shapes of the candidates of one ray at a time, every thread casting rays owns one
+ * <p>
+ * without a callback it keeps the closest hit itself
+ */
+class RayQuery implements Broadphase.RayVisitor {
+
+    private FlatBodyStore store;
+    private List<FlatBody> bodies;
+    // candidates come by row from the static index and by dynamic position from the broadphase
+    boolean isStaticPass;
+
+    private float originX;
+    private float originY;
+    private float directionX;
+    private float directionY;
+    private float maxDistance;
+    private int maskBits;
+    private RaycastCallback callback;
+
+    // closest hit when there is no callback, the end of the ray and no normal while it hit nothing
+    int hitHandle;
+    float hitDistance;
+    float hitNormalX;
+    float hitNormalY;
+
+    private final Collisions.RaycastResult result = new Collisions.RaycastResult();
+
+    void begin(FlatBodyStore store, List<FlatBody> bodies, float originX, float originY,
+               float directionX, float directionY, float maxDistance, int maskBits, RaycastCallback callback) {
+        this.store = store;
+        this.bodies = bodies;
+        this.originX = originX;
+        this.originY = originY;
+        this.directionX = directionX;
+        this.directionY = directionY;
+        this.maxDistance = maxDistance;
+        this.maskBits = maskBits;
+        this.callback = callback;
+        this.hitHandle = FlatWorld.NULL_HANDLE;
+        this.hitDistance = maxDistance;
+        this.hitNormalX = 0f;
+        this.hitNormalY = 0f;
+    }
+
+    @Override
+    public float visit(int index) {
+        FlatBodyStore s = this.store;
+        int i = this.isStaticPass ? index : s.dynamic[index];
+        if ((s.categoryBits[i] & this.maskBits) == 0) return this.maxDistance;
+
+        Collisions.RaycastResult result = this.result;
+        boolean isHit = s.shapeType[i] == FlatBody.CIRCLE_SHAPE
+                ? Collisions.raycastCircle(this.originX, this.originY, this.directionX, this.directionY,
+                this.maxDistance, s.positionX[i], s.positionY[i], s.radius[i], result)
+                : Collisions.raycastPolygon(this.originX, this.originY, this.directionX, this.directionY,
+                this.maxDistance, this.bodies.get(i).getTransformedVertices(), result);
+        if (!isHit) return this.maxDistance;
+
+        float distance = result.distance;
+        if (this.callback == null) {
+            this.hitHandle = s.handle[i];
+            this.hitDistance = distance;
+            this.hitNormalX = result.normal.getX();
+            this.hitNormalY = result.normal.getY();
+            this.maxDistance = distance;
+        } else {
+            float next = this.callback.hit(s.handle[i], this.originX + this.directionX * distance,
+                    this.originY + this.directionY * distance, result.normal.getX(), result.normal.getY(), distance);
+            this.maxDistance = Math.min(this.maxDistance, next);
+        }
+        return this.maxDistance;
+    }
+}
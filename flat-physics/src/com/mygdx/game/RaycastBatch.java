@@ -0,0 +1,142 @@
+package com.mygdx.game;
+
+import java.util.Arrays;
+
+/**
+ * rays cast together with FlatWorld.raycast, kept in primitive arrays
+ * <p>
+ * every ray keeps its closest hit, results are overwritten by the next cast
+ */
+public class RaycastBatch {
+
+    private float[] originX;
+    private float[] originY;
+    // unit directions
+    private float[] directionX;
+    private float[] directionY;
+    private float[] maxDistance;
+    private int size;
+
+    // closest hit of every ray, NULL_HANDLE when it hit nothing
+    private int[] hitHandle;
+    private float[] hitDistance;
+    private float[] hitNormalX;
+    private float[] hitNormalY;
+
+    public RaycastBatch() {
+        this(16);
+    }
+
+    public RaycastBatch(int capacity) {
+        capacity = Math.max(capacity, 1);
+        this.originX = new float[capacity];
+        this.originY = new float[capacity];
+        this.directionX = new float[capacity];
+        this.directionY = new float[capacity];
+        this.maxDistance = new float[capacity];
+        this.hitHandle = new int[capacity];
+        this.hitDistance = new float[capacity];
+        this.hitNormalX = new float[capacity];
+        this.hitNormalY = new float[capacity];
+    }
+
+    /**
+     * @param directionX direction of the ray, does not need to be of unit length
+     * @return index of the ray
+     */
+    public int add(float originX, float originY, float directionX, float directionY, float maxDistance) {
+        float length = (float) Math.sqrt(directionX * directionX + directionY * directionY);
+        if (length == 0f) {
+            throw new IllegalArgumentException("direction can not be zero");
+        }
+        if (maxDistance < 0f) {
+            throw new IllegalArgumentException("max distance can not be negative");
+        }
+        ensureCapacity(this.size + 1);
+
+        int r = this.size++;
+        this.originX[r] = originX;
+        this.originY[r] = originY;
+        this.directionX[r] = directionX / length;
+        this.directionY[r] = directionY / length;
+        this.maxDistance[r] = maxDistance;
+        this.hitHandle[r] = FlatWorld.NULL_HANDLE;
+        return r;
+    }
+
+    public int size() {
+        return this.size;
+    }
+
+    public void clear() {
+        this.size = 0;
+    }
+
+    // handle of the closest body the ray hit, NULL_HANDLE for none
+    public int getHandle(int r) {
+        return this.hitHandle[r];
+    }
+
+    // distance to the closest hit, the max distance of the ray when it hit nothing
+    public float getDistance(int r) {
+        return this.hitDistance[r];
+    }
+
+    public float getPointX(int r) {
+        return this.originX[r] + this.directionX[r] * this.hitDistance[r];
+    }
+
+    public float getPointY(int r) {
+        return this.originY[r] + this.directionY[r] * this.hitDistance[r];
+    }
+
+    public float getNormalX(int r) {
+        return this.hitNormalX[r];
+    }
+
+    public float getNormalY(int r) {
+        return this.hitNormalY[r];
+    }
+
+    float getOriginX(int r) {
+        return this.originX[r];
+    }
+
+    float getOriginY(int r) {
+        return this.originY[r];
+    }
+
+    float getDirectionX(int r) {
+        return this.directionX[r];
+    }
+
+    float getDirectionY(int r) {
+        return this.directionY[r];
+    }
+
+    float getMaxDistance(int r) {
+        return this.maxDistance[r];
+    }
+
+    void setHit(int r, int handle, float distance, float normalX, float normalY) {
+        this.hitHandle[r] = handle;
+        this.hitDistance[r] = distance;
+        this.hitNormalX[r] = normalX;
+        this.hitNormalY[r] = normalY;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= this.originX.length) return;
+
+        int length = Math.max(capacity, this.originX.length << 1);
+        this.originX = Arrays.copyOf(this.originX, length);
+        this.originY = Arrays.copyOf(this.originY, length);
+        this.directionX = Arrays.copyOf(this.directionX, length);
+        this.directionY = Arrays.copyOf(this.directionY, length);
+        this.maxDistance = Arrays.copyOf(this.maxDistance, length);
+        this.hitHandle = Arrays.copyOf(this.hitHandle, length);
+        this.hitDistance = Arrays.copyOf(this.hitDistance, length);
+        this.hitNormalX = Arrays.copyOf(this.hitNormalX, length);
+        this.hitNormalY = Arrays.copyOf(this.hitNormalY, length);
+    }
+}
@@ -0,0 +1,124 @@
+package com.mygdx.game;
+
+import java.util.Arrays;
+
+/**
+ * solves the contacts of one step with sequential impulses
+ * <p>
+ * every contact keeps the normal impulse accumulated over all iterations,
+ * the accumulated impulse is clamped to stay pushing, never pulling, instead of clamping each single impulse.
+ * the impulse of the last step is applied first (warm starting), so a resting stack starts close to its solution
+ * and a few iterations are enough
+ */
+class SequentialImpulseSolver {
+
+    // fraction of the penetration removed per step by the bias velocity
+    static final float BAUMGARTE = 0.2f;
+    // penetration allowed without correction, keeps resting contacts touching so they stay in the cache
+    static final float PENETRATION_SLOP = 0.05f;
+    // contacts approaching slower than this do not bounce, so resting bodies do not jitter
+    static final float RESTITUTION_THRESHOLD = 1f;
+
+    // per contact, in the same order as the contact buffer
+    private float[] massNormal;
+    private float[] bias;
+    private float[] accumulatedImpulse;
+
+    SequentialImpulseSolver() {
+        this.massNormal = new float[16];
+        this.bias = new float[16];
+        this.accumulatedImpulse = new float[16];
+    }
+
+    /**
+     * compute the mass and target velocity of every contact and load the impulses of the last step
+     *
+     * @param time time of the step
+     */
+    void prepare(FlatBodyStore store, ContactBuffer contacts, ContactCache cache, float time) {
+        int count = contacts.size();
+        if (count > this.massNormal.length) {
+            int length = Math.max(count, this.massNormal.length << 1);
+            this.massNormal = Arrays.copyOf(this.massNormal, length);
+            this.bias = Arrays.copyOf(this.bias, length);
+            this.accumulatedImpulse = Arrays.copyOf(this.accumulatedImpulse, length);
+        }
+
+        cache.load(contacts, this.accumulatedImpulse);
+
+        for (int c = 0; c < count; c++) {
+            int i = contacts.getIndexA(c);
+            int j = contacts.getIndexB(c);
+            float normalX = contacts.getNormalX(c);
+            float normalY = contacts.getNormalY(c);
+
+            this.massNormal[c] = 1f / (store.invMass[i] + store.invMass[j]);
+
+            // push overlapping bodies apart over a few steps
+            float bias = BAUMGARTE / time * Math.max(0f, contacts.getDepth(c) - PENETRATION_SLOP);
+
+            // bounce off with the velocity the bodies hit each other with
+            float velocityAlongNormal = (store.linearVelocityX[j] - store.linearVelocityX[i]) * normalX
+                    + (store.linearVelocityY[j] - store.linearVelocityY[i]) * normalY;
+            if (velocityAlongNormal < -RESTITUTION_THRESHOLD) {
+                float e = Math.min(store.restitution[i], store.restitution[j]);
+                bias = Math.max(bias, -e * velocityAlongNormal);
+            }
+            this.bias[c] = bias;
+        }
+    }
+
+    /**
+     * warm start and iterate the contacts of islands in [start, end)
+     * <p>
+     * islands share no moving body, so ranges of islands can be solved on several threads at once
+     */
+    void solve(FlatBodyStore store, ContactBuffer contacts, ContactIslands islands, int start, int end, int iterations) {
+        int first = islands.contactStart[start];
+        int last = islands.contactStart[end];
+        int[] order = islands.contactOrder;
+
+        for (int k = first; k < last; k++) {
+            int c = order[k];
+            applyImpulse(store, contacts, c, this.accumulatedImpulse[c]);
+        }
+
+        for (int n = 0; n < iterations; n++) {
+            for (int k = first; k < last; k++) {
+                int c = order[k];
+                int i = contacts.getIndexA(c);
+                int j = contacts.getIndexB(c);
+                float velocityAlongNormal = (store.linearVelocityX[j] - store.linearVelocityX[i]) * contacts.getNormalX(c)
+                        + (store.linearVelocityY[j] - store.linearVelocityY[i]) * contacts.getNormalY(c);
+
+                float impulse = this.massNormal[c] * (this.bias[c] - velocityAlongNormal);
+
+                // clamp the accumulated impulse, a single impulse may pull back what earlier iterations pushed too far
+                float accumulated = this.accumulatedImpulse[c];
+                this.accumulatedImpulse[c] = Math.max(accumulated + impulse, 0f);
+                applyImpulse(store, contacts, c, this.accumulatedImpulse[c] - accumulated);
+            }
+        }
+    }
+
+    float[] getAccumulatedImpulses() {
+        return this.accumulatedImpulse;
+    }
+
+    private static void applyImpulse(FlatBodyStore store, ContactBuffer contacts, int c, float impulse) {
+        int i = contacts.getIndexA(c);
+        int j = contacts.getIndexB(c);
+        float impulseX = contacts.getNormalX(c) * impulse;
+        float impulseY = contacts.getNormalY(c) * impulse;
+
+        // static bodies are shared between islands, they must not be written even with a zero impulse
+        if (store.invMass[i] != 0f) {
+            store.linearVelocityX[i] -= impulseX * store.invMass[i];
+            store.linearVelocityY[i] -= impulseY * store.invMass[i];
+        }
+        if (store.invMass[j] != 0f) {
+            store.linearVelocityX[j] += impulseX * store.invMass[j];
+            store.linearVelocityY[j] += impulseY * store.invMass[j];
+        }
+    }
+}
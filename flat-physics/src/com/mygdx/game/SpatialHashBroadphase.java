@@ -0,0 +1,302 @@
+package com.mygdx.game;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.IntConsumer;
+
+/**
+ * uniform grid broadphase, cells are stored in a hash table so the world has no bounds
+ * <p>
+ * every body is put into each cell its bounding box touches, then bodies sharing a cell are paired up.
+ * the grid is rebuilt on every call, everything is kept in int arrays that are reused between calls.
+ * works best when bodies are about the size of a cell
+ * <p>
+ * a pair sharing several cells is only reported from the cell holding the min corner of the overlap,
+ * so no set is needed to remove duplicated pairs.
+ * a raycast steps through the cells along the ray, a body is reported from the first of its cells the ray enters.
+ * a box query looks at the cells under the box and reports a body from the min corner of the overlap like a pair
+ */
+public class SpatialHashBroadphase implements Broadphase {
+
+    private final float cellSize;
+    private final float invCellSize;
+
+    // bounding box and covered cells indexed by body index
+    private float[] minX;
+    private float[] minY;
+    private float[] maxX;
+    private float[] maxY;
+    private int[] minCellX;
+    private int[] minCellY;
+
+    // one entry per body per covered cell, entries of the same bucket are linked by entryNext
+    private int[] entryBody;
+    private int[] entryCellX;
+    private int[] entryCellY;
+    private int[] entryNext;
+    private int entryCount;
+
+    // first entry of each bucket, -1 if empty, length is a power of two
+    private int[] buckets;
+
+    // box around every body, a ray is clipped to it so it does not step through empty cells forever
+    private float boundsMinX;
+    private float boundsMinY;
+    private float boundsMaxX;
+    private float boundsMaxY;
+
+    public SpatialHashBroadphase(float cellSize) {
+        if (cellSize <= 0f) {
+            throw new IllegalArgumentException("cell size must be positive");
+        }
+        this.cellSize = cellSize;
+        this.invCellSize = 1f / cellSize;
+
+        this.minX = new float[16];
+        this.minY = new float[16];
+        this.maxX = new float[16];
+        this.maxY = new float[16];
+        this.minCellX = new int[16];
+        this.minCellY = new int[16];
+
+        this.entryBody = new int[64];
+        this.entryCellX = new int[64];
+        this.entryCellY = new int[64];
+        this.entryNext = new int[64];
+        this.buckets = new int[128];
+    }
+
+    public float getCellSize() {
+        return cellSize;
+    }
+
+    @Override
+    public void add(int index) {
+    }
+
+    @Override
+    public void remove(int index) {
+    }
+
+    @Override
+    public void findPairs(List<FlatBody> bodies, PairBuffer pairs) {
+        pairs.clear();
+        update(bodies);
+
+        // every entry only looks at entries inserted before it in the same bucket
+        for (int e = 0; e < this.entryCount; e++) {
+            int a = this.entryBody[e];
+            int cx = this.entryCellX[e];
+            int cy = this.entryCellY[e];
+
+            for (int o = this.entryNext[e]; o != -1; o = this.entryNext[o]) {
+                int b = this.entryBody[o];
+
+                if (b == a || this.entryCellX[o] != cx || this.entryCellY[o] != cy) continue;
+                if (this.minX[a] > this.maxX[b] || this.minX[b] > this.maxX[a]) continue;
+                if (this.minY[a] > this.maxY[b] || this.minY[b] > this.maxY[a]) continue;
+
+                // only report the pair from the cell holding the min corner of the overlap
+                if (cx != Math.max(this.minCellX[a], this.minCellX[b])) continue;
+                if (cy != Math.max(this.minCellY[a], this.minCellY[b])) continue;
+
+                pairs.add(a, b);
+            }
+        }
+    }
+
+    @Override
+    public void update(List<FlatBody> bodies) {
+        int count = bodies.size();
+        ensureBodyCapacity(count);
+
+        // count entries first so the table only needs to be sized once
+        int entries = 0;
+        float boundsMinX = Float.MAX_VALUE;
+        float boundsMinY = Float.MAX_VALUE;
+        float boundsMaxX = -Float.MAX_VALUE;
+        float boundsMaxY = -Float.MAX_VALUE;
+        for (int i = 0; i < count; i++) {
+            FlatAABB aabb = bodies.get(i).getBoundingBox();
+            this.minX[i] = aabb.getMin().getX();
+            this.minY[i] = aabb.getMin().getY();
+            this.maxX[i] = aabb.getMax().getX();
+            this.maxY[i] = aabb.getMax().getY();
+            this.minCellX[i] = toCell(this.minX[i]);
+            this.minCellY[i] = toCell(this.minY[i]);
+
+            entries += (toCell(this.maxX[i]) - this.minCellX[i] + 1) * (toCell(this.maxY[i]) - this.minCellY[i] + 1);
+            boundsMinX = Math.min(boundsMinX, this.minX[i]);
+            boundsMinY = Math.min(boundsMinY, this.minY[i]);
+            boundsMaxX = Math.max(boundsMaxX, this.maxX[i]);
+            boundsMaxY = Math.max(boundsMaxY, this.maxY[i]);
+        }
+        this.boundsMinX = boundsMinX;
+        this.boundsMinY = boundsMinY;
+        this.boundsMaxX = boundsMaxX;
+        this.boundsMaxY = boundsMaxY;
+
+        ensureEntryCapacity(entries);
+        // keep the table at least twice as large as the entries
+        int bucketCount = Integer.highestOneBit(Math.max(entries, 1)) << 2;
+        if (this.buckets.length < bucketCount) {
+            this.buckets = new int[bucketCount];
+        }
+        Arrays.fill(this.buckets, -1);
+        int mask = this.buckets.length - 1;
+
+        // insert every body into its cells
+        this.entryCount = 0;
+        for (int i = 0; i < count; i++) {
+            int maxCellX = toCell(this.maxX[i]);
+            int maxCellY = toCell(this.maxY[i]);
+
+            for (int cx = this.minCellX[i]; cx <= maxCellX; cx++) {
+                for (int cy = this.minCellY[i]; cy <= maxCellY; cy++) {
+                    int bucket = hash(cx, cy) & mask;
+                    int e = this.entryCount++;
+                    this.entryBody[e] = i;
+                    this.entryCellX[e] = cx;
+                    this.entryCellY[e] = cy;
+                    this.entryNext[e] = this.buckets[bucket];
+                    this.buckets[bucket] = e;
+                }
+            }
+        }
+    }
+
+    @Override
+    public void raycast(List<FlatBody> bodies, float originX, float originY, float directionX, float directionY,
+                        float maxDistance, RayVisitor visitor) {
+        if (this.entryCount == 0) return;
+
+        // start where the ray enters the box around every body
+        float start = Collisions.raycastBox(originX, originY, directionX, directionY, maxDistance,
+                this.boundsMinX, this.boundsMinY, this.boundsMaxX, this.boundsMaxY);
+        if (start < 0f) return;
+
+        float x = originX + directionX * start;
+        float y = originY + directionY * start;
+        int cx = toCell(Math.min(Math.max(x, this.boundsMinX), this.boundsMaxX));
+        int cy = toCell(Math.min(Math.max(y, this.boundsMinY), this.boundsMaxY));
+        int lastCellX = toCell(this.boundsMaxX);
+        int lastCellY = toCell(this.boundsMaxY);
+        int firstCellX = toCell(this.boundsMinX);
+        int firstCellY = toCell(this.boundsMinY);
+
+        // distance along the ray to the next cell border on each axis, and between two borders
+        int stepX = directionX > 0f ? 1 : -1;
+        int stepY = directionY > 0f ? 1 : -1;
+        float nextX = directionX == 0f ? Float.MAX_VALUE
+                : ((cx + (stepX > 0 ? 1 : 0)) * this.cellSize - originX) / directionX;
+        float nextY = directionY == 0f ? Float.MAX_VALUE
+                : ((cy + (stepY > 0 ? 1 : 0)) * this.cellSize - originY) / directionY;
+        float deltaX = directionX == 0f ? Float.MAX_VALUE : this.cellSize / Math.abs(directionX);
+        float deltaY = directionY == 0f ? Float.MAX_VALUE : this.cellSize / Math.abs(directionY);
+
+        int mask = this.buckets.length - 1;
+        int previousX = Integer.MIN_VALUE;
+        int previousY = Integer.MIN_VALUE;
+        float cellStart = start;
+        while (cellStart <= maxDistance && cx >= firstCellX && cx <= lastCellX && cy >= firstCellY && cy <= lastCellY) {
+            for (int e = this.buckets[hash(cx, cy) & mask]; e != -1; e = this.entryNext[e]) {
+                if (this.entryCellX[e] != cx || this.entryCellY[e] != cy) continue;
+
+                // the ray moves from cell to neighbour cell, it enters the cells of a body once,
+                // so the body was seen already if the last cell was one of them
+                int body = this.entryBody[e];
+                if (previousX >= this.minCellX[body] && previousX <= toCell(this.maxX[body])
+                        && previousY >= this.minCellY[body] && previousY <= toCell(this.maxY[body])) continue;
+                if (Collisions.raycastBox(originX, originY, directionX, directionY, maxDistance,
+                        this.minX[body], this.minY[body], this.maxX[body], this.maxY[body]) < 0f) continue;
+
+                maxDistance = Math.min(maxDistance, visitor.visit(body));
+                if (maxDistance <= 0f) return;
+            }
+
+            previousX = cx;
+            previousY = cy;
+            if (nextX < nextY) {
+                cellStart = nextX;
+                nextX += deltaX;
+                cx += stepX;
+            } else {
+                cellStart = nextY;
+                nextY += deltaY;
+                cy += stepY;
+            }
+        }
+    }
+
+    @Override
+    public void query(List<FlatBody> bodies, float minX, float minY, float maxX, float maxY, IntConsumer visitor) {
+        if (this.entryCount == 0) return;
+        if (minX > this.boundsMaxX || this.boundsMinX > maxX || minY > this.boundsMaxY || this.boundsMinY > maxY) return;
+
+        // only the cells inside the box around every body can hold any
+        int firstCellX = toCell(Math.max(minX, this.boundsMinX));
+        int firstCellY = toCell(Math.max(minY, this.boundsMinY));
+        int lastCellX = toCell(Math.min(maxX, this.boundsMaxX));
+        int lastCellY = toCell(Math.min(maxY, this.boundsMaxY));
+
+        int count = bodies.size();
+        if ((long) (lastCellX - firstCellX + 1) * (lastCellY - firstCellY + 1) > count) {
+            // more cells than bodies, testing every box is cheaper
+            for (int i = 0; i < count; i++) {
+                if (this.minX[i] > maxX || minX > this.maxX[i] || this.minY[i] > maxY || minY > this.maxY[i]) continue;
+                visitor.accept(i);
+            }
+            return;
+        }
+
+        int mask = this.buckets.length - 1;
+        for (int cx = firstCellX; cx <= lastCellX; cx++) {
+            for (int cy = firstCellY; cy <= lastCellY; cy++) {
+                for (int e = this.buckets[hash(cx, cy) & mask]; e != -1; e = this.entryNext[e]) {
+                    if (this.entryCellX[e] != cx || this.entryCellY[e] != cy) continue;
+
+                    int body = this.entryBody[e];
+                    if (this.minX[body] > maxX || minX > this.maxX[body]) continue;
+                    if (this.minY[body] > maxY || minY > this.maxY[body]) continue;
+
+                    // only report the body from the cell holding the min corner of the overlap
+                    if (cx != Math.max(this.minCellX[body], firstCellX)) continue;
+                    if (cy != Math.max(this.minCellY[body], firstCellY)) continue;
+
+                    visitor.accept(body);
+                }
+            }
+        }
+    }
+
+    private int toCell(float value) {
+        return (int) Math.floor(value * this.invCellSize);
+    }
+
+    private static int hash(int cx, int cy) {
+        int h = cx * 73856093 ^ cy * 19349663;
+        return h ^ (h >>> 16);
+    }
+
+    private void ensureBodyCapacity(int capacity) {
+        if (capacity <= this.minX.length) return;
+
+        int length = Math.max(capacity, this.minX.length << 1);
+        this.minX = Arrays.copyOf(this.minX, length);
+        this.minY = Arrays.copyOf(this.minY, length);
+        this.maxX = Arrays.copyOf(this.maxX, length);
+        this.maxY = Arrays.copyOf(this.maxY, length);
+        this.minCellX = Arrays.copyOf(this.minCellX, length);
+        this.minCellY = Arrays.copyOf(this.minCellY, length);
+    }
+
+    private void ensureEntryCapacity(int capacity) {
+        if (capacity <= this.entryBody.length) return;
+
+        int length = Math.max(capacity, this.entryBody.length << 1);
+        this.entryBody = new int[length];
+        this.entryCellX = new int[length];
+        this.entryCellY = new int[length];
+        this.entryNext = new int[length];
+    }
+}
@@ -0,0 +1,347 @@
+package com.mygdx.game;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.IntConsumer;
+
+/**
+ * bounding volume hierarchy over the static bodies of a world, built in one go and never changed afterwards
+ * <p>
+ * static bodies do not move on their own, so the tree is only built again when a static body is added, removed or
+ * moved by hand. it is built top down, every node splits its bodies at the median of its longer axis,
+ * so the tree stays balanced without any rotations.
+ * a leaf holds a range of up to LEAF_SIZE bodies, the boxes of the bodies are kept in tree order.
+ * bodies are kept by handle, so rows moving around when other bodies are removed do not touch the tree
+ */
+class StaticBodyIndex {
+
+    private static final int LEAF_SIZE = 4;
+
+    // handle and tight bounding box of every static body, in tree order
+    private int[] handle;
+    private float[] minX;
+    private float[] minY;
+    private float[] maxX;
+    private float[] maxY;
+    // center along the split axis, only used while building
+    private float[] center;
+    private int count;
+
+    // nodes in depth first order, the first child of a node follows it, the second one is at child2.
+    // a leaf covers bodies [start, end)
+    private float[] nodeMinX;
+    private float[] nodeMinY;
+    private float[] nodeMaxX;
+    private float[] nodeMaxY;
+    private int[] child2;
+    private int[] start;
+    private int[] end;
+    private int nodeCount;
+
+    // traversal stack reused by queries
+    private int[] stack;
+
+    // the tree no longer matches the static bodies
+    private boolean isDirty;
+
+    StaticBodyIndex() {
+        this.handle = new int[16];
+        this.minX = new float[16];
+        this.minY = new float[16];
+        this.maxX = new float[16];
+        this.maxY = new float[16];
+        this.center = new float[16];
+        this.nodeMinX = new float[16];
+        this.nodeMinY = new float[16];
+        this.nodeMaxX = new float[16];
+        this.nodeMaxY = new float[16];
+        this.child2 = new int[16];
+        this.start = new int[16];
+        this.end = new int[16];
+        this.stack = new int[64];
+        this.isDirty = true;
+    }
+
+    int size() {
+        return this.count;
+    }
+
+    // handle and bounding box of the k-th static body when the tree was built, in tree order
+    int getHandle(int k) {
+        return this.handle[k];
+    }
+
+    float getMinX(int k) {
+        return this.minX[k];
+    }
+
+    float getMinY(int k) {
+        return this.minY[k];
+    }
+
+    float getMaxX(int k) {
+        return this.maxX[k];
+    }
+
+    float getMaxY(int k) {
+        return this.maxY[k];
+    }
+
+    boolean isDirty() {
+        return this.isDirty;
+    }
+
+    // build the tree again before the next query
+    void markDirty() {
+        this.isDirty = true;
+    }
+
+    /**
+     * collect the static bodies of a world and build the tree over their bounding boxes
+     */
+    void build(FlatBodyStore store, List<FlatBody> bodies) {
+        int count = 0;
+        for (int i = 0; i < store.size; i++) {
+            if (store.invMass[i] == 0f) count++;
+        }
+        this.ensureCapacity(count);
+
+        this.count = 0;
+        for (int i = 0; i < store.size; i++) {
+            if (store.invMass[i] != 0f) continue;
+
+            FlatBody body = bodies.get(i);
+            FlatAABB aabb = body.getBoundingBox();
+            // the narrow phase may run on several threads, it only reads cached vertices
+            if (store.shapeType[i] != FlatBody.CIRCLE_SHAPE) body.getTransformedVertices();
+
+            int k = this.count++;
+            this.handle[k] = store.handle[i];
+            this.minX[k] = aabb.getMin().getX();
+            this.minY[k] = aabb.getMin().getY();
+            this.maxX[k] = aabb.getMax().getX();
+            this.maxY[k] = aabb.getMax().getY();
+        }
+
+        // a tree of n leaves has 2n - 1 nodes and there are at most n leaves,
+        // so the nodes never grow while they are built
+        this.ensureNodeCapacity(2 * count);
+        this.nodeCount = 0;
+        if (this.count > 0) this.buildNode(0, this.count);
+        this.isDirty = false;
+    }
+
+    /**
+     * add a pair for every static body whose bounding box overlaps the given one
+     *
+     * @param other   row of the non static body the box belongs to
+     * @param handles the handles of the world, pairs are added by row
+     */
+    void query(float qMinX, float qMinY, float qMaxX, float qMaxY, int other, BodyHandles handles, PairBuffer pairs) {
+        if (this.count == 0) return;
+
+        int top = 0;
+        this.stack[top++] = 0;
+
+        while (top > 0) {
+            int node = this.stack[--top];
+
+            if (this.nodeMinX[node] > qMaxX || qMinX > this.nodeMaxX[node]) continue;
+            if (this.nodeMinY[node] > qMaxY || qMinY > this.nodeMaxY[node]) continue;
+
+            if (this.child2[node] == -1) {
+                for (int k = this.start[node]; k < this.end[node]; k++) {
+                    if (this.minX[k] > qMaxX || qMinX > this.maxX[k]) continue;
+                    if (this.minY[k] > qMaxY || qMinY > this.maxY[k]) continue;
+                    pairs.add(handles.rowOf(this.handle[k]), other);
+                }
+            } else {
+                if (top + 2 > this.stack.length) {
+                    this.stack = Arrays.copyOf(this.stack, this.stack.length << 1);
+                }
+                this.stack[top++] = this.child2[node];
+                this.stack[top++] = node + 1;
+            }
+        }
+    }
+
+    /**
+     * visit every static body whose bounding box overlaps a box
+     *
+     * @param handles the handles of the world, bodies are visited by row
+     */
+    void query(float qMinX, float qMinY, float qMaxX, float qMaxY, BodyHandles handles, IntConsumer visitor) {
+        if (this.count > 0) query(0, qMinX, qMinY, qMaxX, qMaxY, handles, visitor);
+    }
+
+    // recursive like raycast, so threads do not share the stack of the pair query
+    private void query(int node, float qMinX, float qMinY, float qMaxX, float qMaxY, BodyHandles handles,
+                       IntConsumer visitor) {
+        if (this.nodeMinX[node] > qMaxX || qMinX > this.nodeMaxX[node]) return;
+        if (this.nodeMinY[node] > qMaxY || qMinY > this.nodeMaxY[node]) return;
+
+        if (this.child2[node] == -1) {
+            for (int k = this.start[node]; k < this.end[node]; k++) {
+                if (this.minX[k] > qMaxX || qMinX > this.maxX[k]) continue;
+                if (this.minY[k] > qMaxY || qMinY > this.maxY[k]) continue;
+                visitor.accept(handles.rowOf(this.handle[k]));
+            }
+            return;
+        }
+        query(node + 1, qMinX, qMinY, qMaxX, qMaxY, handles, visitor);
+        query(this.child2[node], qMinX, qMinY, qMaxX, qMaxY, handles, visitor);
+    }
+
+    /**
+     * visit every static body whose bounding box a ray crosses, the nearer child of a node first
+     *
+     * @param handles the handles of the world, bodies are visited by row
+     * @return the max distance left
+     */
+    float raycast(float originX, float originY, float directionX, float directionY, float maxDistance,
+                  BodyHandles handles, Broadphase.RayVisitor visitor) {
+        if (this.count == 0 || raycastNode(0, originX, originY, directionX, directionY, maxDistance) < 0f) {
+            return maxDistance;
+        }
+        return raycast(0, originX, originY, directionX, directionY, maxDistance, handles, visitor);
+    }
+
+    // recursive, so threads do not share the stack of query
+    private float raycast(int node, float originX, float originY, float directionX, float directionY,
+                          float maxDistance, BodyHandles handles, Broadphase.RayVisitor visitor) {
+        if (this.child2[node] == -1) {
+            for (int k = this.start[node]; k < this.end[node] && maxDistance > 0f; k++) {
+                if (Collisions.raycastBox(originX, originY, directionX, directionY, maxDistance,
+                        this.minX[k], this.minY[k], this.maxX[k], this.maxY[k]) < 0f) continue;
+                maxDistance = Math.min(maxDistance, visitor.visit(handles.rowOf(this.handle[k])));
+            }
+            return maxDistance;
+        }
+
+        int near = node + 1;
+        int far = this.child2[node];
+        float nearDistance = raycastNode(near, originX, originY, directionX, directionY, maxDistance);
+        float farDistance = raycastNode(far, originX, originY, directionX, directionY, maxDistance);
+        if (farDistance >= 0f && (nearDistance < 0f || farDistance < nearDistance)) {
+            int t = near;
+            near = far;
+            far = t;
+            float d = nearDistance;
+            nearDistance = farDistance;
+            farDistance = d;
+        }
+
+        if (nearDistance >= 0f) {
+            maxDistance = raycast(near, originX, originY, directionX, directionY, maxDistance, handles, visitor);
+            if (maxDistance <= 0f) return maxDistance;
+        }
+        if (farDistance >= 0f && farDistance <= maxDistance) {
+            maxDistance = raycast(far, originX, originY, directionX, directionY, maxDistance, handles, visitor);
+        }
+        return maxDistance;
+    }
+
+    private float raycastNode(int node, float originX, float originY, float directionX, float directionY,
+                              float maxDistance) {
+        return Collisions.raycastBox(originX, originY, directionX, directionY, maxDistance,
+                this.nodeMinX[node], this.nodeMinY[node], this.nodeMaxX[node], this.nodeMaxY[node]);
+    }
+
+    // build the node of bodies [from, to), returns its index
+    private int buildNode(int from, int to) {
+        int node = this.nodeCount++;
+
+        float minX = Float.MAX_VALUE;
+        float minY = Float.MAX_VALUE;
+        float maxX = -Float.MAX_VALUE;
+        float maxY = -Float.MAX_VALUE;
+        for (int k = from; k < to; k++) {
+            minX = Math.min(minX, this.minX[k]);
+            minY = Math.min(minY, this.minY[k]);
+            maxX = Math.max(maxX, this.maxX[k]);
+            maxY = Math.max(maxY, this.maxY[k]);
+        }
+        this.nodeMinX[node] = minX;
+        this.nodeMinY[node] = minY;
+        this.nodeMaxX[node] = maxX;
+        this.nodeMaxY[node] = maxY;
+        this.start[node] = from;
+        this.end[node] = to;
+
+        if (to - from <= LEAF_SIZE) {
+            this.child2[node] = -1;
+            return node;
+        }
+
+        // split at the median of the longer axis, so both halves hold the same number of bodies
+        boolean isAlongX = maxX - minX >= maxY - minY;
+        for (int k = from; k < to; k++) {
+            this.center[k] = isAlongX ? this.minX[k] + this.maxX[k] : this.minY[k] + this.maxY[k];
+        }
+        int middle = (from + to) >>> 1;
+        this.select(from, to - 1, middle);
+
+        this.buildNode(from, middle);
+        this.child2[node] = this.buildNode(middle, to);
+        return node;
+    }
+
+    // partially sort [low, high] by center so that the body at k is the one a full sort would put there
+    private void select(int low, int high, int k) {
+        while (high > low) {
+            float pivot = this.center[(low + high) >>> 1];
+            int i = low;
+            int j = high;
+            while (i <= j) {
+                while (this.center[i] < pivot) i++;
+                while (this.center[j] > pivot) j--;
+                if (i <= j) this.swap(i++, j--);
+            }
+            if (k <= j) high = j;
+            else if (k >= i) low = i;
+            else return;
+        }
+    }
+
+    private void swap(int a, int b) {
+        int handle = this.handle[a];
+        this.handle[a] = this.handle[b];
+        this.handle[b] = handle;
+        swap(this.minX, a, b);
+        swap(this.minY, a, b);
+        swap(this.maxX, a, b);
+        swap(this.maxY, a, b);
+        swap(this.center, a, b);
+    }
+
+    private static void swap(float[] values, int a, int b) {
+        float t = values[a];
+        values[a] = values[b];
+        values[b] = t;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= this.handle.length) return;
+
+        int length = Math.max(capacity, this.handle.length << 1);
+        this.handle = new int[length];
+        this.minX = new float[length];
+        this.minY = new float[length];
+        this.maxX = new float[length];
+        this.maxY = new float[length];
+        this.center = new float[length];
+    }
+
+    private void ensureNodeCapacity(int capacity) {
+        if (capacity <= this.nodeMinX.length) return;
+
+        int length = Math.max(capacity, this.nodeMinX.length << 1);
+        this.nodeMinX = Arrays.copyOf(this.nodeMinX, length);
+        this.nodeMinY = Arrays.copyOf(this.nodeMinY, length);
+        this.nodeMaxX = Arrays.copyOf(this.nodeMaxX, length);
+        this.nodeMaxY = Arrays.copyOf(this.nodeMaxY, length);
+        this.child2 = Arrays.copyOf(this.child2, length);
+        this.start = Arrays.copyOf(this.start, length);
+        this.end = Arrays.copyOf(this.end, length);
+    }
+}
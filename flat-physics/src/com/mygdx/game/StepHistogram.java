@@ -0,0 +1,113 @@
+package com.mygdx.game;
+
+import java.util.Arrays;
+
+/**
+ * durations of the last steps, the oldest sample is dropped when a new one comes in
+ * <p>
+ * samples are counted in buckets of eight per power of two, so a percentile is exact to within 1/8
+ * and adding a sample never allocates
+ */
+public class StepHistogram {
+
+    // buckets per power of two
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKET_COUNT = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    private final int[] buckets;
+    // the last samples in a ring, next is the slot the next sample goes to
+    private final long[] samples;
+    private int next;
+    private int size;
+    private long sum;
+
+    /**
+     * @param window number of steps kept
+     */
+    public StepHistogram(int window) {
+        if (window < 1) {
+            throw new IllegalArgumentException("window must be at least 1");
+        }
+        this.buckets = new int[BUCKET_COUNT];
+        this.samples = new long[window];
+    }
+
+    void add(long nanos) {
+        if (nanos < 0L) nanos = 0L;
+
+        if (this.size == this.samples.length) {
+            long oldest = this.samples[this.next];
+            this.buckets[bucket(oldest)]--;
+            this.sum -= oldest;
+        } else {
+            this.size++;
+        }
+        this.samples[this.next] = nanos;
+        this.buckets[bucket(nanos)]++;
+        this.sum += nanos;
+        this.next = (this.next + 1) % this.samples.length;
+    }
+
+    public int getWindow() {
+        return this.samples.length;
+    }
+
+    // number of samples, less than the window until the world ran that many steps
+    public int getCount() {
+        return this.size;
+    }
+
+    public long getMean() {
+        if (this.size == 0) return 0L;
+        return this.sum / this.size;
+    }
+
+    public long getMax() {
+        long max = 0L;
+        for (int s = 0; s < this.size; s++) {
+            max = Math.max(max, this.samples[s]);
+        }
+        return max;
+    }
+
+    /**
+     * @param percentile between 0 and 100, e.g. 99 for the duration 99% of the steps stayed within
+     * @return upper bound of the bucket holding the percentile, 0 without samples
+     */
+    public long getPercentile(float percentile) {
+        if (percentile < 0f || percentile > 100f) {
+            throw new IllegalArgumentException("percentile must be between 0 and 100");
+        }
+        if (this.size == 0) return 0L;
+
+        long rank = Math.max(1L, (long) Math.ceil(percentile / 100.0 * this.size));
+        long count = 0L;
+        for (int b = 0; b < BUCKET_COUNT; b++) {
+            count += this.buckets[b];
+            if (count >= rank) return Math.min(upperBound(b), this.getMax());
+        }
+        return this.getMax();
+    }
+
+    public void clear() {
+        Arrays.fill(this.buckets, 0);
+        this.next = 0;
+        this.size = 0;
+        this.sum = 0L;
+    }
+
+    // values below SUB_BUCKETS get a bucket each, above that every power of two is split into SUB_BUCKETS
+    private static int bucket(long value) {
+        if (value < SUB_BUCKETS) return (int) value;
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return (shift + 1) * SUB_BUCKETS + (int) ((value >>> shift) - SUB_BUCKETS);
+    }
+
+    private static long upperBound(int bucket) {
+        if (bucket < SUB_BUCKETS) return bucket;
+        int shift = bucket / SUB_BUCKETS - 1;
+        long subBucket = bucket % SUB_BUCKETS;
+        return ((SUB_BUCKETS + subBucket + 1) << shift) - 1;
+    }
+}
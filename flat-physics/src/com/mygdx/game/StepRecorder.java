@@ -0,0 +1,238 @@
+package com.mygdx.game;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * writes every step of a world into a file, set it with FlatWorld.setRecorder and read the file with StepReplay
+ * <p>
+ * the file is a ring of segments mapped into memory, once the last segment is full the oldest one is overwritten,
+ * so the file keeps the most recent steps and never grows.
+ * a step is the saved state of the world and its contact events, the bodies themselves are written at the start of
+ * every segment and whenever one joined or left, so every segment can be replayed without the ones before it.
+ * properties set on a body that is already in the world, like its restitution or collision filter,
+ * are only picked up by the next segment
+ */
+public class StepRecorder implements Closeable {
+
+    // first int of every segment, bump it when the layout changes
+    static final int SEGMENT_MAGIC = 0x464C5202;
+    // magic, segment bytes and the sequence number of the segment
+    static final int SEGMENT_HEADER_BYTES = 4 + 4 + 8;
+    // type, payload bytes and step
+    static final int RECORD_HEADER_BYTES = 4 + 4 + 8;
+
+    // ends the records of a segment, mapped files start out zeroed so an unused segment ends right away
+    static final int END_RECORD = 0;
+    // settings of the world and every body, in row order
+    static final int BODIES_RECORD = 1;
+    // size of the saved state of the world, the state and the contact events of the step
+    static final int STEP_RECORD = 2;
+
+    // gravity, solver, deterministic, sleeping, its thresholds, the fixed time step and max steps per update
+    private static final int SETTINGS_BYTES = 10 * 4;
+    // handle, shape, static, radius, width, height, density, mass, area, restitution, category, mask and group
+    private static final int BODY_BYTES = 13 * 4;
+
+    static final ByteOrder ORDER = ByteOrder.LITTLE_ENDIAN;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer[] segments;
+    private final int segmentBytes;
+
+    // segment written to, -1 before the first step, and the sequence number it was given
+    private int segment;
+    private long sequence;
+    private ByteBuffer buffer;
+
+    private long nextStep;
+    private int bodyVersion;
+
+    /**
+     * create or overwrite a recording, the whole file is mapped up front
+     *
+     * @param segmentBytes size of a segment, a segment must fit the bodies and the largest step of the world
+     * @param segmentCount number of segments in the ring
+     */
+    public StepRecorder(Path path, int segmentBytes, int segmentCount) throws IOException {
+        if (segmentBytes <= SEGMENT_HEADER_BYTES + 2 * RECORD_HEADER_BYTES) {
+            throw new IllegalArgumentException("segments are too small");
+        }
+        if (segmentCount < 1) {
+            throw new IllegalArgumentException("segment count must be at least 1");
+        }
+        this.segmentBytes = segmentBytes;
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        this.segments = new MappedByteBuffer[segmentCount];
+        try {
+            for (int k = 0; k < segmentCount; k++) {
+                this.segments[k] = this.channel.map(FileChannel.MapMode.READ_WRITE, (long) k * segmentBytes, segmentBytes);
+                this.segments[k].order(ORDER);
+            }
+        } catch (IOException e) {
+            this.channel.close();
+            throw e;
+        }
+        this.segment = -1;
+    }
+
+    // number of the step the next record gets, steps are counted from 0 when recording starts
+    public long getNextStep() {
+        return this.nextStep;
+    }
+
+    /**
+     * write the step the world just finished
+     *
+     * @throws IllegalStateException when a step does not fit into a segment
+     */
+    void record(FlatWorld world) {
+        int stateBytes = world.getStateSize();
+        int stepBytes = RECORD_HEADER_BYTES + 4 + stateBytes + world.getContactEvents().getEventsSize();
+        int bodiesBytes = RECORD_HEADER_BYTES + getBodiesSize(world);
+        boolean isBodiesChanged = this.buffer == null || world.getBodyVersion() != this.bodyVersion;
+
+        int bytes = stepBytes + (isBodiesChanged ? bodiesBytes : 0);
+        if (this.buffer == null || bytes > this.buffer.remaining()) {
+            if (SEGMENT_HEADER_BYTES + bodiesBytes + stepBytes > this.segmentBytes) {
+                throw new IllegalStateException("a step needs " + (bodiesBytes + stepBytes)
+                        + " bytes, make the segments larger");
+            }
+            this.nextSegment();
+            isBodiesChanged = true;
+        }
+
+        long step = this.nextStep++;
+        if (isBodiesChanged) {
+            int start = this.beginRecord();
+            writeBodies(world, this.buffer);
+            this.endRecord(start, BODIES_RECORD, step);
+            this.bodyVersion = world.getBodyVersion();
+        }
+
+        int start = this.beginRecord();
+        this.buffer.putInt(stateBytes);
+        world.saveState(this.buffer);
+        world.getContactEvents().writeEvents(this.buffer);
+        this.endRecord(start, STEP_RECORD, step);
+    }
+
+    // write what is mapped to the file
+    public void flush() {
+        for (MappedByteBuffer segment : this.segments) {
+            segment.force();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.flush();
+        this.channel.close();
+    }
+
+    // move on to the next segment of the ring, overwriting the oldest steps
+    private void nextSegment() {
+        this.segment = (this.segment + 1) % this.segments.length;
+        ByteBuffer buffer = this.segments[this.segment];
+        // end the old records first, so a half written header never makes them look new
+        buffer.putInt(SEGMENT_HEADER_BYTES, END_RECORD);
+        buffer.putInt(0, SEGMENT_MAGIC);
+        buffer.putInt(4, this.segmentBytes);
+        buffer.putLong(8, ++this.sequence);
+        buffer.clear();
+        buffer.position(SEGMENT_HEADER_BYTES);
+        this.buffer = buffer;
+    }
+
+    private int beginRecord() {
+        int start = this.buffer.position();
+        this.buffer.position(start + RECORD_HEADER_BYTES);
+        return start;
+    }
+
+    // the type goes in last, a record is only read once it is complete
+    private void endRecord(int start, int type, long step) {
+        ByteBuffer buffer = this.buffer;
+        int end = buffer.position();
+        if (buffer.remaining() >= 4) buffer.putInt(end, END_RECORD);
+        buffer.putInt(start + 4, end - start - RECORD_HEADER_BYTES);
+        buffer.putLong(start + 8, step);
+        buffer.putInt(start, type);
+    }
+
+    static int getBodiesSize(FlatWorld world) {
+        return SETTINGS_BYTES + 4 + BODY_BYTES * world.getBodyCount();
+    }
+
+    // the settings of the world and every body, everything but the state saveState writes
+    static void writeBodies(FlatWorld world, ByteBuffer buffer) {
+        buffer.putFloat(world.getGravity().getX());
+        buffer.putFloat(world.getGravity().getY());
+        buffer.putInt(world.getSolver());
+        buffer.putInt(world.isDeterministic() ? 1 : 0);
+        buffer.putInt(world.isSleepingEnabled() ? 1 : 0);
+        buffer.putFloat(world.getSleepLinearVelocity());
+        buffer.putFloat(world.getSleepRotationalVelocity());
+        buffer.putFloat(world.getTimeToSleep());
+        buffer.putFloat(world.getFixedTimeStep());
+        buffer.putInt(world.getMaxStepsPerUpdate());
+
+        int n = world.getBodyCount();
+        buffer.putInt(n);
+        for (int i = 0; i < n; i++) {
+            FlatBody body = world.getBody(i);
+            buffer.putInt(body.getHandle());
+            buffer.putInt(body.getShapeType());
+            buffer.putInt(body.isStatic() ? 1 : 0);
+            buffer.putFloat(body.getRadius());
+            buffer.putFloat(body.getWidth());
+            buffer.putFloat(body.getHeight());
+            buffer.putFloat(body.getDensity());
+            buffer.putFloat(body.getMass());
+            buffer.putFloat(body.getArea());
+            buffer.putFloat(body.getRestitution());
+            buffer.putInt(body.getCategoryBits());
+            buffer.putInt(body.getMaskBits());
+            buffer.putInt(body.getGroup());
+        }
+    }
+
+    // a new world with the settings and bodies writeBodies wrote, the bodies sit at the origin until a state is restored
+    static FlatWorld readBodies(ByteBuffer buffer) {
+        FlatWorld world = new FlatWorld();
+        world.getGravity().set(buffer.getFloat(), buffer.getFloat());
+        world.setSolver(buffer.getInt());
+        world.setDeterministic(buffer.getInt() != 0);
+        world.setSleepingEnabled(buffer.getInt() != 0);
+        world.setSleepThresholds(buffer.getFloat(), buffer.getFloat(), buffer.getFloat());
+        world.setFixedTimeStep(buffer.getFloat());
+        world.setMaxStepsPerUpdate(buffer.getInt());
+
+        int n = buffer.getInt();
+        for (int i = 0; i < n; i++) {
+            int handle = buffer.getInt();
+            int shapeType = buffer.getInt();
+            boolean isStatic = buffer.getInt() != 0;
+            float radius = buffer.getFloat();
+            float width = buffer.getFloat();
+            float height = buffer.getFloat();
+            float density = buffer.getFloat();
+            float mass = buffer.getFloat();
+            float area = buffer.getFloat();
+            float restitution = buffer.getFloat();
+
+            FlatBody body = FlatBody.createBody(new FlatBodyStore(1), shapeType, density, mass, restitution, area,
+                    isStatic, radius, width, height);
+            body.setCollisionFilter(buffer.getInt(), buffer.getInt(), buffer.getInt());
+            world.addBody(body, handle);
+        }
+        return world;
+    }
+}
@@ -0,0 +1,211 @@
+package com.mygdx.game;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * reads a file written by StepRecorder, any step still in the ring can be turned back into a world
+ * <p>
+ * the records are indexed once when the file is opened, seeking to a step then builds the bodies written at the start
+ * of its segment or since the last change and restores the state of the step into them.
+ * a rebuilt world has the same bodies, handles and settings, but its own broadphase and no callbacks,
+ * pair filter or user data
+ */
+public class StepReplay implements Closeable {
+
+    private final FileChannel channel;
+    private final MappedByteBuffer[] segments;
+
+    // every step in the file in ascending order, with where its record and the bodies it belongs to are
+    private long[] steps;
+    private int[] stepSegment;
+    private int[] stepPosition;
+    private int[] bodiesPosition;
+    private int stepCount;
+
+    public StepReplay(Path path) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            this.segments = this.mapSegments();
+            this.index();
+        } catch (IOException | RuntimeException e) {
+            this.channel.close();
+            throw e;
+        }
+    }
+
+    public int getStepCount() {
+        return this.stepCount;
+    }
+
+    // oldest step still in the file, -1 when it holds none
+    public long getFirstStep() {
+        return this.stepCount == 0 ? -1 : this.steps[0];
+    }
+
+    // newest step in the file, -1 when it holds none
+    public long getLastStep() {
+        return this.stepCount == 0 ? -1 : this.steps[this.stepCount - 1];
+    }
+
+    /**
+     * build the world as it was right after a step
+     *
+     * @throws IllegalArgumentException when the step is not in the file
+     */
+    public FlatWorld seek(long step) {
+        int k = this.find(step);
+        ByteBuffer bodies = this.payload(this.stepSegment[k], this.bodiesPosition[k]);
+        FlatWorld world = StepRecorder.readBodies(bodies);
+        world.restoreState(this.state(k));
+        return world;
+    }
+
+    /**
+     * put a world seek returned back to another step, cheaper than building it again while no body joined or left
+     *
+     * @throws IllegalArgumentException when the step is not in the file or holds other bodies than the world
+     */
+    public void seek(long step, FlatWorld world) {
+        world.restoreState(this.state(this.find(step)));
+    }
+
+    /**
+     * read the contact events of a step, they are only recorded while the world had a contact listener
+     */
+    public void readContactEvents(long step, ContactEvents out) {
+        ByteBuffer buffer = this.state(this.find(step));
+        // the events follow the state
+        buffer.position(buffer.position() + buffer.getInt(buffer.position() - 4));
+        out.readEvents(buffer);
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.channel.close();
+    }
+
+    private MappedByteBuffer[] mapSegments() throws IOException {
+        long size = this.channel.size();
+        if (size < StepRecorder.SEGMENT_HEADER_BYTES) {
+            throw new IOException("file is not a step recording");
+        }
+        ByteBuffer header = ByteBuffer.allocate(StepRecorder.SEGMENT_HEADER_BYTES).order(StepRecorder.ORDER);
+        this.channel.read(header, 0);
+        int segmentBytes = header.getInt(4);
+        if (header.getInt(0) != StepRecorder.SEGMENT_MAGIC || segmentBytes <= 0 || size % segmentBytes != 0) {
+            throw new IOException("file is not a step recording");
+        }
+
+        MappedByteBuffer[] segments = new MappedByteBuffer[(int) (size / segmentBytes)];
+        for (int k = 0; k < segments.length; k++) {
+            segments[k] = this.channel.map(FileChannel.MapMode.READ_ONLY, (long) k * segmentBytes, segmentBytes);
+            segments[k].order(StepRecorder.ORDER);
+        }
+        return segments;
+    }
+
+    // walk the segments from the oldest to the newest and remember where every step is
+    private void index() {
+        long[] order = new long[this.segments.length];
+        int used = 0;
+        for (int k = 0; k < this.segments.length; k++) {
+            ByteBuffer segment = this.segments[k];
+            long sequence = segment.getLong(8);
+            if (segment.getInt(0) != StepRecorder.SEGMENT_MAGIC || sequence <= 0) continue;
+            // sequence numbers stay far below 2^32, the segment goes in the low bits
+            order[used++] = sequence << 32 | k;
+        }
+        Arrays.sort(order, 0, used);
+
+        this.steps = new long[16];
+        this.stepSegment = new int[16];
+        this.stepPosition = new int[16];
+        this.bodiesPosition = new int[16];
+        for (int u = 0; u < used; u++) {
+            int k = (int) order[u];
+            ByteBuffer segment = this.segments[k];
+            int bodies = -1;
+            int position = StepRecorder.SEGMENT_HEADER_BYTES;
+            while (position + StepRecorder.RECORD_HEADER_BYTES <= segment.capacity()) {
+                int type = segment.getInt(position);
+                int length = segment.getInt(position + 4);
+                if (type == StepRecorder.END_RECORD || length < 0
+                        || length > segment.capacity() - position - StepRecorder.RECORD_HEADER_BYTES) break;
+
+                if (type == StepRecorder.BODIES_RECORD) {
+                    bodies = position;
+                } else if (type == StepRecorder.STEP_RECORD && bodies != -1) {
+                    this.addStep(segment.getLong(position + 8), k, position, bodies);
+                }
+                position += StepRecorder.RECORD_HEADER_BYTES + length;
+            }
+        }
+    }
+
+    private void addStep(long step, int segment, int position, int bodies) {
+        int k = this.stepCount++;
+        if (k == this.steps.length) {
+            this.steps = Arrays.copyOf(this.steps, k << 1);
+            this.stepSegment = Arrays.copyOf(this.stepSegment, k << 1);
+            this.stepPosition = Arrays.copyOf(this.stepPosition, k << 1);
+            this.bodiesPosition = Arrays.copyOf(this.bodiesPosition, k << 1);
+        }
+        this.steps[k] = step;
+        this.stepSegment[k] = segment;
+        this.stepPosition[k] = position;
+        this.bodiesPosition[k] = bodies;
+    }
+
+    private int find(long step) {
+        int k = Arrays.binarySearch(this.steps, 0, this.stepCount, step);
+        if (k < 0) {
+            throw new IllegalArgumentException("step " + step + " is not in the recording");
+        }
+        return k;
+    }
+
+    // the payload of the record at a position, read through a buffer of its own
+    private ByteBuffer payload(int segment, int position) {
+        ByteBuffer buffer = this.segments[segment].duplicate().order(StepRecorder.ORDER);
+        buffer.position(position + StepRecorder.RECORD_HEADER_BYTES);
+        return buffer;
+    }
+
+    // the saved world state of a step, behind its size
+    private ByteBuffer state(int k) {
+        ByteBuffer buffer = this.payload(this.stepSegment[k], this.stepPosition[k]);
+        buffer.position(buffer.position() + 4);
+        return buffer;
+    }
+
+    /**
+     * print the steps a recording holds, and with a step the state of every body right after it
+     * <p>
+     * usage: StepReplay file [step]
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.out.println("usage: StepReplay file [step]");
+            return;
+        }
+        try (StepReplay replay = new StepReplay(Paths.get(args[0]))) {
+            System.out.println("steps " + replay.getFirstStep() + " to " + replay.getLastStep());
+            if (args.length < 2) return;
+
+            FlatWorld world = replay.seek(Long.parseLong(args[1]));
+            for (int i = 0; i < world.getBodyCount(); i++) {
+                FlatBody body = world.getBody(i);
+                System.out.println(body.getHandle() + " " + body.getPosition() + " " + body.getLinearVelocity()
+                        + " " + body.getRotation() + (body.isAwake() ? "" : " asleep"));
+            }
+        }
+    }
+}
@@ -0,0 +1,200 @@
+package com.mygdx.game;
+
+import com.mygdx.game.callback.StepListener;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * what the last step of a world spent its time on, set with FlatWorld.setStatistics
+ * <p>
+ * with SOLVER_SUBSTEPS the phases run once per pass, their times and counts are summed over the passes.
+ * values are overwritten by the next step, read them from the listener or between steps
+ */
+public class StepStatistics {
+
+    // moving the bodies and putting them to sleep
+    public static final int INTEGRATE = 0;
+    // finding and sorting candidate pairs
+    public static final int BROADPHASE = 1;
+    // testing candidate pairs and waking the bodies they touch
+    public static final int NARROWPHASE = 2;
+    // building islands and solving their contacts
+    public static final int RESOLVE = 3;
+    // collision callbacks, tracking contact events and the contact listener
+    public static final int CALLBACKS = 4;
+    public static final int PHASE_COUNT = 5;
+
+    // ten seconds of steps at DEFAULT_FIXED_TIME_STEP
+    public static final int DEFAULT_WINDOW = 600;
+
+    private final long[] phaseNanos;
+    private long stepNanos;
+    private int pairCount;
+    private int contactCount;
+    private int awakeBodyCount;
+    private long allocatedBytes;
+    private long stepCount;
+
+    private final StepHistogram[] phaseHistograms;
+    private final StepHistogram stepHistogram;
+    private StepListener listener;
+
+    // false once the allocation counter failed to load
+    private static boolean isAllocationCounterAvailable = true;
+
+    // taken at the start of the step
+    private long startNanos;
+    private long startAllocatedBytes;
+
+    public StepStatistics() {
+        this(DEFAULT_WINDOW);
+    }
+
+    /**
+     * @param window number of steps the histograms keep
+     */
+    public StepStatistics(int window) {
+        this.phaseNanos = new long[PHASE_COUNT];
+        this.phaseHistograms = new StepHistogram[PHASE_COUNT];
+        for (int phase = 0; phase < PHASE_COUNT; phase++) {
+            this.phaseHistograms[phase] = new StepHistogram(window);
+        }
+        this.stepHistogram = new StepHistogram(window);
+    }
+
+    public StepListener getListener() {
+        return this.listener;
+    }
+
+    /**
+     * @param listener called on the stepping thread after every step, null for none
+     */
+    public void setListener(StepListener listener) {
+        this.listener = listener;
+    }
+
+    // nanoseconds the last step spent in one of the phases above
+    public long getNanos(int phase) {
+        return this.phaseNanos[phase];
+    }
+
+    // nanoseconds of the whole last step, a bit more than the sum of its phases
+    public long getStepNanos() {
+        return this.stepNanos;
+    }
+
+    // candidate pairs the broad phase reported
+    public int getPairCount() {
+        return this.pairCount;
+    }
+
+    // candidate pairs the narrow phase found touching
+    public int getContactCount() {
+        return this.contactCount;
+    }
+
+    // non static bodies that were not asleep at the end of the step
+    public int getAwakeBodyCount() {
+        return this.awakeBodyCount;
+    }
+
+    /**
+     * bytes the stepping thread allocated during the last step, -1 when the jvm can not tell.
+     * threads of a parallel narrow phase or solver are not counted
+     */
+    public long getAllocatedBytes() {
+        return this.allocatedBytes;
+    }
+
+    // steps recorded since this was created
+    public long getStepCount() {
+        return this.stepCount;
+    }
+
+    // the last window durations of one phase
+    public StepHistogram getHistogram(int phase) {
+        return this.phaseHistograms[phase];
+    }
+
+    // the last window durations of whole steps
+    public StepHistogram getStepHistogram() {
+        return this.stepHistogram;
+    }
+
+    void begin() {
+        for (int phase = 0; phase < PHASE_COUNT; phase++) {
+            this.phaseNanos[phase] = 0L;
+        }
+        this.pairCount = 0;
+        this.contactCount = 0;
+        this.startAllocatedBytes = allocatedBytes();
+        this.startNanos = System.nanoTime();
+    }
+
+    /**
+     * add the time since start to a phase
+     *
+     * @return the current time, the start of the next phase
+     */
+    long lap(int phase, long start) {
+        long now = System.nanoTime();
+        this.phaseNanos[phase] += now - start;
+        return now;
+    }
+
+    void addPairs(int pairCount, int contactCount) {
+        this.pairCount += pairCount;
+        this.contactCount += contactCount;
+    }
+
+    void end(int awakeBodyCount) {
+        this.stepNanos = System.nanoTime() - this.startNanos;
+        long allocatedBytes = allocatedBytes();
+        this.allocatedBytes = allocatedBytes < 0L || this.startAllocatedBytes < 0L
+                ? -1L : allocatedBytes - this.startAllocatedBytes;
+        this.awakeBodyCount = awakeBodyCount;
+        this.stepCount++;
+
+        for (int phase = 0; phase < PHASE_COUNT; phase++) {
+            this.phaseHistograms[phase].add(this.phaseNanos[phase]);
+        }
+        this.stepHistogram.add(this.stepNanos);
+
+        if (this.listener != null) this.listener.stepped(this);
+    }
+
+    private static long allocatedBytes() {
+        if (!isAllocationCounterAvailable) return -1L;
+        try {
+            return AllocationCounter.get();
+        } catch (LinkageError e) {
+            // no java.lang.management or com.sun.management on this platform, e.g. android
+            isAllocationCounterAvailable = false;
+            return -1L;
+        }
+    }
+
+    // bytes allocated by the current thread, only hotspot based jvms can tell, loaded on first use
+    private static class AllocationCounter {
+        private static final com.sun.management.ThreadMXBean THREADS = find();
+
+        private static com.sun.management.ThreadMXBean find() {
+            try {
+                java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+                if (!(threads instanceof com.sun.management.ThreadMXBean)) return null;
+
+                com.sun.management.ThreadMXBean hotspotThreads = (com.sun.management.ThreadMXBean) threads;
+                if (!hotspotThreads.isThreadAllocatedMemorySupported()) return null;
+                hotspotThreads.setThreadAllocatedMemoryEnabled(true);
+                return hotspotThreads;
+            } catch (SecurityException | UnsupportedOperationException e) {
+                return null;
+            }
+        }
+
+        private static long get() {
+            if (THREADS == null) return -1L;
+            return THREADS.getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+    }
+}
@@ -0,0 +1,242 @@
+package com.mygdx.game;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.IntConsumer;
+
+/**
+ * sort and sweep broadphase along x axis
+ * <p>
+ * body indices are kept sorted by the min x of their bounding boxes, and the order survives between calls.
+ * bodies only move a little every substep, so insertion sort on the previous order is close to linear.
+ * then we sweep the sorted list, a body only needs to be checked against the following bodies
+ * whose min x is not greater than its max x.
+ * new bodies are appended unsorted, after many of them the whole order is sorted again instead.
+ * a raycast or box query looks up where its x range starts in the order and only walks the bodies from there to where it ends
+ */
+public class SweepAndPruneBroadphase implements Broadphase {
+
+    // more bodies added since the last call are sorted with everything else at once,
+    // insertion sort would carry each of them across the order on its own
+    private static final int MIN_ADDED_TO_SORT_ALL = 32;
+
+    // body indices sorted by min x of their bounding boxes, removed bodies leave a -1 until the next call
+    private int[] order;
+    private int count;
+    // place of every body in order
+    private int[] slot;
+    private int bodyCount;
+    // bodies added since the last call
+    private int addedCount;
+    // min x and body index packed for a full sort, min x as sortable bits in the high half
+    private long[] sortKeys;
+
+    // bounding boxes indexed by body index, refreshed on every call
+    private float[] minX;
+    private float[] minY;
+    private float[] maxX;
+    private float[] maxY;
+    // widest bounding box, a box starting further left than this from a point can not reach it
+    private float maxWidth;
+
+    public SweepAndPruneBroadphase() {
+        this.order = new int[16];
+        this.slot = new int[16];
+        this.sortKeys = new long[16];
+        this.minX = new float[16];
+        this.minY = new float[16];
+        this.maxX = new float[16];
+        this.maxY = new float[16];
+        this.count = 0;
+    }
+
+    @Override
+    public void add(int index) {
+        // many bodies added and removed between two calls, gaps are closed before the order grows
+        if (this.count == this.order.length && this.count != this.bodyCount) closeGaps();
+        ensureCapacity(this.count + 1);
+        this.slot[index] = this.count;
+        this.order[this.count++] = index;
+        this.bodyCount++;
+        this.addedCount++;
+    }
+
+    @Override
+    public void addAll(int index, int count) {
+        if (this.count + count > this.order.length && this.count != this.bodyCount) closeGaps();
+        ensureCapacity(this.count + count);
+        for (int i = index; i < index + count; i++) {
+            this.slot[i] = this.count;
+            this.order[this.count++] = i;
+        }
+        this.bodyCount += count;
+        this.addedCount += count;
+    }
+
+    @Override
+    public void remove(int index) {
+        // the order stays sorted, the last body is renamed in its place
+        int last = --this.bodyCount;
+        this.order[this.slot[index]] = -1;
+        if (index != last) {
+            this.slot[index] = this.slot[last];
+            this.order[this.slot[index]] = index;
+        }
+    }
+
+    @Override
+    public void findPairs(List<FlatBody> bodies, PairBuffer pairs) {
+        pairs.clear();
+        update(bodies);
+
+        for (int i = 0; i < this.count; i++) {
+            int a = this.order[i];
+            float maxXA = this.maxX[a];
+
+            for (int j = i + 1; j < this.count; j++) {
+                int b = this.order[j];
+
+                // every following body starts after this one ends
+                if (this.minX[b] > maxXA) break;
+
+                if (this.minY[a] > this.maxY[b] || this.minY[b] > this.maxY[a]) continue;
+
+                pairs.add(a, b);
+            }
+        }
+    }
+
+    @Override
+    public void update(List<FlatBody> bodies) {
+        if (this.count != this.bodyCount) closeGaps();
+
+        float maxWidth = 0f;
+        for (int i = 0; i < this.count; i++) {
+            FlatAABB aabb = bodies.get(i).getBoundingBox();
+            this.minX[i] = aabb.getMin().getX();
+            this.minY[i] = aabb.getMin().getY();
+            this.maxX[i] = aabb.getMax().getX();
+            this.maxY[i] = aabb.getMax().getY();
+            maxWidth = Math.max(maxWidth, this.maxX[i] - this.minX[i]);
+        }
+        this.maxWidth = maxWidth;
+
+        if (this.addedCount > MIN_ADDED_TO_SORT_ALL) sortAllByMinX();
+        else sortByMinX();
+        this.addedCount = 0;
+
+        for (int i = 0; i < this.count; i++) {
+            this.slot[this.order[i]] = i;
+        }
+    }
+
+    @Override
+    public void raycast(List<FlatBody> bodies, float originX, float originY, float directionX, float directionY,
+                        float maxDistance, RayVisitor visitor) {
+        if (directionX >= 0f) {
+            // left to right, from the first box that can reach the origin until boxes start past the end of the ray
+            for (int i = firstWithMinXAtLeast(originX - this.maxWidth); i < this.count; i++) {
+                int body = this.order[i];
+                if (this.minX[body] > originX + directionX * maxDistance) break;
+
+                maxDistance = visit(body, originX, originY, directionX, directionY, maxDistance, visitor);
+                if (maxDistance <= 0f) return;
+            }
+        } else {
+            // right to left, from the last box starting at the origin until boxes can not reach the end of the ray
+            for (int i = firstWithMinXAtLeast(Math.nextUp(originX)) - 1; i >= 0; i--) {
+                int body = this.order[i];
+                if (this.minX[body] + this.maxWidth < originX + directionX * maxDistance) break;
+
+                maxDistance = visit(body, originX, originY, directionX, directionY, maxDistance, visitor);
+                if (maxDistance <= 0f) return;
+            }
+        }
+    }
+
+    @Override
+    public void query(List<FlatBody> bodies, float minX, float minY, float maxX, float maxY, IntConsumer visitor) {
+        // boxes starting further left than the widest box can not reach the query box
+        for (int i = firstWithMinXAtLeast(minX - this.maxWidth); i < this.count; i++) {
+            int body = this.order[i];
+            if (this.minX[body] > maxX) break;
+            if (minX > this.maxX[body] || this.minY[body] > maxY || minY > this.maxY[body]) continue;
+
+            visitor.accept(body);
+        }
+    }
+
+    private float visit(int body, float originX, float originY, float directionX, float directionY,
+                        float maxDistance, RayVisitor visitor) {
+        if (Collisions.raycastBox(originX, originY, directionX, directionY, maxDistance,
+                this.minX[body], this.minY[body], this.maxX[body], this.maxY[body]) < 0f) return maxDistance;
+        return Math.min(maxDistance, visitor.visit(body));
+    }
+
+    // binary search in the order, count when every box starts before x
+    private int firstWithMinXAtLeast(float x) {
+        int low = 0;
+        int high = this.count;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (this.minX[this.order[middle]] < x) low = middle + 1;
+            else high = middle;
+        }
+        return low;
+    }
+
+    // drop the entries of removed bodies, the order of the others stays
+    private void closeGaps() {
+        int j = 0;
+        for (int i = 0; i < this.count; i++) {
+            int index = this.order[i];
+            if (index == -1) continue;
+            this.slot[index] = j;
+            this.order[j++] = index;
+        }
+        this.count = j;
+    }
+
+    private void sortAllByMinX() {
+        if (this.sortKeys.length < this.count) this.sortKeys = new long[this.order.length];
+
+        for (int i = 0; i < this.count; i++) {
+            int index = this.order[i];
+            // flip the bits of negative floats so their order is the order of signed ints
+            int bits = Float.floatToIntBits(this.minX[index]);
+            bits ^= (bits >> 31) & 0x7FFFFFFF;
+            this.sortKeys[i] = ((long) bits << 32) | index;
+        }
+        Arrays.sort(this.sortKeys, 0, this.count);
+        for (int i = 0; i < this.count; i++) {
+            this.order[i] = (int) this.sortKeys[i];
+        }
+    }
+
+    // insertion sort, the order from the last call is almost sorted already
+    private void sortByMinX() {
+        for (int i = 1; i < this.count; i++) {
+            int index = this.order[i];
+            float key = this.minX[index];
+
+            int j = i - 1;
+            while (j >= 0 && this.minX[this.order[j]] > key) {
+                this.order[j + 1] = this.order[j];
+                j--;
+            }
+            this.order[j + 1] = index;
+        }
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= this.order.length) return;
+
+        int length = Math.max(capacity, this.order.length << 1);
+        this.order = Arrays.copyOf(this.order, length);
+        this.slot = Arrays.copyOf(this.slot, length);
+        this.minX = Arrays.copyOf(this.minX, length);
+        this.minY = Arrays.copyOf(this.minY, length);
+        this.maxX = Arrays.copyOf(this.maxX, length);
+        this.maxY = Arrays.copyOf(this.maxY, length);
+    }
+}
@@ -3,6 +3,6 @@ package com.mygdx.game.callback;
 import com.mygdx.game.FlatBody;
 
 public interface CollisionCallback extends Callback{
-    void collide(int indexA, int indexB);
+    void collide(int handleA, int handleB);
 //    public void collide(FlatBody bodyA, FlatBody bodyB);
 }
@@ -0,0 +1,7 @@
+package com.mygdx.game.callback;
+
+import com.mygdx.game.ContactEvents;
+
+public interface ContactListener extends Callback {
+    void contacts(ContactEvents events);
+}
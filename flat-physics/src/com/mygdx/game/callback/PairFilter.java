@@ -0,0 +1,5 @@
+package com.mygdx.game.callback;
+
+public interface PairFilter extends Callback {
+    boolean shouldCollide(int handleA, int handleB);
+}
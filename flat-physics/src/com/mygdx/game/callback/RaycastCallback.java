@@ -0,0 +1,14 @@
+package com.mygdx.game.callback;
+
+public interface RaycastCallback extends Callback {
+    /**
+     * a body the ray hits, hits do not come in order of distance
+     *
+     * @param handle   handle of the body, see FlatWorld.getBodyByHandle
+     * @param normal   of the shape at the hit point, pointing out of it
+     * @param distance from the origin of the ray to the hit point
+     * @return the max distance of the ray from now on: distance to only get closer hits,
+     *         anything larger like Float.MAX_VALUE to get every hit, 0 to stop
+     */
+    float hit(int handle, float pointX, float pointY, float normalX, float normalY, float distance);
+}
@@ -0,0 +1,7 @@
+package com.mygdx.game.callback;
+
+import com.mygdx.game.StepStatistics;
+
+public interface StepListener extends Callback {
+    void stepped(StepStatistics statistics);
+}
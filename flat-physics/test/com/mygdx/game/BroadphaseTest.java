@@ -0,0 +1,217 @@
+package com.mygdx.game;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * every broadphase against BruteForceBroadphase on random scenes, bodies move, join and leave between calls.
+ * the pairs of the brute force broadphase are cut down to the ones whose bounding boxes overlap,
+ * its raycast and query are the plain loops of the Broadphase interface
+ */
+public class BroadphaseTest {
+
+    private static final int ROUNDS = 40;
+
+    @Test
+    public void sweepAndPruneFindsTheSamePairs() {
+        checkPairs(new SweepAndPruneBroadphase(), 1);
+    }
+
+    @Test
+    public void dynamicTreeFindsTheSamePairs() {
+        checkPairs(new DynamicTreeBroadphase(), 2);
+    }
+
+    @Test
+    public void spatialHashFindsTheSamePairs() {
+        checkPairs(new SpatialHashBroadphase(16f), 3);
+    }
+
+    @Test
+    public void sweepAndPruneFindsTheSameRayAndBoxCandidates() {
+        checkQueries(new SweepAndPruneBroadphase(), 4);
+    }
+
+    @Test
+    public void dynamicTreeFindsTheSameRayAndBoxCandidates() {
+        checkQueries(new DynamicTreeBroadphase(), 5);
+    }
+
+    @Test
+    public void spatialHashFindsTheSameRayAndBoxCandidates() {
+        checkQueries(new SpatialHashBroadphase(16f), 6);
+    }
+
+    private static void checkPairs(Broadphase broadphase, long seed) {
+        Random random = new Random(seed);
+        Scene scene = new Scene(broadphase, random);
+        PairBuffer pairs = new PairBuffer();
+        PairBuffer expected = new PairBuffer();
+
+        for (int round = 0; round < ROUNDS; round++) {
+            scene.change(round);
+
+            scene.reference.findPairs(scene.bodies, expected);
+            broadphase.findPairs(scene.bodies, pairs);
+            assertEquals(overlapping(scene.bodies, expected), toSet(pairs), "pairs of round " + round);
+            assertEquals(toSet(pairs).size(), pairs.size(), "a pair was found twice in round " + round);
+        }
+    }
+
+    private static void checkQueries(Broadphase broadphase, long seed) {
+        Random random = new Random(seed);
+        Scene scene = new Scene(broadphase, random);
+        PairBuffer pairs = new PairBuffer();
+
+        for (int round = 0; round < ROUNDS; round++) {
+            scene.change(round);
+            // every other round queries right after update, the others after a full findPairs
+            if (round % 2 == 0) broadphase.update(scene.bodies);
+            else broadphase.findPairs(scene.bodies, pairs);
+
+            for (int q = 0; q < 50; q++) {
+                float originX = random.nextFloat() * 800f - 400f;
+                float originY = random.nextFloat() * 800f - 400f;
+                double angle = q % 8 == 0 ? Math.PI / 2 * (q / 8 % 4) : random.nextDouble() * Math.PI * 2;
+                float directionX = (float) Math.cos(angle);
+                float directionY = (float) Math.sin(angle);
+                float maxDistance = q % 3 == 0 ? Float.MAX_VALUE : random.nextFloat() * 300f;
+
+                List<Integer> expected = new ArrayList<>();
+                List<Integer> found = new ArrayList<>();
+                scene.reference.raycast(scene.bodies, originX, originY, directionX, directionY, maxDistance,
+                        index -> {
+                            expected.add(index);
+                            return Float.MAX_VALUE;
+                        });
+                broadphase.raycast(scene.bodies, originX, originY, directionX, directionY, maxDistance,
+                        index -> {
+                            found.add(index);
+                            return Float.MAX_VALUE;
+                        });
+                assertEquals(new HashSet<>(expected), new HashSet<>(found), "ray candidates of round " + round);
+                assertEquals(new HashSet<>(found).size(), found.size(), "a ray candidate was found twice");
+
+                // points, small boxes and boxes covering most of the scene
+                float halfWidth = q % 5 == 0 ? 0f : q % 7 == 0 ? random.nextFloat() * 400f : random.nextFloat() * 40f;
+                float halfHeight = q % 5 == 0 ? 0f : random.nextFloat() * 40f;
+                List<Integer> expectedBox = new ArrayList<>();
+                List<Integer> foundBox = new ArrayList<>();
+                scene.reference.query(scene.bodies, originX - halfWidth, originY - halfHeight,
+                        originX + halfWidth, originY + halfHeight, expectedBox::add);
+                broadphase.query(scene.bodies, originX - halfWidth, originY - halfHeight,
+                        originX + halfWidth, originY + halfHeight, foundBox::add);
+                assertEquals(new HashSet<>(expectedBox), new HashSet<>(foundBox), "box candidates of round " + round);
+                assertEquals(new HashSet<>(foundBox).size(), foundBox.size(), "a box candidate was found twice");
+            }
+        }
+    }
+
+    private static Set<Long> overlapping(List<FlatBody> bodies, PairBuffer pairs) {
+        Set<Long> set = toSet(pairs);
+        set.removeIf(pair -> {
+            FlatAABB a = bodies.get((int) (pair >>> 32)).getBoundingBox();
+            FlatAABB b = bodies.get((int) (long) pair).getBoundingBox();
+            return a.getMin().getX() > b.getMax().getX() || b.getMin().getX() > a.getMax().getX()
+                    || a.getMin().getY() > b.getMax().getY() || b.getMin().getY() > a.getMax().getY();
+        });
+        return set;
+    }
+
+    // pairs as a set of min and max index, broadphases do not agree on the order inside a pair
+    private static Set<Long> toSet(PairBuffer pairs) {
+        Set<Long> set = new HashSet<>();
+        for (int p = 0; p < pairs.size(); p++) {
+            int a = Math.min(pairs.getIndexA(p), pairs.getIndexB(p));
+            int b = Math.max(pairs.getIndexA(p), pairs.getIndexB(p));
+            assertTrue(a != b, "a body was paired with itself");
+            set.add((long) a << 32 | b);
+        }
+        return set;
+    }
+
+    // bodies of mixed shapes and sizes in one list, handed to the tested broadphase and the reference alike
+    private static class Scene {
+        private final List<FlatBody> bodies = new ArrayList<>();
+        private final Broadphase broadphase;
+        private final Broadphase reference = new BruteForceBroadphase();
+        private final Random random;
+
+        private Scene(Broadphase broadphase, Random random) {
+            this.broadphase = broadphase;
+            this.random = random;
+            // many bodies at once, the tree builds them into a subtree and sweep and prune sorts them all
+            this.add(300);
+        }
+
+        // move most bodies a little, a few far, then add and remove some
+        private void change(int round) {
+            for (FlatBody body : this.bodies) {
+                if (this.random.nextInt(20) == 0) {
+                    body.moveTo(this.randomPosition());
+                } else {
+                    body.move(new FlatVector(this.random.nextFloat() * 6f - 3f, this.random.nextFloat() * 6f - 3f));
+                }
+                if (this.random.nextInt(10) == 0) body.rotate(this.random.nextFloat() * 90f);
+            }
+
+            // some rounds remove many bodies at once, so removed slots pile up before they are cleaned up
+            int removed = round % 10 == 9 ? this.bodies.size() / 2 : this.random.nextInt(8);
+            for (int r = 0; r < removed && !this.bodies.isEmpty(); r++) {
+                this.remove(this.random.nextInt(this.bodies.size()));
+            }
+            this.add(round % 10 == 4 ? 100 : this.random.nextInt(8));
+        }
+
+        private void add(int count) {
+            int first = this.bodies.size();
+            for (int k = 0; k < count; k++) {
+                FlatVector position = this.randomPosition();
+                int kind = this.random.nextInt(10);
+                FlatBody body;
+                if (kind < 4) {
+                    body = FlatBody.createCircleBody(1f + this.random.nextFloat() * 8f, position, 2f, false, 0.5f);
+                } else if (kind < 9) {
+                    body = FlatBody.createBoxBody(2f + this.random.nextFloat() * 14f, 2f + this.random.nextFloat() * 14f,
+                            position, 2f, false, 0.5f);
+                } else {
+                    // a few bodies much larger than a hash cell
+                    body = FlatBody.createBoxBody(60f + this.random.nextFloat() * 100f, 5f + this.random.nextFloat() * 10f,
+                            position, 2f, false, 0.5f);
+                }
+                body.rotate(this.random.nextFloat() * 360f);
+                this.bodies.add(body);
+            }
+            if (count > 50) {
+                this.broadphase.addAll(first, count);
+                this.reference.addAll(first, count);
+            } else {
+                for (int i = first; i < first + count; i++) {
+                    this.broadphase.add(i);
+                    this.reference.add(i);
+                }
+            }
+        }
+
+        // the last body takes the place of the removed one, like in a world
+        private void remove(int index) {
+            int last = this.bodies.size() - 1;
+            this.bodies.set(index, this.bodies.get(last));
+            this.bodies.remove(last);
+            this.broadphase.remove(index);
+            this.reference.remove(index);
+        }
+
+        private FlatVector randomPosition() {
+            return new FlatVector(this.random.nextFloat() * 600f - 300f, this.random.nextFloat() * 600f - 300f);
+        }
+    }
+}
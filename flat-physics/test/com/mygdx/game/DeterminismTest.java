@@ -0,0 +1,105 @@
+package com.mygdx.game;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+/**
+ * worlds built and stepped the same way end up with the same getStateHash, on one thread or on several
+ */
+public class DeterminismTest {
+
+    private static final int STEPS = 200;
+
+    @Test
+    public void sameWorldsGiveSameHashesWithSubsteps() {
+        checkSame(FlatWorld.SOLVER_SUBSTEPS, null, null);
+    }
+
+    @Test
+    public void sameWorldsGiveSameHashesWithImpulses() {
+        checkSame(FlatWorld.SOLVER_SEQUENTIAL_IMPULSE, null, null);
+    }
+
+    @Test
+    public void parallelStepsGiveSerialHashesWithSubsteps() {
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            checkSame(FlatWorld.SOLVER_SUBSTEPS, pool, pool);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void parallelStepsGiveSerialHashesWithImpulses() {
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            checkSame(FlatWorld.SOLVER_SEQUENTIAL_IMPULSE, pool, pool);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void parallelNarrowphaseAloneGivesSerialHashes() {
+        ForkJoinPool pool = new ForkJoinPool(3);
+        try {
+            checkSame(FlatWorld.SOLVER_SEQUENTIAL_IMPULSE, pool, null);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    // a serial world and one on the given pools, stepped side by side
+    private static void checkSame(int solver, ForkJoinPool narrowphasePool, ForkJoinPool solverPool) {
+        FlatWorld serial = createPile(solver);
+        FlatWorld other = createPile(solver);
+        other.setParallelNarrowphase(narrowphasePool);
+        other.setParallelSolver(solverPool);
+        assertEquals(serial.getStateHash(), other.getStateHash(), "hash before the first step");
+
+        for (int step = 0; step < STEPS; step++) {
+            long before = serial.getStateHash();
+            serial.step(8, null);
+            other.step(8, null);
+            if (step == 0) assertNotEquals(before, serial.getStateHash(), "the first step did not change the hash");
+
+            // bodies leave and join the same way in both, the last body moves into the removed row
+            if (step % 50 == 25) {
+                serial.removeBody(serial.getBodyCount() / 2);
+                other.removeBody(other.getBodyCount() / 2);
+                serial.addBody(FlatBody.createCircleBody(6f, new FlatVector(0f, 400f), 2f, false, 0.5f));
+                other.addBody(FlatBody.createCircleBody(6f, new FlatVector(0f, 400f), 2f, false, 0.5f));
+            }
+            assertEquals(serial.getStateHash(), other.getStateHash(), "hash after step " + step);
+        }
+    }
+
+    // a floor with a tilted static ramp and a dense pile of circles and boxes falling onto it
+    private static FlatWorld createPile(int solver) {
+        FlatWorld world = new FlatWorld();
+        world.setSolver(solver);
+        world.setDeterministic(true);
+        world.addBody(FlatBody.createBoxBody(1200f, 40f, new FlatVector(0f, -20f), 2f, true, 0.3f));
+        FlatBody ramp = FlatBody.createBoxBody(300f, 20f, new FlatVector(-250f, 100f), 2f, true, 0.3f);
+        ramp.rotate(20f);
+        world.addBody(ramp);
+
+        Random random = new Random(7);
+        for (int i = 0; i < 400; i++) {
+            FlatVector position = new FlatVector((i % 25) * 18f - 225f + random.nextFloat() * 4f, 40f + (i / 25) * 18f);
+            if (random.nextBoolean()) {
+                world.addBody(FlatBody.createCircleBody(4f + random.nextFloat() * 4f, position, 2f, false, 0.3f));
+            } else {
+                world.addBody(FlatBody.createBoxBody(8f + random.nextFloat() * 8f, 8f + random.nextFloat() * 8f,
+                        position, 2f, false, 0.3f));
+            }
+        }
+        return world;
+    }
+}
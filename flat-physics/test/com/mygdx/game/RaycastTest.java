@@ -0,0 +1,241 @@
+package com.mygdx.game;
+
+import com.mygdx.game.callback.RaycastCallback;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * rays against single shapes with known answers, and against worlds through FlatWorld.raycast
+ */
+public class RaycastTest {
+
+    private static final float EPSILON = 1e-4f;
+    private static final float SQRT_HALF = (float) Math.sqrt(0.5);
+
+    @Test
+    public void circleIsHitWhereTheRayEntersIt() {
+        Collisions.RaycastResult result = new Collisions.RaycastResult();
+        // straight at it
+        assertTrue(Collisions.raycastCircle(-10f, 0f, 1f, 0f, 100f, 0f, 0f, 5f, result));
+        assertHit(5f, -1f, 0f, result);
+
+        // diagonal, from the origin to a circle at (10, 10)
+        assertTrue(Collisions.raycastCircle(0f, 0f, SQRT_HALF, SQRT_HALF, 100f, 10f, 10f, 5f, result));
+        assertHit((float) Math.sqrt(200) - 5f, -SQRT_HALF, -SQRT_HALF, result);
+
+        // grazing the top
+        assertTrue(Collisions.raycastCircle(-10f, 5f, 1f, 0f, 100f, 0f, 0f, 5f, result));
+        assertHit(10f, 0f, 1f, result);
+    }
+
+    @Test
+    public void circleIsMissed() {
+        Collisions.RaycastResult result = new Collisions.RaycastResult();
+        assertFalse(Collisions.raycastCircle(-10f, 0f, 1f, 0f, 4.9f, 0f, 0f, 5f, result), "hit beyond max distance");
+        assertFalse(Collisions.raycastCircle(-10f, 0f, -1f, 0f, 100f, 0f, 0f, 5f, result), "hit behind the origin");
+        assertFalse(Collisions.raycastCircle(-10f, 5.1f, 1f, 0f, 100f, 0f, 0f, 5f, result), "hit passing over");
+        assertFalse(Collisions.raycastCircle(1f, 1f, 1f, 0f, 100f, 0f, 0f, 5f, result), "hit from inside");
+        assertFalse(Collisions.raycastCircle(-1f, 0f, 1f, 0f, 100f, 0f, 0f, 5f, result), "hit from inside, inwards");
+    }
+
+    @Test
+    public void polygonIsHitThroughTheEdgeTheRayEnters() {
+        Collisions.RaycastResult result = new Collisions.RaycastResult();
+        FlatBody box = FlatBody.createBoxBody(20f, 10f, new FlatVector(0f, 0f), 2f, false, 0.3f);
+        FlatVector[] vertices = box.getTransformedVertices();
+
+        assertTrue(Collisions.raycastPolygon(-30f, 0f, 1f, 0f, 100f, vertices, result));
+        assertHit(20f, -1f, 0f, result);
+        assertTrue(Collisions.raycastPolygon(3f, 20f, 0f, -1f, 100f, vertices, result));
+        assertHit(15f, 0f, 1f, result);
+        // into the corner at (10, 5) the edge entered last wins, here the top one
+        assertTrue(Collisions.raycastPolygon(20f, 16f, -SQRT_HALF, -SQRT_HALF, 100f, vertices, result));
+        assertHit((float) Math.sqrt(2) * 11f, 0f, 1f, result);
+
+        // the same triangle in both winding orders gives the same hit
+        FlatVector[] clockwise = { new FlatVector(0f, 0f), new FlatVector(0f, 10f), new FlatVector(10f, 0f) };
+        FlatVector[] counterClockwise = { new FlatVector(0f, 0f), new FlatVector(10f, 0f), new FlatVector(0f, 10f) };
+        assertTrue(Collisions.raycastPolygon(10f, 10f, -SQRT_HALF, -SQRT_HALF, 100f, clockwise, result));
+        assertHit((float) Math.sqrt(50), SQRT_HALF, SQRT_HALF, result);
+        assertTrue(Collisions.raycastPolygon(10f, 10f, -SQRT_HALF, -SQRT_HALF, 100f, counterClockwise, result));
+        assertHit((float) Math.sqrt(50), SQRT_HALF, SQRT_HALF, result);
+    }
+
+    @Test
+    public void polygonIsMissed() {
+        Collisions.RaycastResult result = new Collisions.RaycastResult();
+        FlatVector[] vertices = FlatBody.createBoxBody(20f, 10f, new FlatVector(0f, 0f), 2f, false, 0.3f)
+                .getTransformedVertices();
+        assertFalse(Collisions.raycastPolygon(-30f, 0f, 1f, 0f, 19.9f, vertices, result), "hit beyond max distance");
+        assertFalse(Collisions.raycastPolygon(-30f, 0f, -1f, 0f, 100f, vertices, result), "hit behind the origin");
+        assertFalse(Collisions.raycastPolygon(-30f, 6f, 1f, 0f, 100f, vertices, result), "hit passing over");
+        assertFalse(Collisions.raycastPolygon(-30f, 5.5f, 1f, 0f, 100f, vertices, result), "hit parallel outside");
+        assertFalse(Collisions.raycastPolygon(1f, 1f, 1f, 0f, 100f, vertices, result), "hit from inside");
+        assertFalse(Collisions.raycastPolygon(-1f, 0f, 1f, 0f, 100f, vertices, result), "hit from inside, inwards");
+    }
+
+    @Test
+    public void worldReportsTheClosestHitWhenTheCallbackClipsTheRay() {
+        FlatWorld world = createRow();
+        List<Float> distances = new ArrayList<>();
+        int[] closest = { FlatWorld.NULL_HANDLE };
+        float[] normal = new float[2];
+        world.raycast(new FlatVector(-30f, 0f), new FlatVector(2f, 0f), 1000f, -1,
+                (handle, pointX, pointY, normalX, normalY, distance) -> {
+                    assertTrue(distances.isEmpty() || distance < distances.get(distances.size() - 1),
+                            "a hit beyond the clipped ray was reported");
+                    assertEquals(-30f + distance, pointX, EPSILON, "hit point x");
+                    assertEquals(0f, pointY, EPSILON, "hit point y");
+                    distances.add(distance);
+                    closest[0] = handle;
+                    normal[0] = normalX;
+                    normal[1] = normalY;
+                    return distance;
+                });
+        assertEquals(world.getBody(1).getHandle(), closest[0], "closest body");
+        assertEquals(25f, distances.get(distances.size() - 1), EPSILON, "closest distance");
+        assertEquals(-1f, normal[0], EPSILON, "normal x");
+        assertEquals(0f, normal[1], EPSILON, "normal y");
+    }
+
+    @Test
+    public void worldReportsEveryHitOrStopsWhenTold() {
+        FlatWorld world = createRow();
+        int[] count = { 0 };
+        world.raycast(new FlatVector(-30f, 0f), new FlatVector(1f, 0f), 1000f, -1,
+                (handle, pointX, pointY, normalX, normalY, distance) -> {
+                    count[0]++;
+                    return Float.MAX_VALUE;
+                });
+        // the row and the wall behind it
+        assertEquals(5, count[0], "hits of an unclipped ray");
+
+        count[0] = 0;
+        world.raycast(new FlatVector(-30f, 0f), new FlatVector(1f, 0f), 1000f, -1,
+                (handle, pointX, pointY, normalX, normalY, distance) -> {
+                    count[0]++;
+                    return 0f;
+                });
+        assertEquals(1, count[0], "hits after the callback returned 0");
+    }
+
+    @Test
+    public void worldRaySkipsTheBodyItStartsInAndMaskedBodies() {
+        FlatWorld world = createRow();
+        FlatBody first = world.getBody(1);
+        FlatBody second = world.getBody(2);
+        int[] closest = { FlatWorld.NULL_HANDLE };
+        float[] closestDistance = { 0f };
+        RaycastCallback callback = (handle, pointX, pointY, normalX, normalY, distance) -> {
+            closest[0] = handle;
+            closestDistance[0] = distance;
+            return distance;
+        };
+
+        world.raycast(new FlatVector(0f, 0f), new FlatVector(1f, 0f), 1000f, -1, callback);
+        assertEquals(second.getHandle(), closest[0], "a ray starting in the first body");
+        assertEquals(45f, closestDistance[0], EPSILON, "distance from inside the first body");
+
+        first.setCollisionFilter(2, -1, 0);
+        closest[0] = FlatWorld.NULL_HANDLE;
+        world.raycast(new FlatVector(-30f, 0f), new FlatVector(1f, 0f), 1000f, ~2, callback);
+        assertEquals(second.getHandle(), closest[0], "a ray masking out the first body");
+
+        closest[0] = FlatWorld.NULL_HANDLE;
+        world.raycast(new FlatVector(-30f, 0f), new FlatVector(1f, 0f), 20f, -1, callback);
+        assertEquals(FlatWorld.NULL_HANDLE, closest[0], "a ray ending short of the row");
+
+        assertThrows(IllegalArgumentException.class,
+                () -> world.raycast(new FlatVector(0f, 0f), new FlatVector(0f, 0f), 10f, -1, callback));
+    }
+
+    @Test
+    public void parallelBatchMatchesSerialBatchAndSingleRays() {
+        Random random = new Random(24);
+        FlatWorld world = new FlatWorld();
+        for (int i = 0; i < 300; i++) {
+            FlatVector position = new FlatVector(random.nextFloat() * 600f, random.nextFloat() * 600f);
+            boolean isStatic = random.nextInt(5) == 0;
+            if (random.nextBoolean()) {
+                world.addBody(FlatBody.createCircleBody(2f + random.nextFloat() * 6f, position, 2f, isStatic, 0.3f));
+            } else {
+                world.addBody(FlatBody.createBoxBody(4f + random.nextFloat() * 10f, 4f + random.nextFloat() * 10f,
+                        position, 2f, isStatic, 0.3f));
+            }
+        }
+        world.step(8, null);
+
+        RaycastBatch serial = new RaycastBatch();
+        RaycastBatch parallel = new RaycastBatch();
+        for (int r = 0; r < 2000; r++) {
+            float originX = random.nextFloat() * 800f - 100f;
+            float originY = random.nextFloat() * 800f - 100f;
+            float angle = random.nextFloat() * 2f * (float) Math.PI;
+            float maxDistance = random.nextFloat() * 300f;
+            serial.add(originX, originY, (float) Math.cos(angle), (float) Math.sin(angle), maxDistance);
+            parallel.add(originX, originY, (float) Math.cos(angle), (float) Math.sin(angle), maxDistance);
+        }
+
+        world.raycast(serial, -1, null);
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            world.raycast(parallel, -1, pool);
+        } finally {
+            pool.shutdown();
+        }
+
+        int hits = 0;
+        for (int r = 0; r < serial.size(); r++) {
+            assertEquals(serial.getHandle(r), parallel.getHandle(r), "handle of ray " + r);
+            assertEquals(serial.getDistance(r), parallel.getDistance(r), "distance of ray " + r);
+            assertEquals(serial.getNormalX(r), parallel.getNormalX(r), "normal x of ray " + r);
+            assertEquals(serial.getNormalY(r), parallel.getNormalY(r), "normal y of ray " + r);
+
+            // a single ray clipped by its callback ends at the same body
+            int[] closest = { FlatWorld.NULL_HANDLE };
+            float[] closestDistance = { 0f };
+            world.raycast(new FlatVector(serial.getOriginX(r), serial.getOriginY(r)),
+                    new FlatVector(serial.getDirectionX(r), serial.getDirectionY(r)), serial.getMaxDistance(r), -1,
+                    (handle, pointX, pointY, normalX, normalY, distance) -> {
+                        closest[0] = handle;
+                        closestDistance[0] = distance;
+                        return distance;
+                    });
+            if (serial.getHandle(r) == FlatWorld.NULL_HANDLE) {
+                assertEquals(serial.getMaxDistance(r), serial.getDistance(r), "distance of a ray that hit nothing");
+                assertEquals(FlatWorld.NULL_HANDLE, closest[0], "single ray " + r + " hit something");
+            } else {
+                hits++;
+                assertEquals(serial.getHandle(r), closest[0], "closest body of single ray " + r);
+                assertEquals(serial.getDistance(r), closestDistance[0], "closest distance of single ray " + r);
+            }
+        }
+        assertTrue(hits > 100 && hits < serial.size() - 100, "too few rays hit or missed: " + hits);
+    }
+
+    private static void assertHit(float distance, float normalX, float normalY, Collisions.RaycastResult result) {
+        assertEquals(distance, result.distance, EPSILON, "distance");
+        assertEquals(normalX, result.normal.getX(), EPSILON, "normal x");
+        assertEquals(normalY, result.normal.getY(), EPSILON, "normal y");
+    }
+
+    // boxes and circles in a row along the x axis from x = 0, and a static wall behind them
+    private static FlatWorld createRow() {
+        FlatWorld world = new FlatWorld();
+        world.addBody(FlatBody.createBoxBody(10f, 400f, new FlatVector(200f, 0f), 2f, true, 0.3f));
+        world.addBody(FlatBody.createBoxBody(10f, 10f, new FlatVector(0f, 0f), 2f, false, 0.3f));
+        world.addBody(FlatBody.createCircleBody(5f, new FlatVector(50f, 0f), 2f, false, 0.3f));
+        world.addBody(FlatBody.createBoxBody(10f, 10f, new FlatVector(100f, 0f), 2f, false, 0.3f));
+        world.addBody(FlatBody.createCircleBody(5f, new FlatVector(150f, 0f), 2f, false, 0.3f));
+        return world;
+    }
+}
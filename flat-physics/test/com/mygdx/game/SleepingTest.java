@@ -0,0 +1,130 @@
+package com.mygdx.game;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * sleeping bodies wake when what they rest on moves, turns or goes away
+ */
+public class SleepingTest {
+
+    private static final int FLOOR = 0;
+    // boxes resting on the floor on their own, the last one carries the top box
+    private static final int FIRST_BOX = 1;
+    private static final int BOXES = 5;
+    private static final int BOTTOM = FIRST_BOX + BOXES - 1;
+    private static final int TOP = BOTTOM + 1;
+
+    @Test
+    public void scenePutsEveryBoxToSleep() {
+        FlatWorld world = createScene(FlatWorld.SOLVER_SEQUENTIAL_IMPULSE);
+        for (int i = FIRST_BOX; i <= TOP; i++) {
+            assertFalse(world.getBody(i).isAwake(), "body " + i + " is awake");
+        }
+    }
+
+    @Test
+    public void turningTheFloorWakesBodiesOnIt() {
+        for (int solver : new int[] { FlatWorld.SOLVER_SUBSTEPS, FlatWorld.SOLVER_SEQUENTIAL_IMPULSE }) {
+            FlatWorld world = createScene(solver);
+            world.getBody(FLOOR).rotate(0.05f);
+            world.step(8, null);
+            for (int i = FIRST_BOX; i <= TOP; i++) {
+                assertTrue(world.getBody(i).isAwake(), "body " + i + " sleeps on a turned floor, solver " + solver);
+            }
+        }
+    }
+
+    @Test
+    public void movingTheFloorAwayWakesBodiesOnIt() {
+        FlatWorld world = createScene(FlatWorld.SOLVER_SEQUENTIAL_IMPULSE);
+        float y = world.getBody(TOP).getPosition().getY();
+        // far enough that the old and new bounding boxes do not overlap
+        world.getBody(FLOOR).move(new FlatVector(0f, -200f));
+        for (int step = 0; step < 30; step++) {
+            world.step(8, null);
+        }
+        assertTrue(world.getBody(TOP).getPosition().getY() < y - 10f, "the top box did not fall");
+    }
+
+    @Test
+    public void movingAStaticBodyElsewhereLetsSleepersSleep() {
+        FlatWorld world = createScene(FlatWorld.SOLVER_SEQUENTIAL_IMPULSE);
+        world.addBody(FlatBody.createBoxBody(20f, 20f, new FlatVector(0f, 300f), 2f, true, 0.3f));
+        world.step(8, null);
+        int wall = world.getBodyCount() - 1;
+        world.getBody(wall).move(new FlatVector(50f, 0f));
+        world.step(8, null);
+        for (int i = FIRST_BOX; i <= TOP; i++) {
+            assertFalse(world.getBody(i).isAwake(), "body " + i + " woke from a static body moved far away");
+        }
+    }
+
+    @Test
+    public void addingAStaticBodyWakesBodiesUnderIt() {
+        FlatWorld world = createScene(FlatWorld.SOLVER_SEQUENTIAL_IMPULSE);
+        FlatVector position = world.getBody(FIRST_BOX).getPosition();
+        world.addBody(FlatBody.createBoxBody(10f, 10f, new FlatVector(position.getX(), position.getY() + 10f), 2f, true, 0.3f));
+        world.step(8, null);
+        assertTrue(world.getBody(FIRST_BOX).isAwake(), "a static body was put onto a sleeping one");
+        assertFalse(world.getBody(FIRST_BOX + 1).isAwake(), "a box away from the new static body woke");
+    }
+
+    @Test
+    public void removingASupportWakesTheBodyOnIt() {
+        for (int solver : new int[] { FlatWorld.SOLVER_SUBSTEPS, FlatWorld.SOLVER_SEQUENTIAL_IMPULSE }) {
+            FlatWorld world = createScene(solver);
+            FlatBody top = world.getBody(TOP);
+            float y = top.getPosition().getY();
+            world.removeBody(BOTTOM);
+            assertTrue(top.isAwake(), "the top box sleeps on a removed box, solver " + solver);
+            for (int step = 0; step < 60; step++) {
+                world.step(8, null);
+            }
+            assertTrue(top.getPosition().getY() < y - 10f, "the top box did not fall, solver " + solver);
+            assertFalse(world.getBody(FIRST_BOX).isAwake(), "a box away from the removed one woke");
+        }
+    }
+
+    @Test
+    public void restoredMoveWakesTheSameBodies() {
+        FlatWorld world = createScene(FlatWorld.SOLVER_SEQUENTIAL_IMPULSE);
+        world.getBody(FLOOR).rotate(0.05f);
+        ByteBuffer state = ByteBuffer.allocate(world.getStateSize());
+        world.saveState(state);
+        state.flip();
+
+        long[] hashes = new long[30];
+        for (int step = 0; step < hashes.length; step++) {
+            world.step(8, null);
+            hashes[step] = world.getStateHash();
+        }
+
+        world.restoreState(state);
+        for (int step = 0; step < hashes.length; step++) {
+            world.step(8, null);
+            assertEquals(hashes[step], world.getStateHash(), "hash after step " + step + " of the rollback");
+        }
+    }
+
+    // a wide floor, a row of boxes apart from each other and one box stacked on the last of them, stepped to sleep
+    private static FlatWorld createScene(int solver) {
+        FlatWorld world = new FlatWorld();
+        world.setSolver(solver);
+        world.setSleepingEnabled(true);
+        world.addBody(FlatBody.createBoxBody(800f, 40f, new FlatVector(0f, -20f), 2f, true, 0.3f));
+        for (int k = 0; k < BOXES; k++) {
+            world.addBody(FlatBody.createBoxBody(16f, 16f, new FlatVector(-200f + k * 80f, 8.5f), 2f, false, 0.1f));
+        }
+        world.addBody(FlatBody.createBoxBody(16f, 16f, new FlatVector(-200f + (BOXES - 1) * 80f, 25f), 2f, false, 0.1f));
+        for (int step = 0; step < 400; step++) {
+            world.step(8, null);
+        }
+        return world;
+    }
+}
@@ -0,0 +1,165 @@
+package com.mygdx.game;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * a recording whose ring wrapped around, read back with StepReplay and compared with the world that was recorded
+ */
+public class StepRecorderTest {
+
+    private static final int STEPS = 300;
+    private static final int SEGMENT_BYTES = 32 * 1024;
+    private static final int SEGMENTS = 5;
+    // a body leaves and two join every so many steps
+    private static final int CHANGE_EVERY = 10;
+
+    @Test
+    public void replayKeepsTheLastSegmentsWithSubsteps() throws IOException {
+        checkRecording(FlatWorld.SOLVER_SUBSTEPS);
+    }
+
+    @Test
+    public void replayKeepsTheLastSegmentsWithImpulses() throws IOException {
+        checkRecording(FlatWorld.SOLVER_SEQUENTIAL_IMPULSE);
+    }
+
+    @Test
+    public void stepLargerThanASegmentIsRejected() throws IOException {
+        Path path = Files.createTempFile("steps", ".bin");
+        try (StepRecorder recorder = new StepRecorder(path, 1024, 2)) {
+            FlatWorld world = createPile(FlatWorld.SOLVER_SUBSTEPS, new Random(1));
+            world.setRecorder(recorder);
+            assertThrows(IllegalStateException.class, () -> world.step(8, null));
+        } finally {
+            Files.deleteIfExists(path);
+        }
+    }
+
+    private static void checkRecording(int solver) throws IOException {
+        Random random = new Random(21);
+        FlatWorld world = createPile(solver, random);
+        world.setContactListener(events -> { });
+
+        long[] hashes = new long[STEPS];
+        int[] bodyVersions = new int[STEPS];
+        List<ByteBuffer> events = new ArrayList<>();
+        // steps that started a segment, worked out the same way the recorder fills them
+        List<Long> segmentStarts = new ArrayList<>();
+        int remaining = 0;
+
+        Path path = Files.createTempFile("steps", ".bin");
+        try {
+            try (StepRecorder recorder = new StepRecorder(path, SEGMENT_BYTES, SEGMENTS)) {
+                world.setRecorder(recorder);
+                for (int s = 0; s < STEPS; s++) {
+                    if (s > 0 && s % CHANGE_EVERY == 0) {
+                        world.removeBody(1 + random.nextInt(world.getBodyCount() - 1));
+                        addBody(world, random);
+                        addBody(world, random);
+                    }
+                    long step = recorder.getNextStep();
+                    world.step(8, null);
+                    assertEquals(s, step);
+
+                    hashes[s] = world.getStateHash();
+                    bodyVersions[s] = world.getBodyVersion();
+                    ByteBuffer buffer = ByteBuffer.allocate(world.getContactEvents().getEventsSize());
+                    world.getContactEvents().writeEvents(buffer);
+                    buffer.flip();
+                    events.add(buffer);
+
+                    int stepBytes = StepRecorder.RECORD_HEADER_BYTES + 4 + world.getStateSize()
+                            + world.getContactEvents().getEventsSize();
+                    int bodiesBytes = StepRecorder.RECORD_HEADER_BYTES + StepRecorder.getBodiesSize(world);
+                    boolean isBodiesChanged = s == 0 || bodyVersions[s] != bodyVersions[s - 1];
+                    int bytes = stepBytes + (isBodiesChanged ? bodiesBytes : 0);
+                    if (s == 0 || bytes > remaining) {
+                        segmentStarts.add((long) s);
+                        remaining = SEGMENT_BYTES - StepRecorder.SEGMENT_HEADER_BYTES;
+                        bytes = stepBytes + bodiesBytes;
+                    }
+                    remaining -= bytes;
+                }
+            }
+            assertTrue(segmentStarts.size() > SEGMENTS, "the ring did not wrap, make the segments smaller");
+            // the newest segment is not the last one in the file, so the file order is not the step order
+            assertTrue(segmentStarts.size() % SEGMENTS != 0, "the ring ends on its last segment, change STEPS");
+
+            try (StepReplay replay = new StepReplay(path)) {
+                long first = segmentStarts.get(segmentStarts.size() - SEGMENTS);
+                assertEquals(first, replay.getFirstStep(), "first step kept");
+                assertEquals(STEPS - 1, replay.getLastStep(), "last step kept");
+                assertEquals((int) (STEPS - first), replay.getStepCount(), "steps in the file");
+                assertThrows(IllegalArgumentException.class, () -> replay.seek(first - 1));
+                assertThrows(IllegalArgumentException.class, () -> replay.seek(STEPS));
+
+                checkSteps(replay, (int) first, hashes, bodyVersions, events);
+            }
+        } finally {
+            Files.deleteIfExists(path);
+        }
+    }
+
+    // every step of the window, built from scratch and by seeking a world along
+    private static void checkSteps(StepReplay replay, int first, long[] hashes, int[] bodyVersions,
+                                   List<ByteBuffer> events) {
+        ContactEvents replayed = new ContactEvents();
+        FlatWorld world = replay.seek(first);
+        int changes = 0;
+        for (int s = first; s < STEPS; s++) {
+            assertEquals(hashes[s], replay.seek(s).getStateHash(), "hash of step " + s);
+
+            if (s > first && bodyVersions[s] != bodyVersions[s - 1]) {
+                // the world still holds the bodies of the step before
+                int step = s;
+                FlatWorld old = world;
+                assertThrows(IllegalArgumentException.class, () -> replay.seek(step, old));
+                world = replay.seek(s);
+                changes++;
+            } else {
+                replay.seek(s, world);
+            }
+            assertEquals(hashes[s], world.getStateHash(), "hash of step " + s + " seeked into a world");
+
+            replay.readContactEvents(s, replayed);
+            ByteBuffer buffer = ByteBuffer.allocate(replayed.getEventsSize());
+            replayed.writeEvents(buffer);
+            buffer.flip();
+            assertEquals(events.get(s), buffer, "contact events of step " + s);
+        }
+        assertTrue(changes > 0, "no body joined or left within the steps kept");
+    }
+
+    // a floor with a pile of circles and boxes over it
+    private static FlatWorld createPile(int solver, Random random) {
+        FlatWorld world = new FlatWorld();
+        world.setSolver(solver);
+        world.setSleepingEnabled(true);
+        world.addBody(FlatBody.createBoxBody(400f, 20f, new FlatVector(0f, -10f), 2f, true, 0.3f));
+        for (int i = 0; i < 24; i++) {
+            addBody(world, random);
+        }
+        return world;
+    }
+
+    private static void addBody(FlatWorld world, Random random) {
+        FlatVector position = new FlatVector(random.nextFloat() * 160f - 80f, 10f + random.nextFloat() * 120f);
+        if (random.nextBoolean()) {
+            world.addBody(FlatBody.createCircleBody(5f, position, 2f, false, 0.3f));
+        } else {
+            world.addBody(FlatBody.createBoxBody(10f, 8f, position, 2f, false, 0.3f));
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package com.mygdx.game;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * saveState and restoreState, into a fresh world and back into the same one
+ */
+public class WorldStateTest {
+
+    private static final int STEPS = 120;
+
+    @Test
+    public void restoredWorldStepsLikeTheSavedOneWithSubsteps() {
+        checkFreshWorld(FlatWorld.SOLVER_SUBSTEPS);
+    }
+
+    @Test
+    public void restoredWorldStepsLikeTheSavedOneWithImpulses() {
+        checkFreshWorld(FlatWorld.SOLVER_SEQUENTIAL_IMPULSE);
+    }
+
+    @Test
+    public void rollbackStepsLikeTheFirstTime() {
+        FlatWorld world = createScene(FlatWorld.SOLVER_SEQUENTIAL_IMPULSE);
+        ByteBuffer state = save(world);
+
+        long[] hashes = new long[STEPS];
+        for (int step = 0; step < STEPS; step++) {
+            world.step(8, null);
+            hashes[step] = world.getStateHash();
+        }
+
+        world.restoreState(state);
+        for (int step = 0; step < STEPS; step++) {
+            world.step(8, null);
+            assertEquals(hashes[step], world.getStateHash(), "hash after step " + step + " of the rollback");
+        }
+    }
+
+    @Test
+    public void stateOfOtherBodiesIsRejected() {
+        FlatWorld world = createScene(FlatWorld.SOLVER_SUBSTEPS);
+        ByteBuffer state = save(world);
+        long hash = world.getStateHash();
+
+        FlatWorld smaller = createScene(FlatWorld.SOLVER_SUBSTEPS);
+        smaller.removeBody(0);
+        assertThrows(IllegalArgumentException.class, () -> smaller.restoreState(state));
+
+        // same number of bodies, but one of them has another handle
+        FlatWorld renamed = createScene(FlatWorld.SOLVER_SUBSTEPS);
+        renamed.removeBody(renamed.getBodyCount() - 1);
+        renamed.addBody(FlatBody.createCircleBody(5f, new FlatVector(0f, 300f), 2f, false, 0.3f));
+        long before = renamed.getStateHash();
+        assertThrows(IllegalArgumentException.class, () -> renamed.restoreState(state));
+        assertEquals(before, renamed.getStateHash(), "a rejected state changed the world");
+        assertEquals(hash, world.getStateHash());
+    }
+
+    // save a scene, rebuild its bodies in a new world, restore the state into it and step both side by side
+    private static void checkFreshWorld(int solver) {
+        FlatWorld world = createScene(solver);
+        ByteBuffer state = save(world);
+
+        ByteBuffer bodies = ByteBuffer.allocate(StepRecorder.getBodiesSize(world));
+        StepRecorder.writeBodies(world, bodies);
+        bodies.flip();
+        FlatWorld copy = StepRecorder.readBodies(bodies);
+        copy.restoreState(state);
+        assertEquals(world.getStateHash(), copy.getStateHash(), "hash right after the restore");
+
+        for (int step = 0; step < STEPS; step++) {
+            world.step(8, null);
+            copy.step(8, null);
+            assertEquals(world.getStateHash(), copy.getStateHash(), "hash after step " + step);
+        }
+    }
+
+    private static ByteBuffer save(FlatWorld world) {
+        ByteBuffer state = ByteBuffer.allocate(world.getStateSize());
+        world.saveState(state);
+        assertEquals(0, state.remaining(), "saveState wrote another size than getStateSize");
+        state.flip();
+        return state;
+    }
+
+    /**
+     * a scene with sleeping bodies, awake ones falling onto them, static bodies moved by hand
+     * and handle slots freed and reused, so every column of a row is something other than its default
+     */
+    private static FlatWorld createScene(int solver) {
+        FlatWorld world = new FlatWorld();
+        world.setSolver(solver);
+        world.setSleepingEnabled(true);
+        world.addBody(FlatBody.createBoxBody(800f, 40f, new FlatVector(0f, -20f), 2f, true, 0.3f));
+        FlatBody wall = FlatBody.createBoxBody(20f, 200f, new FlatVector(500f, 100f), 2f, true, 0.3f);
+        world.addBody(wall);
+
+        Random random = new Random(11);
+        List<FlatBody> pile = new ArrayList<>();
+        for (int i = 0; i < 60; i++) {
+            FlatVector position = new FlatVector((i % 15) * 24f - 180f, 15f + (i / 15) * 24f);
+            FlatBody body = i % 2 == 0
+                    ? FlatBody.createCircleBody(8f, position, 2f, false, 0.1f)
+                    : FlatBody.createBoxBody(16f, 16f, position, 2f, false, 0.1f);
+            world.addBody(body);
+            pile.add(body);
+        }
+        // boxes resting on their own fall asleep under either solver, a pile only under impulses
+        for (int k = 0; k < 5; k++) {
+            world.addBody(FlatBody.createBoxBody(16f, 16f, new FlatVector(250f + k * 40f, 8.5f), 2f, false, 0.1f));
+        }
+        for (int step = 0; step < 400; step++) {
+            world.step(8, null);
+        }
+
+        // free some slots and reuse a few of them, the new bodies get the next generation of their slot
+        for (int k = 0; k < 10; k++) {
+            world.removeBody(pile.remove(random.nextInt(pile.size())));
+        }
+        for (int k = 0; k < 4; k++) {
+            FlatBody body = FlatBody.createBoxBody(12f, 12f, new FlatVector(-100f + k * 60f, 250f), 2f, false, 0.3f);
+            body.rotate(random.nextFloat() * 90f);
+            body.setLinearVelocity(new FlatVector(random.nextFloat() * 40f - 20f, 0f));
+            world.addBody(body);
+        }
+        wall.moveTo(new FlatVector(450f, 100f));
+        wall.rotateTo(10f);
+
+        int sleeping = 0;
+        for (int i = 0; i < world.getBodyCount(); i++) {
+            if (!world.getBody(i).isStatic() && !world.getBody(i).isAwake()) sleeping++;
+        }
+        assertTrue(sleeping > 0, "the scene needs sleeping bodies");
+        return world;
+    }
+}